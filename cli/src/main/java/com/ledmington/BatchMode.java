@@ -0,0 +1,150 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ledmington.sce.Engine;
+import com.ledmington.sce.SimplificationCache;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.tokens.ParseError;
+import com.ledmington.sce.tokens.Tokenizer;
+
+/**
+ * Simplifies newline-delimited expressions on a pool of workers, printing one JSON object per non-blank input line, in
+ * input order.
+ */
+final class BatchMode {
+
+    // how many lines per worker may be waiting to be printed
+    private static final int LINES_PER_WORKER = 64;
+    private static final int CACHE_CAPACITY = 1 << 16;
+
+    private BatchMode() {}
+
+    /**
+     * Reads the expressions from the given file, or from the standard input if the path is null, and prints the
+     * results.
+     *
+     * @param path The input file or null.
+     * @param threads The number of workers.
+     * @param out The output for the results.
+     * @throws IOException If the input cannot be read.
+     */
+    static void run(final Path path, final int threads, final PrintWriter out) throws IOException {
+        try (BufferedReader reader = path == null
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            run(reader, threads, out);
+        }
+    }
+
+    static void run(final BufferedReader reader, final int threads, final PrintWriter out) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of threads: %,d", threads));
+        }
+        final SimplificationCache cache = new SimplificationCache(CACHE_CAPACITY);
+        final Deque<Future<String>> pending = new ArrayDeque<>();
+        final int window = threads * LINES_PER_WORKER;
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            long lineNumber = 0L;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                final long n = lineNumber;
+                final String expression = line.strip();
+                pending.addLast(pool.submit(() -> process(n, expression, cache)));
+                if (pending.size() >= window) {
+                    out.println(await(pending.removeFirst()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.println(await(pending.removeFirst()));
+            }
+        }
+        out.flush();
+    }
+
+    private static String await(final Future<String> f) {
+        try {
+            return f.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String process(final long lineNumber, final String expression, final SimplificationCache cache) {
+        final StringBuilder sb = new StringBuilder(expression.length() * 4);
+        sb.append("{\"line\":").append(lineNumber).append(",\"input\":");
+        appendJsonString(sb, expression);
+        try {
+            final Node result = Engine.normalize(Parser.parse(Tokenizer.tokenizeCompact(expression)), cache);
+            sb.append(",\"result\":");
+            appendJsonString(sb, result.toExpression());
+            sb.append(",\"latex\":");
+            appendJsonString(sb, result.toLatex());
+        } catch (final ParseError | RuntimeException | StackOverflowError e) {
+            // one bad line must not stop the batch, but any other error leaves the JVM in an unknown state
+            sb.append(",\"error\":");
+            appendJsonString(sb, String.valueOf(e.getMessage()));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendJsonString(final StringBuilder sb, final String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/** A client of {@link Server}, sending one request line at a time and waiting for its response. */
+final class Client implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final BufferedReader in;
+    private final Writer out;
+
+    Client(final SocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+        this.out = Channels.newWriter(channel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends the given request and returns the response line.
+     *
+     * @param request The request, without line terminator.
+     * @return The response, without line terminator.
+     * @throws IOException If the connection fails.
+     */
+    String send(final String request) throws IOException {
+        out.write(request);
+        out.write('\n');
+        out.flush();
+        final String response = in.readLine();
+        if (response == null) {
+            throw new IOException("Connection closed by the server");
+        }
+        return response;
+    }
+
+    /**
+     * Sends each line of the given input as a request, printing the responses.
+     *
+     * @param address The address of the server.
+     * @param input The requests.
+     * @param output The output for the responses.
+     * @throws IOException If the connection fails.
+     */
+    static void run(final SocketAddress address, final BufferedReader input, final PrintWriter output)
+            throws IOException {
+        try (Client c = new Client(address)) {
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (!line.isBlank()) {
+                    output.println(c.send(line.strip()));
+                    output.flush();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
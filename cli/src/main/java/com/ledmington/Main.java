@@ -17,19 +17,20 @@
  */
 package com.ledmington;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.math.BigDecimal;
-import java.math.MathContext;
+import java.net.SocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import com.ledmington.sce.Engine;
 import com.ledmington.sce.EngineConstants;
-import com.ledmington.sce.nodes.ConstantNode;
-import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.eval.Evaluation;
 import com.ledmington.sce.nodes.Node;
 import com.ledmington.sce.nodes.Parser;
-import com.ledmington.sce.tokens.Token;
 import com.ledmington.sce.tokens.Tokenizer;
 
 public final class Main {
@@ -43,6 +44,19 @@ public final class Main {
         final String shortHelpFlag = "-h";
         final String longHelpFlag = "--help";
         final String imaginaryUnitFlag = "--imaginary-unit";
+        final String batchFlag = "--batch";
+        final String threadsFlag = "--threads";
+        final String portFlag = "--port";
+        final String socketFlag = "--socket";
+        final String maxPowerBitsFlag = "--max-power-bits";
+        final String digitsFlag = "--digits";
+
+        boolean batch = false;
+        Path batchFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int port = Server.DEFAULT_PORT;
+        String socket = null;
+        int digits = 20;
 
         int i = 0;
         for (; i < args.length; i++) {
@@ -53,44 +67,144 @@ public final class Main {
                                 sce - Symbolic Calculus Engine
 
                                 Usage: sce '(1/2)*(3-4)^2'
+                                       sce --batch[=FILE] [--threads=N]
+                                       sce [--port=N | --socket=PATH] serve
+                                       sce [--port=N | --socket=PATH] client
+
+                                Commands:
+                                 serve               Answers the requests of many clients, one per line:
+                                                     'SIMPLIFY expr', 'LATEX expr' or 'EVALUATE expr'.
+                                 client              Sends each line of the standard input to a running server and
+                                                     prints the responses.
 
                                 Flags:
                                  -h, --help          Print this help message and exits.
                                  --imaginary-unit=X  Uses X as the imaginary unit. Default: "i".
+                                 --max-power-bits=N  Leaves symbolic the powers of constants whose value would need
+                                                     more than about N bits. Default: 65536.
+                                 --digits=N          Prints the value of constant results with N significant
+                                                     digits. Default: 20.
+                                 --batch[=FILE]      Simplifies one expression per line of FILE, or of the standard
+                                                     input if FILE is missing or '-', printing one JSON object per
+                                                     line in input order.
+                                 --threads=N         Uses N workers in batch mode. Default: the number of CPUs.
+                                 --port=N            Uses the TCP port N on the loopback interface. Default: 4242.
+                                 --socket=PATH       Uses the Unix domain socket at PATH instead of a TCP port.
 
                                 """);
                 System.exit(0);
             } else if (args[i].startsWith(imaginaryUnitFlag)) {
                 EngineConstants.setImaginaryUnit(args[i].split("=")[1]);
+            } else if (args[i].startsWith(maxPowerBitsFlag + "=")) {
+                EngineConstants.setMaxFoldedPowerBits(
+                        parseNonNegative(maxPowerBitsFlag, args[i].substring(maxPowerBitsFlag.length() + 1)));
+            } else if (args[i].startsWith(digitsFlag + "=")) {
+                digits = parsePositive(digitsFlag, args[i].substring(digitsFlag.length() + 1));
+            } else if (batchFlag.equals(args[i])) {
+                batch = true;
+            } else if (args[i].startsWith(batchFlag + "=")) {
+                batch = true;
+                final String file = args[i].substring(batchFlag.length() + 1);
+                batchFile = "-".equals(file) ? null : Path.of(file);
+            } else if (args[i].startsWith(threadsFlag + "=")) {
+                threads = parsePositive(threadsFlag, args[i].substring(threadsFlag.length() + 1));
+            } else if (args[i].startsWith(portFlag + "=")) {
+                port = parsePort(portFlag, args[i].substring(portFlag.length() + 1));
+            } else if (args[i].startsWith(socketFlag + "=")) {
+                socket = args[i].substring(socketFlag.length() + 1);
             } else {
                 break;
             }
         }
 
-        final String input = String.join(" ", Arrays.copyOfRange(args, i, args.length));
-        final Token[] tokens = Tokenizer.tokenize(input);
-        Node current = Parser.parse(tokens);
-        out.printf("Input: %s%n", current.toExpression());
-        Node next = Engine.simplify(current);
-
-        int iteration = 0;
-        while (!current.equals(next)) {
-            out.printf(" %2d: %s%n", iteration, next.toExpression());
-            current = next;
-            next = Engine.simplify(current);
-            iteration++;
+        if (batch) {
+            try {
+                BatchMode.run(batchFile, threads, out);
+            } catch (final IOException e) {
+                System.err.printf("Cannot read the input: %s%n", e.getMessage());
+                System.exit(1);
+            }
+            return;
         }
 
+        if (i < args.length && ("serve".equals(args[i]) || "client".equals(args[i]))) {
+            final SocketAddress address = Server.address(socket, port);
+            try {
+                if ("serve".equals(args[i])) {
+                    Server.serve(address, out);
+                } else {
+                    Client.run(
+                            address, new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+                }
+            } catch (final IOException e) {
+                System.err.printf("Connection error on %s: %s%n", address, e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        final String input = String.join(" ", Arrays.copyOfRange(args, i, args.length));
+        final Node root = Parser.parse(Tokenizer.tokenizeCompact(input));
+        out.printf("Input: %s%n", root.toExpression());
+
+        final int[] iteration = {0};
+        final Node next = Engine.normalize(root, (before, after) -> {
+            out.printf(" %2d: %s -> %s%n", iteration[0], before.toExpression(), after.toExpression());
+            iteration[0]++;
+        });
+
         out.printf("Final result: %s%n", next.toExpression());
-        if (next instanceof FractionNode fn
-                && fn.numerator() instanceof ConstantNode num
-                && fn.denominator() instanceof ConstantNode den) {
-            out.printf(
-                    "Value: %.20f%n",
-                    new BigDecimal(num.value()).divide(new BigDecimal(den.value()), new MathContext(20)));
+        try {
+            out.printf("Value: %s%n", Evaluation.of(next).value(digits));
+        } catch (final IllegalArgumentException e) {
+            // the result is not a constant, so it has no value to print
+        } catch (final ArithmeticException e) {
+            out.printf("Value: none (%s)%n", e.getMessage());
         }
         out.printf("Final result (LaTeX): %s%n", next.toLatex());
 
         out.flush();
     }
+
+    private static long parseNonNegative(final String flag, final String value) {
+        try {
+            final long n = Long.parseLong(value);
+            if (n >= 0L) {
+                return n;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        System.err.printf("Invalid value for %s: '%s'. Expected a non-negative integer.%n", flag, value);
+        System.exit(1);
+        return -1L;
+    }
+
+    private static int parsePositive(final String flag, final String value) {
+        try {
+            final int n = Integer.parseInt(value);
+            if (n >= 1) {
+                return n;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        System.err.printf("Invalid value for %s: '%s'. Expected a positive integer.%n", flag, value);
+        System.exit(1);
+        return -1;
+    }
+
+    private static int parsePort(final String flag, final String value) {
+        try {
+            final int n = Integer.parseInt(value);
+            if (n >= 0 && n <= 65_535) {
+                return n;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        System.err.printf("Invalid value for %s: '%s'. Expected a port between 0 and 65535.%n", flag, value);
+        System.exit(1);
+        return -1;
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.ledmington.sce.Engine;
+import com.ledmington.sce.SimplificationCache;
+import com.ledmington.sce.eval.Evaluation;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.numbers.ComplexDecimal;
+import com.ledmington.sce.tokens.ParseError;
+import com.ledmington.sce.tokens.Tokenizer;
+
+/**
+ * A long-running server answering simplification requests over a local TCP port or a Unix domain socket. Each
+ * connection is served by its own virtual thread, while the engine and its cache are shared by all of them.
+ *
+ * <p>The protocol is line-based. Each request is a command followed by an expression: {@code SIMPLIFY expr} answers
+ * with the simplified expression, {@code LATEX expr} with its LaTeX form and {@code EVALUATE expr} with its decimal
+ * value. Each response is a single line starting with {@code OK} or {@code ERROR}. {@code QUIT} closes the connection.
+ */
+final class Server {
+
+    static final int DEFAULT_PORT = 4242;
+
+    private static final int CACHE_CAPACITY = 1 << 16;
+    private static final int DIGITS = 20;
+    private static final List<String> WARM_UP_EXPRESSIONS =
+            List.of("(1/2)*(3-4)^2", "x+3+x", "x*3*x", "2/3*4/5", "(2/3)/(4/5)", "i^7", "1/2+1/3-5/6");
+    private static final int WARM_UP_ROUNDS = 1_000;
+    // the pause after a failed accept doubles up to the maximum, so a persistent error does not spin
+    private static final long MIN_ACCEPT_BACKOFF_MILLIS = 10L;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1_000L;
+
+    private Server() {}
+
+    /**
+     * Returns the address of the given Unix domain socket or, if null, of the given port on the loopback interface.
+     *
+     * @param socket The path of the socket or null.
+     * @param port The TCP port.
+     * @return The address.
+     */
+    static SocketAddress address(final String socket, final int port) {
+        return socket == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : UnixDomainSocketAddress.of(socket);
+    }
+
+    /**
+     * Listens on the given address forever.
+     *
+     * @param address The address to listen on.
+     * @param log The output for status messages.
+     * @throws IOException If the server cannot listen on the address.
+     */
+    static void serve(final SocketAddress address, final PrintWriter log) throws IOException {
+        warmUp();
+
+        final boolean isUnix = address instanceof UnixDomainSocketAddress;
+        try (ServerSocketChannel server =
+                ServerSocketChannel.open(isUnix ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET)) {
+            server.bind(address);
+            if (isUnix) {
+                final UnixDomainSocketAddress uds = (UnixDomainSocketAddress) address;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        Files.deleteIfExists(uds.getPath());
+                    } catch (final IOException e) {
+                        // nothing left to do while shutting down
+                    }
+                }));
+            }
+            serve(server, log);
+        }
+    }
+
+    /**
+     * Answers the connections accepted by the given bound channel until it is closed, then waits for the open ones to
+     * terminate.
+     *
+     * @param server The bound channel.
+     * @param log The output for status messages.
+     * @throws IOException If the address of the channel cannot be read.
+     */
+    static void serve(final ServerSocketChannel server, final PrintWriter log) throws IOException {
+        final SimplificationCache cache = new SimplificationCache(CACHE_CAPACITY);
+        log.printf("Listening on %s%n", server.getLocalAddress());
+        log.flush();
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            long backoff = 0L;
+            while (server.isOpen()) {
+                final SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (final ClosedChannelException e) {
+                    break;
+                } catch (final IOException e) {
+                    // a connection failing before being accepted must not stop the server, but errors like running out
+                    // of file descriptors persist, so wait longer after each consecutive failure
+                    backoff = backoff == 0L
+                            ? MIN_ACCEPT_BACKOFF_MILLIS
+                            : Math.min(backoff * 2L, MAX_ACCEPT_BACKOFF_MILLIS);
+                    log.printf("Cannot accept a connection: %s. Retrying in %,d ms%n", e.getMessage(), backoff);
+                    log.flush();
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (final InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    continue;
+                }
+                backoff = 0L;
+                threads.submit(() -> handle(client, cache));
+            }
+        }
+    }
+
+    private static void warmUp() {
+        // let the JIT compile the hot paths before the first request arrives
+        for (int r = 0; r < WARM_UP_ROUNDS; r++) {
+            for (final String s : WARM_UP_EXPRESSIONS) {
+                Engine.normalize(Parser.parse(Tokenizer.tokenizeCompact(s)));
+            }
+        }
+    }
+
+    private static void handle(final SocketChannel client, final SimplificationCache cache) {
+        try (client;
+                BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+                Writer out = Channels.newWriter(client, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String request = line.strip();
+                if ("QUIT".equalsIgnoreCase(request)) {
+                    break;
+                }
+                out.write(respond(request, cache));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (final IOException e) {
+            // the client went away: nothing to answer to
+        }
+    }
+
+    /**
+     * Computes the response line to the given request line, without the line terminator.
+     *
+     * @param request The request line.
+     * @param cache The shared cache of normal forms.
+     * @return The response line.
+     */
+    static String respond(final String request, final SimplificationCache cache) {
+        final int space = request.indexOf(' ');
+        final String command = (space < 0 ? request : request.substring(0, space)).toUpperCase(Locale.ROOT);
+        final Function<Node, String> answer =
+                switch (command) {
+                    case "SIMPLIFY" -> n -> "OK " + n.toExpression();
+                    case "LATEX" -> n -> "OK " + n.toLatex();
+                    case "EVALUATE" -> Server::evaluate;
+                    default -> null;
+                };
+        if (answer == null) {
+            return "ERROR Unknown command: " + command;
+        }
+        if (space < 0) {
+            return "ERROR Missing expression";
+        }
+        final String expression = request.substring(space + 1).strip();
+        try {
+            return answer.apply(Engine.normalize(Parser.parse(Tokenizer.tokenizeCompact(expression)), cache));
+        } catch (final ParseError | RuntimeException | StackOverflowError e) {
+            // one bad request must not take the connection down, but any other error leaves the JVM in an unknown state
+            return "ERROR " + String.valueOf(e.getMessage()).replace('\n', ' ');
+        }
+    }
+
+    private static String evaluate(final Node n) {
+        try {
+            // powers left symbolic by the engine are approximated, never computed exactly
+            final ComplexDecimal value = Evaluation.of(n).value(DIGITS);
+            return "OK " + (value.isReal() ? value.real().toPlainString() : value.toString());
+        } catch (final IllegalArgumentException e) {
+            return "ERROR Not a constant: " + n.toExpression();
+        } catch (final ArithmeticException e) {
+            // like a division by zero
+            return "ERROR No value: " + n.toExpression();
+        }
+    }
+}
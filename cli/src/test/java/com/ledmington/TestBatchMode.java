@@ -0,0 +1,100 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+final class TestBatchMode {
+
+    private static List<String> run(final String input, final int threads) throws IOException {
+        final StringWriter sw = new StringWriter();
+        BatchMode.run(new BufferedReader(new StringReader(input)), threads, new PrintWriter(sw));
+        return sw.toString().lines().toList();
+    }
+
+    @Test
+    void invalidThreads() {
+        assertThrows(IllegalArgumentException.class, () -> run("1+1", 0));
+    }
+
+    @Test
+    void singleLine() throws IOException {
+        assertEquals(List.of("{\"line\":1,\"input\":\"1+1\",\"result\":\"2\",\"latex\":\"2\"}"), run("1+1\n", 1));
+    }
+
+    @Test
+    void blankLinesAreSkippedButCounted() throws IOException {
+        final List<String> output = run("\n  x+x  \n\n\t\n1+2\n", 1);
+        assertEquals(2, output.size());
+        assertTrue(output.get(0).startsWith("{\"line\":2,\"input\":\"x+x\","), output.get(0));
+        assertTrue(output.get(1).startsWith("{\"line\":5,\"input\":\"1+2\","), output.get(1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 8})
+    void outputFollowsInputOrder(final int threads) throws IOException {
+        // more lines than the window of pending results, so that some are printed while others are still running
+        final int lines = threads * 200;
+        final String input =
+                IntStream.rangeClosed(1, lines).mapToObj(i -> i + "+x+" + i).collect(Collectors.joining("\n"));
+        final List<String> output = run(input, threads);
+        assertEquals(lines, output.size());
+        for (int i = 1; i <= lines; i++) {
+            final String prefix = "{\"line\":" + i + ",\"input\":\"" + i + "+x+" + i + "\",\"result\":";
+            assertTrue(output.get(i - 1).startsWith(prefix), output.get(i - 1));
+        }
+    }
+
+    @Test
+    void invalidLinesAreReported() throws IOException {
+        final List<String> output = run("1+1\n(2\n2*3\n", 2);
+        assertEquals(3, output.size());
+        assertTrue(output.get(0).contains("\"result\":\"2\""), output.get(0));
+        assertTrue(
+                output.get(1).startsWith("{\"line\":2,\"input\":\"(2\",\"error\":\"Invalid expression"), output.get(1));
+        assertTrue(output.get(2).contains("\"result\":\"6\""), output.get(2));
+    }
+
+    @Test
+    void unknownCharactersAreReported() throws IOException {
+        final List<String> output = run("1+$\n", 1);
+        assertEquals(List.of("{\"line\":1,\"input\":\"1+$\",\"error\":\"Unknown character '$' at offset 2\"}"), output);
+    }
+
+    @Test
+    void inputIsEscaped() throws IOException {
+        final List<String> output = run("\"\\\n", 1);
+        assertEquals(1, output.size());
+        assertTrue(output.get(0).startsWith("{\"line\":1,\"input\":\"\\\"\\\\\",\"error\":"), output.get(0));
+    }
+}
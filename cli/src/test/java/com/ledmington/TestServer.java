@@ -0,0 +1,111 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.ledmington.sce.SimplificationCache;
+
+final class TestServer {
+
+    private static String respond(final String request) {
+        return Server.respond(request, new SimplificationCache(100));
+    }
+
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "SIMPLIFY 1+1|OK 2",
+                "simplify   1+2*3  |OK 7",
+                "SIMPLIFY x+x|OK 2*x",
+                "EVALUATE 1/4|OK 0.25",
+                "EVALUATE x|ERROR Not a constant: x",
+                "EVALUATE 1/(1-1)|ERROR No value: 1/0",
+                "EVALUATE 0^-1|ERROR No value: 0^-1",
+                "SIMPLIFY|ERROR Missing expression",
+                "FOO|ERROR Unknown command: FOO",
+                "FOO (|ERROR Unknown command: FOO",
+                "FOO 1+1|ERROR Unknown command: FOO",
+            })
+    void responses(final String request, final String expected) {
+        assertEquals(expected, respond(request));
+    }
+
+    @Test
+    void invalidExpression() {
+        final String response = respond("SIMPLIFY (1+");
+        assertTrue(response.startsWith("ERROR Invalid expression"), response);
+    }
+
+    @Test
+    void unknownCommandsAreNotNormalized() {
+        final SimplificationCache cache = new SimplificationCache(100);
+        Server.respond("FOO 1+1", cache);
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.misses());
+    }
+
+    @Test
+    void loopbackRoundTrip() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final StringWriter log = new StringWriter();
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            final Future<?> server;
+            final InetSocketAddress address;
+            try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                address = (InetSocketAddress) channel.getLocalAddress();
+                server = executor.submit(() -> {
+                    Server.serve(channel, new PrintWriter(log));
+                    return null;
+                });
+
+                try (Client client = new Client(address)) {
+                    assertEquals("OK 2", client.send("SIMPLIFY 1+1"));
+                    assertEquals("ERROR Unknown command: FOO", client.send("FOO ("));
+                    assertTrue(client.send("SIMPLIFY (").startsWith("ERROR Invalid expression"));
+                    // the connection survives the errors
+                    assertEquals("OK 0.5", client.send("EVALUATE 1/2"));
+                }
+            }
+            // closing the channel stops the server
+            server.get(10, TimeUnit.SECONDS);
+            assertFalse(server.isCancelled());
+            assertTrue(log.toString().startsWith("Listening on "), log.toString());
+        }
+    }
+}
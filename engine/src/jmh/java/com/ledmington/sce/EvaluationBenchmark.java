@@ -0,0 +1,133 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.ledmington.sce.eval.BatchPlan;
+import com.ledmington.sce.eval.CompiledExpression;
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.tokens.Tokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Compares walking the tree for each point against evaluating the compiled expression and the batch plan. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluationBenchmark {
+
+    private static final int POINTS = 1024;
+
+    @Param({"x^2+2*x*y+y^2-3/4", "(x+1)/(y-2)+x^3*y^5-7*x*y+x/y"})
+    private String expression;
+
+    private Node root;
+    private CompiledExpression compiled;
+    private double[][] points;
+    private BatchPlan plan;
+    private double[][] columns;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        root = Parser.parse(Tokenizer.tokenize(expression));
+        compiled = CompiledExpression.compile(root, List.of("x", "y"));
+        points = new double[POINTS][];
+        for (int i = 0; i < POINTS; i++) {
+            points[i] = new double[] {i * 0.001, 1.0 + i * 0.002};
+        }
+        plan = BatchPlan.compile(root, List.of("x", "y"));
+        columns = new double[2][POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            columns[0][i] = points[i][0];
+            columns[1][i] = points[i][1];
+        }
+        out = new double[POINTS];
+    }
+
+    private static double walk(final Node n, final double x, final double y) {
+        return switch (n) {
+            case ConstantNode cn -> cn.value().doubleValue();
+            case VariableNode vn -> "x".equals(vn.name()) ? x : y;
+            case BracketNode bn -> walk(bn.inner(), x, y);
+            case PlusNode pn -> {
+                double r = 0.0;
+                for (int i = 0; i < pn.getNumChildren(); i++) {
+                    r += walk(pn.getChild(i), x, y);
+                }
+                yield r;
+            }
+            case MultiplyNode mn -> {
+                double r = 1.0;
+                for (int i = 0; i < mn.getNumChildren(); i++) {
+                    r *= walk(mn.getChild(i), x, y);
+                }
+                yield r;
+            }
+            case FractionNode fn -> walk(fn.numerator(), x, y) / walk(fn.denominator(), x, y);
+            case PowerNode pn -> Math.pow(walk(pn.base(), x, y), walk(pn.exponent(), x, y));
+            default -> throw new IllegalArgumentException();
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double treeWalk() {
+        double sum = 0.0;
+        for (final double[] p : points) {
+            sum += walk(root, p[0], p[1]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double compiled() {
+        double sum = 0.0;
+        for (final double[] p : points) {
+            sum += compiled.evaluate(p);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double batch() {
+        plan.evaluate(columns, out);
+        return out[POINTS - 1];
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.poly.MultiplicationAlgorithm;
+import com.ledmington.sce.poly.Polynomial;
+import com.ledmington.sce.tokens.Tokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the expansion of powers of a trinomial with each multiplication algorithm. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExpansionBenchmark {
+
+    @Param({"SCHOOLBOOK", "KARATSUBA", "KRONECKER", "AUTOMATIC"})
+    private MultiplicationAlgorithm algorithm;
+
+    @Param({"10", "30", "50"})
+    private int exponent;
+
+    private Polynomial base;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        base = Polynomial.expand(Parser.parse(Tokenizer.tokenize("x+y+1")));
+    }
+
+    @Benchmark
+    public Polynomial pow() {
+        return base.pow(exponent, algorithm);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.Random;
+
+/** Deterministic generator of benchmark expressions of a given shape and approximate node count. */
+public final class ExpressionCorpus {
+
+    /** The shape of the generated expression tree. */
+    public enum Shape {
+
+        /** A single flat sum of constants and variables: {@code 3+x1+7+x2+...}. */
+        WIDE_SUM,
+
+        /** A small expression nested inside many brackets: {@code (((x+1)))}. */
+        DEEP_BRACKETS,
+
+        /** A left-associated chain of powers: {@code x^2^3^2...}. */
+        POWER_TOWER,
+
+        /** A sum of products between big integer constants and variables. */
+        BIG_CONSTANTS
+    }
+
+    private static final long SEED = 0x5ce_5ce_5ceL;
+    private static final int NUM_VARIABLES = 8;
+    private static final int BIG_CONSTANT_DIGITS = 60;
+
+    private ExpressionCorpus() {}
+
+    /**
+     * Generates an expression with approximately the given number of nodes, once parsed and flattened.
+     *
+     * @param shape The shape of the expression.
+     * @param nodes The approximate number of nodes.
+     * @return The textual representation of the expression.
+     */
+    public static String generate(final Shape shape, final int nodes) {
+        if (nodes < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of nodes: %,d", nodes));
+        }
+        final Random rng = new Random(SEED);
+        return switch (shape) {
+            case WIDE_SUM -> wideSum(rng, nodes);
+            case DEEP_BRACKETS -> deepBrackets(nodes);
+            case POWER_TOWER -> powerTower(rng, nodes);
+            case BIG_CONSTANTS -> bigConstants(rng, nodes);
+        };
+    }
+
+    private static String variable(final Random rng) {
+        return "x" + rng.nextInt(NUM_VARIABLES);
+    }
+
+    private static String wideSum(final Random rng, final int nodes) {
+        final StringBuilder sb = new StringBuilder(nodes * 3);
+        for (int i = 0; i < nodes; i++) {
+            if (i > 0) {
+                sb.append('+');
+            }
+            if (rng.nextBoolean()) {
+                sb.append(rng.nextInt(1, 100));
+            } else {
+                sb.append(variable(rng));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String deepBrackets(final int nodes) {
+        // the innermost 'x+1' counts as 3 nodes, every pair of brackets as one more
+        final int depth = Math.max(0, nodes - 3);
+        return "(".repeat(depth) + "x+1" + ")".repeat(depth);
+    }
+
+    private static String powerTower(final Random rng, final int nodes) {
+        // every '^k' adds a PowerNode and a ConstantNode
+        final int height = Math.max(0, (nodes - 1) / 2);
+        final StringBuilder sb = new StringBuilder(1 + height * 2);
+        sb.append('x');
+        for (int i = 0; i < height; i++) {
+            sb.append('^').append(rng.nextInt(2, 4));
+        }
+        return sb.toString();
+    }
+
+    private static String bigConstant(final Random rng) {
+        final StringBuilder sb = new StringBuilder(BIG_CONSTANT_DIGITS);
+        sb.append(rng.nextInt(1, 10));
+        for (int i = 1; i < BIG_CONSTANT_DIGITS; i++) {
+            sb.append(rng.nextInt(10));
+        }
+        return sb.toString();
+    }
+
+    private static String bigConstants(final Random rng, final int nodes) {
+        // every 'c*x' term adds a MultiplyNode, a ConstantNode and a VariableNode
+        final int terms = Math.max(1, nodes / 3);
+        final StringBuilder sb = new StringBuilder(terms * (BIG_CONSTANT_DIGITS + 4));
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                sb.append('+');
+            }
+            sb.append(bigConstant(rng)).append('*').append(variable(rng));
+        }
+        return sb.toString();
+    }
+}
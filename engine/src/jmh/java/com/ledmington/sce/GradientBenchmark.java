@@ -0,0 +1,81 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.ledmington.sce.diff.Differentiator;
+import com.ledmington.sce.eval.CompiledExpression;
+import com.ledmington.sce.eval.GradientEvaluator;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.tokens.Tokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Compares forward-mode differentiation against evaluating the compiled symbolic derivatives, at a single point. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GradientBenchmark {
+
+    private static final List<String> VARIABLES = List.of("x", "y");
+    private static final double[] POINT = {0.5, 1.25};
+
+    @Param({"x^2+2*x*y+y^2-3/4", "(x+1)/(y-2)+x^3*y^5-7*x*y+x/y"})
+    private String expression;
+
+    private GradientEvaluator forward;
+    private CompiledExpression[] symbolic;
+    private double[] gradient;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Node root = Parser.parse(Tokenizer.tokenize(expression));
+        forward = GradientEvaluator.compile(root, VARIABLES);
+        final List<Node> derivatives = new Differentiator().gradient(root, VARIABLES);
+        symbolic = new CompiledExpression[derivatives.size()];
+        for (int i = 0; i < symbolic.length; i++) {
+            symbolic[i] = CompiledExpression.compile(derivatives.get(i), VARIABLES);
+        }
+        gradient = new double[VARIABLES.size()];
+    }
+
+    @Benchmark
+    public double[] forwardMode() {
+        forward.evaluate(POINT, gradient);
+        return gradient;
+    }
+
+    @Benchmark
+    public double[] symbolic() {
+        for (int i = 0; i < symbolic.length; i++) {
+            gradient[i] = symbolic[i].evaluate(POINT);
+        }
+        return gradient;
+    }
+}
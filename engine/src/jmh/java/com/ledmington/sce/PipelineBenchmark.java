@@ -0,0 +1,117 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.tokens.Token;
+import com.ledmington.sce.tokens.TokenStream;
+import com.ledmington.sce.tokens.Tokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures each stage of the tokenize, parse and simplify pipeline, along with the whole fixpoint loop run by the CLI.
+ * Allocation rates are reported by the 'gc' profiler configured in the jmh block of the build script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PipelineBenchmark {
+
+    @Param({"WIDE_SUM", "DEEP_BRACKETS", "POWER_TOWER", "BIG_CONSTANTS"})
+    private ExpressionCorpus.Shape shape;
+
+    @Param({"10", "1000", "100000"})
+    private int nodes;
+
+    private String input;
+    private Token[] tokens;
+    private TokenStream compactTokens;
+    private Node root;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = ExpressionCorpus.generate(shape, nodes);
+        tokens = Tokenizer.tokenize(input);
+        compactTokens = Tokenizer.tokenizeCompact(input);
+        root = Parser.parse(tokens);
+    }
+
+    @Benchmark
+    public Token[] tokenize() {
+        return Tokenizer.tokenize(input);
+    }
+
+    @Benchmark
+    public TokenStream tokenizeCompact() {
+        return Tokenizer.tokenizeCompact(input);
+    }
+
+    @Benchmark
+    public Node parse() {
+        return Parser.parse(tokens);
+    }
+
+    @Benchmark
+    public Node parseCompact() {
+        return Parser.parse(compactTokens);
+    }
+
+    @Benchmark
+    public Node simplify() {
+        return Engine.simplify(root);
+    }
+
+    @Benchmark
+    public Node fixpoint() {
+        Node current = root;
+        Node next = Engine.simplify(current);
+        while (!current.equals(next)) {
+            current = next;
+            next = Engine.simplify(current);
+        }
+        return next;
+    }
+
+    @Benchmark
+    public Node normalize() {
+        return Engine.normalize(root);
+    }
+
+    @Benchmark
+    public Node pipeline() {
+        Node current = Parser.parse(Tokenizer.tokenize(input));
+        Node next = Engine.simplify(current);
+        while (!current.equals(next)) {
+            current = next;
+            next = Engine.simplify(current);
+        }
+        return next;
+    }
+}
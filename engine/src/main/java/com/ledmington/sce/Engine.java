@@ -17,34 +17,44 @@
  */
 package com.ledmington.sce;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.IntStream;
+import java.util.function.UnaryOperator;
 
 import com.ledmington.sce.nodes.BracketNode;
 import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.EquationNode;
 import com.ledmington.sce.nodes.FractionNode;
 import com.ledmington.sce.nodes.MultiNode;
 import com.ledmington.sce.nodes.MultiplyNode;
 import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
 import com.ledmington.sce.nodes.PlusNode;
 import com.ledmington.sce.nodes.PowerNode;
 import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.numbers.GaussianRational;
+import com.ledmington.sce.numbers.Powers;
+import com.ledmington.sce.numbers.Rational;
+import com.ledmington.sce.poly.Polynomial;
 
 public final class Engine {
 
     private Engine() {}
 
     private static boolean containsSameTypeChildren(final MultiNode mn, final Predicate<Node> isSameType) {
-        for (int i = 0; i < mn.getNumChildren(); i++) {
-            if (isSameType.test(mn.getChild(i))) {
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            if (isSameType.test(mn.getDistinctChild(i))) {
                 return true;
             }
         }
@@ -54,9 +64,10 @@ public final class Engine {
     private static boolean enoughConstants(final MultiNode mn) {
         final int minimumConstants = 2;
         int count = 0;
-        for (int i = 0; i < mn.getNumChildren(); i++) {
-            if (mn.getChild(i).isConstant()) {
-                count++;
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            // only rationals are folded, so powers left symbolic like 2^(1/2) do not count
+            if (Rational.isRational(mn.getDistinctChild(i))) {
+                count += mn.getMultiplicity(i);
 
                 // early exit
                 if (count >= minimumConstants) {
@@ -68,8 +79,9 @@ public final class Engine {
     }
 
     private static boolean containsIdentity(final MultiNode mn) {
-        for (int i = 0; i < mn.getNumChildren(); i++) {
-            if (mn.getChild(i).equals(mn.identity())) {
+        final Node identity = mn.identity();
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            if (mn.getDistinctChild(i).equals(identity)) {
                 return true;
             }
         }
@@ -77,19 +89,37 @@ public final class Engine {
     }
 
     private static boolean atLeastTwoEqualNodes(final MultiNode mn) {
-        return IntStream.range(0, mn.getNumChildren())
-                        .mapToObj(i -> mn.getChild(i))
-                        .distinct()
-                        .count()
-                < (long) mn.getNumChildren();
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            if (mn.getMultiplicity(i) > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a factor of the given product which is a fraction with a non-constant denominator, or null if there is
+     * none. Fractions of constants are left as coefficients, so that complex rationals like 5/2*i keep their form.
+     */
+    private static FractionNode fractionFactor(final MultiNode mn) {
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            if (mn.getDistinctChild(i) instanceof FractionNode fn
+                    && !fn.denominator().isConstant()) {
+                return fn;
+            }
+        }
+        return null;
     }
 
     private static Node simplifyMultiNode(
             final MultiNode mn,
             final Predicate<Node> isSameType,
             final Function<List<Node>, MultiNode> constructor,
-            final BinaryOperator<FractionNode> op,
-            final BiFunction<Node, Integer, Node> combinator) {
+            final BinaryOperator<Rational> op,
+            final BinaryOperator<GaussianRational> complexOp,
+            final Function<GaussianRational, List<Node>> complexNodes,
+            final BiFunction<Node, Integer, Node> combinator,
+            final UnaryOperator<Node> recurse) {
 
         // if there's only one children node, we don't need the MultiNode anymore
         if (mn.getNumChildren() == 1) {
@@ -120,24 +150,19 @@ public final class Engine {
                     nodes.add(mn.getChild(i));
                 }
             }
-            return constructor.apply(nodes);
+            // 1*1 = 1
+            return nodes.isEmpty() ? mn.identity() : constructor.apply(nodes);
         }
 
         // If there are at least 2 constants, we can fold them
         if (enoughConstants(mn)) {
             // 1+x+2 = 3+x
-            FractionNode r = new FractionNode(mn.identity(), ConstantNode.of(1));
+            // the whole run is folded at once, reducing after each step
+            Rational r = Rational.of(mn.identity());
             int first = -1;
             for (int i = 0; i < mn.getNumChildren(); i++) {
-                if (mn.getChild(i) instanceof ConstantNode cn) {
-                    r = op.apply(r, new FractionNode(cn, ConstantNode.of(1)));
-                    if (first == -1) {
-                        first = i;
-                    }
-                } else if (mn.getChild(i) instanceof FractionNode fn
-                        && fn.numerator() instanceof ConstantNode
-                        && fn.denominator() instanceof ConstantNode) {
-                    r = op.apply(r, fn);
+                if (Rational.isRational(mn.getChild(i))) {
+                    r = op.apply(r, Rational.of(mn.getChild(i)));
                     if (first == -1) {
                         first = i;
                     }
@@ -149,16 +174,12 @@ public final class Engine {
             final List<Node> nodes = new ArrayList<>();
             for (int i = 0; i < mn.getNumChildren(); i++) {
                 if (i == first) {
-                    // add the result in the same position of the first constant
-                    nodes.add(simplify(r));
+                    // add the result in the same position of the first constant, already in lowest terms
+                    nodes.add(r.toNode());
                 } else {
-                    final boolean isConstant = (mn.getChild(i) instanceof ConstantNode
-                            || (mn.getChild(i) instanceof FractionNode fn
-                                    && fn.numerator() instanceof ConstantNode
-                                    && fn.denominator() instanceof ConstantNode));
                     // we do not need to add the constants, since we folded them into r
-                    if (!isConstant) {
-                        nodes.add(simplify(mn.getChild(i)));
+                    if (!Rational.isRational(mn.getChild(i))) {
+                        nodes.add(recurse.apply(mn.getChild(i)));
                     }
                 }
             }
@@ -166,29 +187,58 @@ public final class Engine {
             return constructor.apply(nodes);
         }
 
+        // constants with the imaginary unit are folded as complex rationals, unless they are already in canonical form
+        // (1+i)*(1-i) = 2
+        final Map<Node, Integer> constants = new HashMap<>();
+        GaussianRational g = GaussianRational.of(Rational.of(mn.identity()));
+        boolean complex = false;
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            final Node child = mn.getDistinctChild(i);
+            if (GaussianRational.isGaussian(child)) {
+                final GaussianRational value = GaussianRational.of(child);
+                constants.put(child, mn.getMultiplicity(i));
+                complex = complex || !value.isReal();
+                for (int k = 0; k < mn.getMultiplicity(i); k++) {
+                    g = complexOp.apply(g, value);
+                }
+            }
+        }
+        if (complex) {
+            final List<Node> folded = complexNodes.apply(g);
+            final Map<Node, Integer> canonical = new HashMap<>();
+            for (final Node n : folded) {
+                canonical.merge(n, 1, Integer::sum);
+            }
+            if (!canonical.equals(constants)) {
+                if (constants.values().stream().mapToInt(Integer::intValue).sum() == mn.getNumChildren()) {
+                    // (1+2*i)*(3-i) = 5+5*i, which needs no brackets on its own
+                    return g.toNode();
+                }
+                final List<Node> nodes = new ArrayList<>(folded);
+                for (int i = 0; i < mn.getNumChildren(); i++) {
+                    if (!constants.containsKey(mn.getChild(i))) {
+                        nodes.add(recurse.apply(mn.getChild(i)));
+                    }
+                }
+                return constructor.apply(nodes);
+            }
+        }
+
         if (atLeastTwoEqualNodes(mn)) {
             // 3+x+x = 3+2*x
             // 3*x*x = 3*x^2
 
-            final Map<Node, Integer> occurrences = new HashMap<>();
-            for (int i = 0; i < mn.getNumChildren(); i++) {
-                final Node n = mn.getChild(i);
-                if (occurrences.containsKey(n)) {
-                    occurrences.put(n, occurrences.get(n) + 1);
-                } else {
-                    occurrences.put(n, 1);
-                }
-            }
-
             final List<Node> nodes = new ArrayList<>();
-            for (final Map.Entry<Node, Integer> e : occurrences.entrySet()) {
-                if (e.getValue() < 1) {
+            for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+                final Node n = mn.getDistinctChild(i);
+                final int count = mn.getMultiplicity(i);
+                if (count < 1) {
                     throw new IllegalStateException();
                 }
-                if (e.getValue() == 1) {
-                    nodes.add(e.getKey());
+                if (count == 1) {
+                    nodes.add(n);
                 } else {
-                    nodes.add(combinator.apply(e.getKey(), e.getValue()));
+                    nodes.add(combinator.apply(n, count));
                 }
             }
 
@@ -198,13 +248,254 @@ public final class Engine {
         // general case, simplify each node separately
         final List<Node> nodes = new ArrayList<>();
         for (int i = 0; i < mn.getNumChildren(); i++) {
-            nodes.add(simplify(mn.getChild(i)));
+            nodes.add(recurse.apply(mn.getChild(i)));
         }
 
         return constructor.apply(nodes);
     }
 
+    /**
+     * Applies a single simplification pass to the given tree. The result may still be simplified further: callers
+     * usually repeat this until a fixpoint is reached, or use {@link #normalize(Node)} instead.
+     *
+     * @param root The root of the tree to simplify.
+     * @return The simplified tree.
+     */
     public static Node simplify(final Node root) {
+        return rewrite(root, Engine::simplify);
+    }
+
+    /**
+     * Simplifies the given tree until no more rewrites apply, in a single bottom-up traversal. Each distinct subtree is
+     * normalized only once, so subtrees left untouched by a rewrite are not visited again.
+     *
+     * @param root The root of the tree to normalize.
+     * @return The normal form of the tree.
+     */
+    public static Node normalize(final Node root) {
+        return normalize(root, (before, after) -> {});
+    }
+
+    /**
+     * Simplifies the given tree until no more rewrites apply, in a single bottom-up traversal, notifying each rewrite
+     * to the given listener.
+     *
+     * @param root The root of the tree to normalize.
+     * @param onRewrite The listener receiving each rewritten subtree before and after the rewrite.
+     * @return The normal form of the tree.
+     */
+    public static Node normalize(final Node root, final BiConsumer<Node, Node> onRewrite) {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(onRewrite);
+        return normalize(root, new HashMap<>(), null, EngineConstants.generation(), onRewrite);
+    }
+
+    /**
+     * Simplifies the given tree until no more rewrites apply, looking up and storing the normal form of each subtree in
+     * the given cache.
+     *
+     * @param root The root of the tree to normalize.
+     * @param cache The cache of normal forms.
+     * @return The normal form of the tree.
+     */
+    public static Node normalize(final Node root, final SimplificationCache cache) {
+        return normalize(root, cache, (before, after) -> {});
+    }
+
+    /**
+     * Simplifies the given tree until no more rewrites apply, looking up and storing the normal form of each subtree in
+     * the given cache. Subtrees found in the cache are not rewritten, so their rewrites are not notified to the
+     * listener.
+     *
+     * @param root The root of the tree to normalize.
+     * @param cache The cache of normal forms.
+     * @param onRewrite The listener receiving each rewritten subtree before and after the rewrite.
+     * @return The normal form of the tree.
+     */
+    public static Node normalize(
+            final Node root, final SimplificationCache cache, final BiConsumer<Node, Node> onRewrite) {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(cache);
+        Objects.requireNonNull(onRewrite);
+        return normalize(root, new HashMap<>(), cache, EngineConstants.generation(), onRewrite);
+    }
+
+    private static Node normalize(
+            final Node root,
+            final Map<Node, Node> normalForms,
+            final SimplificationCache cache,
+            final long generation,
+            final BiConsumer<Node, Node> onRewrite) {
+        Node cached = normalForms.get(root);
+        if (cached != null) {
+            return cached;
+        }
+        if (cache != null) {
+            cached = cache.get(root);
+            if (cached != null) {
+                normalForms.put(root, cached);
+                return cached;
+            }
+        }
+
+        final UnaryOperator<Node> recurse = n -> normalize(n, normalForms, cache, generation, onRewrite);
+        Node current = root;
+        Node next = rewrite(current, recurse);
+        while (!current.equals(next)) {
+            onRewrite.accept(current, next);
+            current = next;
+            next = rewrite(current, recurse);
+        }
+
+        normalForms.put(root, current);
+        normalForms.put(current, current);
+        if (cache != null) {
+            // the settings may have changed while normalizing, making this normal form stale
+            cache.put(root, current, generation);
+        }
+        return current;
+    }
+
+    /**
+     * Distributes all products and integer powers of sums in the given tree, then merges like terms. Each side of an
+     * equation is expanded on its own.
+     *
+     * @param root The root of the tree to expand.
+     * @return The expanded tree, as a sum of terms sorted by decreasing degree.
+     */
+    public static Node expand(final Node root) {
+        Objects.requireNonNull(root);
+        if (root instanceof EquationNode en) {
+            return NodeFactory.equation(expand(en.lhs()), expand(en.rhs()));
+        }
+        return Polynomial.expand(root).toNode();
+    }
+
+    /**
+     * Merges like terms in the given tree, regardless of the order of their factors, without distributing products or
+     * powers of sums. Each side of an equation is collected on its own.
+     *
+     * @param root The root of the tree to collect.
+     * @return The collected tree, as a sum of terms sorted by decreasing degree.
+     */
+    public static Node collect(final Node root) {
+        Objects.requireNonNull(root);
+        if (root instanceof EquationNode en) {
+            return NodeFactory.equation(collect(en.lhs()), collect(en.rhs()));
+        }
+        return Polynomial.collect(root).toNode();
+    }
+
+    /**
+     * Computes the residue of a constant integer expression modulo the given positive integer, without computing the
+     * value of the expression. Powers are computed by modular exponentiation, and fractions by multiplying by the
+     * modular inverse of their denominator.
+     *
+     * @param root The root of the tree, with only integers, fractions, sums, products and powers with constant integer
+     *     exponents.
+     * @param modulus The positive modulus.
+     * @return The residue, between 0 and the modulus, excluded.
+     * @throws IllegalArgumentException If the tree contains other nodes.
+     * @throws ArithmeticException If a denominator has no inverse modulo the given modulus.
+     */
+    public static BigInteger residue(final Node root, final BigInteger modulus) {
+        Objects.requireNonNull(root);
+        if (modulus.signum() <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid modulus: %s", modulus));
+        }
+        return switch (root) {
+            case ConstantNode cn -> cn.value().mod(modulus);
+            case BracketNode bn -> residue(bn.inner(), modulus);
+            case PlusNode pn -> {
+                BigInteger r = BigInteger.ZERO;
+                for (int i = 0; i < pn.getNumChildren(); i++) {
+                    r = r.add(residue(pn.getChild(i), modulus));
+                }
+                yield r.mod(modulus);
+            }
+            case MultiplyNode mn -> {
+                BigInteger r = BigInteger.ONE.mod(modulus);
+                for (int i = 0; i < mn.getNumChildren(); i++) {
+                    r = r.multiply(residue(mn.getChild(i), modulus)).mod(modulus);
+                }
+                yield r;
+            }
+            case FractionNode fn -> residue(fn.numerator(), modulus)
+                    .multiply(residue(fn.denominator(), modulus).modInverse(modulus))
+                    .mod(modulus);
+            case PowerNode pn -> {
+                if (!(withoutBrackets(pn.exponent()) instanceof ConstantNode e)) {
+                    throw new IllegalArgumentException(
+                            String.format("Non-integer exponent in '%s'", pn.toExpression()));
+                }
+                yield residue(pn.base(), modulus).modPow(e.value(), modulus);
+            }
+            default -> throw new IllegalArgumentException(
+                    String.format("'%s' is not a constant integer expression", root.toExpression()));
+        };
+    }
+
+    /**
+     * Approximates the value of a constant expression to the given precision. Unlike folding, large powers are never
+     * computed exactly, so this is fast even for powers which {@link #normalize(Node)} leaves symbolic.
+     *
+     * @param root The root of the tree, with only rational constants, sums, products, fractions and powers with
+     *     rational exponents.
+     * @param mc The precision of the result.
+     * @return The approximated value.
+     * @throws IllegalArgumentException If the tree contains other nodes.
+     * @throws ArithmeticException If the value is not real, or too large or too small for a {@link BigDecimal}.
+     */
+    public static BigDecimal approximate(final Node root, final MathContext mc) {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(mc);
+        // guard digits for the intermediate results
+        final MathContext work = new MathContext(mc.getPrecision() + 5, mc.getRoundingMode());
+        return approximateNode(root, work).round(mc);
+    }
+
+    private static Node withoutBrackets(final Node n) {
+        Node result = n;
+        while (result instanceof BracketNode bn) {
+            result = bn.inner();
+        }
+        return result;
+    }
+
+    private static BigDecimal approximateNode(final Node root, final MathContext mc) {
+        return switch (root) {
+            case ConstantNode cn -> new BigDecimal(cn.value());
+            case BracketNode bn -> approximateNode(bn.inner(), mc);
+            case PlusNode pn -> {
+                BigDecimal r = BigDecimal.ZERO;
+                for (int i = 0; i < pn.getNumChildren(); i++) {
+                    r = r.add(approximateNode(pn.getChild(i), mc), mc);
+                }
+                yield r;
+            }
+            case MultiplyNode mn -> {
+                BigDecimal r = BigDecimal.ONE;
+                for (int i = 0; i < mn.getNumChildren(); i++) {
+                    r = r.multiply(approximateNode(mn.getChild(i), mc), mc);
+                }
+                yield r;
+            }
+            case FractionNode fn -> approximateNode(fn.numerator(), mc)
+                    .divide(approximateNode(fn.denominator(), mc), mc);
+            case PowerNode pn -> {
+                final Node exponent = withoutBrackets(pn.exponent());
+                if (!Rational.isRational(exponent)) {
+                    throw new IllegalArgumentException(
+                            String.format("Non-rational exponent in '%s'", pn.toExpression()));
+                }
+                yield Powers.approximate(approximateNode(pn.base(), mc), Rational.of(exponent), mc);
+            }
+            default -> throw new IllegalArgumentException(
+                    String.format("'%s' is not a constant expression", root.toExpression()));
+        };
+    }
+
+    private static Node rewrite(final Node root, final UnaryOperator<Node> recurse) {
         return switch (root) {
             case BracketNode bn -> {
                 switch (bn.inner()) {
@@ -212,106 +503,122 @@ public final class Engine {
                         yield cn;
                     }
                     case FractionNode fn -> {
-                        yield new FractionNode(simplify(fn.numerator()), simplify(fn.denominator()));
+                        yield NodeFactory.fraction(recurse.apply(fn.numerator()), recurse.apply(fn.denominator()));
                     }
                     case VariableNode vn -> {
                         yield vn;
                     }
                     default -> {
-                        yield new BracketNode(simplify(bn.inner()));
+                        yield NodeFactory.bracket(recurse.apply(bn.inner()));
                     }
                 }
             }
             case PlusNode pn -> simplifyMultiNode(
                     pn,
                     x -> x instanceof PlusNode,
-                    PlusNode::new,
-                    (a, b) -> {
-                        final BigInteger d1 = ((ConstantNode) a.denominator()).value();
-                        final BigInteger d2 = ((ConstantNode) b.denominator()).value();
-                        final BigInteger d = d1.multiply(d2);
-                        final BigInteger n1 = ((ConstantNode) a.numerator()).value();
-                        final BigInteger n2 = ((ConstantNode) b.numerator()).value();
-                        final BigInteger n = n1.multiply(d2).add(n2.multiply(d1));
-                        return new FractionNode(new ConstantNode(n), new ConstantNode(d));
-                    },
+                    NodeFactory::plus,
+                    Rational::add,
+                    GaussianRational::add,
+                    GaussianRational::toTerms,
                     (n, i) -> {
-                        return new MultiplyNode(List.of(ConstantNode.of(i), n));
-                    });
-            case MultiplyNode mn -> simplifyMultiNode(
-                    mn,
-                    x -> x instanceof MultiplyNode,
-                    MultiplyNode::new,
-                    (a, b) -> {
-                        final BigInteger d1 = ((ConstantNode) a.denominator()).value();
-                        final BigInteger d2 = ((ConstantNode) b.denominator()).value();
-                        final BigInteger d = d1.multiply(d2);
-                        final BigInteger n1 = ((ConstantNode) a.numerator()).value();
-                        final BigInteger n2 = ((ConstantNode) b.numerator()).value();
-                        final BigInteger n = n1.multiply(n2);
-                        return new FractionNode(new ConstantNode(n), new ConstantNode(d));
+                        return NodeFactory.multiply(List.of(ConstantNode.of(i), n));
                     },
-                    (n, i) -> {
-                        return new PowerNode(n, ConstantNode.of(i));
-                    });
+                    recurse);
+            case MultiplyNode mn -> {
+                final FractionNode fn = fractionFactor(mn);
+                if (fn != null) {
+                    // 2*(3/x) = (2*3)/x
+                    final List<Node> factors = new ArrayList<>(mn.getNumChildren());
+                    boolean found = false;
+                    for (int i = 0; i < mn.getNumChildren(); i++) {
+                        if (!found && mn.getChild(i).equals(fn)) {
+                            factors.add(fn.numerator());
+                            found = true;
+                        } else {
+                            factors.add(mn.getChild(i));
+                        }
+                    }
+                    yield NodeFactory.fraction(
+                            recurse.apply(NodeFactory.multiply(factors)), recurse.apply(fn.denominator()));
+                }
+                yield simplifyMultiNode(
+                        mn,
+                        x -> x instanceof MultiplyNode,
+                        NodeFactory::multiply,
+                        Rational::multiply,
+                        GaussianRational::multiply,
+                        GaussianRational::toFactors,
+                        (n, i) -> {
+                            return NodeFactory.power(n, ConstantNode.of(i));
+                        },
+                        recurse);
+            }
             case FractionNode fn -> {
-                if (fn.denominator() instanceof ConstantNode cn && cn.value().compareTo(BigInteger.ONE) == 0) {
+                if (fn.denominator() instanceof ConstantNode cn && cn.equals(ConstantNode.of(1))) {
                     yield fn.numerator();
                 }
                 if (fn.numerator() instanceof FractionNode num && fn.denominator() instanceof ConstantNode cn) {
-                    yield new FractionNode(
-                            simplify(num.numerator()), simplify(new MultiplyNode(num.denominator(), cn)));
+                    yield NodeFactory.fraction(
+                            recurse.apply(num.numerator()), recurse.apply(NodeFactory.multiply(num.denominator(), cn)));
                 }
                 if (fn.numerator() instanceof ConstantNode cn && fn.denominator() instanceof FractionNode den) {
-                    yield new FractionNode(
-                            simplify(new MultiplyNode(cn, den.denominator())), simplify(den.numerator()));
+                    yield NodeFactory.fraction(
+                            recurse.apply(NodeFactory.multiply(cn, den.denominator())), recurse.apply(den.numerator()));
                 }
                 if (fn.numerator() instanceof FractionNode num && fn.denominator() instanceof FractionNode den) {
-                    yield new FractionNode(
-                            simplify(new MultiplyNode(num.numerator(), den.denominator())),
-                            simplify(new MultiplyNode(num.denominator(), den.numerator())));
+                    yield NodeFactory.fraction(
+                            recurse.apply(NodeFactory.multiply(num.numerator(), den.denominator())),
+                            recurse.apply(NodeFactory.multiply(num.denominator(), den.numerator())));
                 }
-                if (fn.numerator() instanceof ConstantNode num && fn.denominator() instanceof ConstantNode den) {
-                    final BigInteger mcd = num.value().gcd(den.value());
-                    final boolean isNumeratorNegative = num.value().compareTo(BigInteger.ZERO) < 0;
-                    final boolean isDenominatorNegative = den.value().compareTo(BigInteger.ZERO) < 0;
-                    final BigInteger newNumerator = num.value().divide(mcd).abs();
-                    final BigInteger newDenominator = den.value().divide(mcd).abs();
-
-                    if (isNumeratorNegative && isDenominatorNegative) {
-                        yield new FractionNode(new ConstantNode(newNumerator), new ConstantNode(newDenominator));
+                if (Rational.isRational(fn)) {
+                    yield Rational.of(fn).toNode();
+                }
+                if (GaussianRational.isGaussian(fn.numerator()) && GaussianRational.isGaussian(fn.denominator())) {
+                    // (2+3*i)/(1-i) = -1/2+5/2*i
+                    final GaussianRational den = GaussianRational.of(fn.denominator());
+                    if (!den.isZero()) {
+                        yield GaussianRational.of(fn.numerator()).divide(den).toNode();
                     }
-
-                    yield new FractionNode(
-                            new ConstantNode(
-                                    (isNumeratorNegative || isDenominatorNegative)
-                                            ? newNumerator.multiply(new BigInteger("-1"))
-                                            : newNumerator),
-                            new ConstantNode(newDenominator));
                 }
 
-                yield new FractionNode(simplify(fn.numerator()), simplify(fn.denominator()));
+                yield NodeFactory.fraction(recurse.apply(fn.numerator()), recurse.apply(fn.denominator()));
             }
             case PowerNode pn -> {
-                if (pn.base() instanceof ConstantNode bn && pn.exponent() instanceof ConstantNode en) {
-                    yield new ConstantNode(bn.value().pow(en.value().intValue()));
+                if (Rational.isRational(pn.base()) && Rational.isRational(pn.exponent())) {
+                    // powers too large to be computed quickly stay symbolic
+                    final Rational folded = Powers.fold(
+                            Rational.of(pn.base()),
+                            Rational.of(pn.exponent()),
+                            EngineConstants.getMaxFoldedPowerBits());
+                    if (folded != null) {
+                        yield folded.toNode();
+                    }
                 }
                 if (pn.base() instanceof FractionNode fn
                         && fn.numerator() instanceof ConstantNode num
                         && fn.denominator() instanceof ConstantNode den) {
-                    yield new FractionNode(
-                            simplify(new PowerNode(num, pn.exponent())), simplify(new PowerNode(den, pn.exponent())));
+                    yield NodeFactory.fraction(
+                            recurse.apply(NodeFactory.power(num, pn.exponent())),
+                            recurse.apply(NodeFactory.power(den, pn.exponent())));
                 }
                 if (pn.base().equals(EngineConstants.getImaginaryUnit()) && pn.exponent() instanceof ConstantNode e) {
-                    yield switch (e.value().mod(BigInteger.valueOf(4)).intValue()) {
+                    yield switch (e.floorMod(4)) {
                         case 0 -> ConstantNode.of(1);
                         case 1 -> EngineConstants.getImaginaryUnit();
                         case 2 -> ConstantNode.of(-1);
-                        case 3 -> new MultiplyNode(ConstantNode.of(-1), EngineConstants.getImaginaryUnit());
+                        case 3 -> NodeFactory.multiply(ConstantNode.of(-1), EngineConstants.getImaginaryUnit());
                         default -> throw new IllegalStateException();
                     };
                 }
-                yield new PowerNode(simplify(pn.base()), simplify(pn.exponent()));
+                if (pn.exponent() instanceof ConstantNode e && GaussianRational.isGaussian(pn.base())) {
+                    // (1+i)^4 = -4, by repeated squaring
+                    final GaussianRational folded = Powers.fold(
+                            GaussianRational.of(pn.base()), e.value(), EngineConstants.getMaxFoldedPowerBits());
+                    if (folded != null) {
+                        yield folded.toNode();
+                    }
+                }
+                yield NodeFactory.power(recurse.apply(pn.base()), recurse.apply(pn.exponent()));
             }
             case null -> throw new NullPointerException();
             default -> root;
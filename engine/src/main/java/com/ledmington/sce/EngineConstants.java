@@ -18,24 +18,87 @@
 package com.ledmington.sce;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ledmington.sce.nodes.Node;
-import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.nodes.NodeFactory;
 
 public final class EngineConstants {
 
-    private static String imaginaryUnit = "i";
+    // the default unit is built on first use, to keep class initialization cheap
+    private static final class DefaultImaginaryUnit {
+        private static final Node INSTANCE = NodeFactory.variable("i");
+    }
+
+    // null until a unit is set, meaning the default one
+    private static volatile Node imaginaryUnit;
+
+    private static volatile long maxFoldedPowerBits = 1L << 16;
+
+    private static volatile long maxExpandedTerms = 1L << 12;
+
+    private static final AtomicLong GENERATION = new AtomicLong();
 
     public static void setImaginaryUnit(final String unit) {
         Objects.requireNonNull(unit);
         if (unit.isBlank() || unit.isEmpty()) {
             throw new IllegalArgumentException("Invalid imaginary unit");
         }
-        imaginaryUnit = unit;
+        imaginaryUnit = NodeFactory.variable(unit);
+        GENERATION.incrementAndGet();
     }
 
     public static Node getImaginaryUnit() {
-        return new VariableNode(imaginaryUnit);
+        final Node unit = imaginaryUnit;
+        return unit == null ? DefaultImaginaryUnit.INSTANCE : unit;
+    }
+
+    /**
+     * Sets the largest power of constants to be folded into a single constant, as the estimated number of bits of the
+     * result. Larger powers stay symbolic.
+     *
+     * @param bits The maximum number of bits, non-negative.
+     * @see com.ledmington.sce.numbers.Powers#estimateBits(com.ledmington.sce.numbers.Rational, java.math.BigInteger)
+     */
+    public static void setMaxFoldedPowerBits(final long bits) {
+        if (bits < 0L) {
+            throw new IllegalArgumentException(String.format("Invalid number of bits: %,d", bits));
+        }
+        maxFoldedPowerBits = bits;
+        GENERATION.incrementAndGet();
+    }
+
+    public static long getMaxFoldedPowerBits() {
+        return maxFoldedPowerBits;
+    }
+
+    /**
+     * Sets the largest number of terms a product or a power may be expanded into, as estimated before expanding it.
+     * Larger products and powers stay symbolic.
+     *
+     * @param terms The maximum number of terms, positive.
+     * @see com.ledmington.sce.poly.Polynomial#expand(Node)
+     */
+    public static void setMaxExpandedTerms(final long terms) {
+        if (terms < 1L) {
+            throw new IllegalArgumentException(String.format("Invalid number of terms: %,d", terms));
+        }
+        maxExpandedTerms = terms;
+        GENERATION.incrementAndGet();
+    }
+
+    public static long getMaxExpandedTerms() {
+        return maxExpandedTerms;
+    }
+
+    /**
+     * Returns a number which changes each time one of the settings is changed, so that results computed under different
+     * settings can be told apart.
+     *
+     * @return The current generation of the settings.
+     */
+    public static long generation() {
+        return GENERATION.get();
     }
 
     private EngineConstants() {}
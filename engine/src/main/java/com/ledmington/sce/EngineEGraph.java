@@ -0,0 +1,173 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import com.ledmington.sce.egraph.EGraph;
+import com.ledmington.sce.egraph.ENode;
+import com.ledmington.sce.egraph.SaturationConfig;
+import com.ledmington.sce.engine.Rewrite;
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * An engine based on equality saturation. Instead of committing to one rewrite at a time, every rewrite is added to an
+ * {@link EGraph} next to the tree it came from, until no rule adds anything new or the limits are reached. The smallest
+ * equivalent tree is then extracted, once. Extraction picks arbitrarily among trees of the same size, so the extracted
+ * tree is normalized and, when it is not strictly smaller, the greedy normal form of {@link Engine#normalize(Node)} is
+ * returned instead.
+ *
+ * <p>Rules are matched against every member of the classes: each e-node is instantiated with each member of each of its
+ * child classes in turn, so an equality recorded in the e-graph lets a rule fire on a form which is not the cheapest
+ * one. Deeper levels are filled in with the first tree of their class. Each instantiated tree is given to the rules
+ * only once during a saturation.
+ */
+public final class EngineEGraph {
+
+    // the most instantiations tried for a single e-node in each iteration, since they grow with the sizes of its child
+    // classes
+    private static final int MAX_MATCHES_PER_NODE = 64;
+
+    private EngineEGraph() {}
+
+    /**
+     * Simplifies the given tree by equality saturation, with the default configuration.
+     *
+     * @param root The tree to simplify.
+     * @return The smallest equivalent tree found.
+     */
+    public static Node simplify(final Node root) {
+        return simplify(root, SaturationConfig.defaults());
+    }
+
+    /**
+     * Simplifies the given tree by equality saturation, with the rules and limits of the given configuration.
+     *
+     * @param root The tree to simplify.
+     * @param config The saturation configuration.
+     * @return The smallest equivalent tree found.
+     */
+    public static Node simplify(final Node root, final SaturationConfig config) {
+        final EGraph graph = saturate(root, config);
+        Node best = graph.extract(graph.add(root));
+        final Node normalized = Engine.normalize(best);
+        if (normalized.size() <= best.size()) {
+            best = normalized;
+        }
+        // ties go to the greedy normal form
+        final Node greedy = Engine.normalize(root);
+        return greedy.size() <= best.size() ? greedy : best;
+    }
+
+    /**
+     * Builds the e-graph of the given tree and saturates it with the rules of the given configuration.
+     *
+     * @param root The tree.
+     * @param config The saturation configuration.
+     * @return The saturated e-graph, already rebuilt.
+     */
+    static EGraph saturate(final Node root, final SaturationConfig config) {
+        final EGraph graph = new EGraph();
+        graph.add(root);
+        final Set<Node> matched = new HashSet<>();
+
+        for (int it = 0; it < config.maxIterations(); it++) {
+            final int startNodes = graph.getNumNodes();
+            final Map<Integer, List<ENode>> classes = graph.classes();
+            final Map<Integer, List<Node>> members = new HashMap<>();
+            boolean changed = false;
+
+            for (final Map.Entry<Integer, List<ENode>> e : classes.entrySet()) {
+                for (final ENode en : e.getValue()) {
+                    for (final Node tree : instantiate(en, id -> members(graph, id, classes), members)) {
+                        if (!matched.add(tree)) {
+                            continue;
+                        }
+                        for (final Rewrite r : config.rewrites()) {
+                            for (final Node alternative : r.apply(tree)) {
+                                if (!alternative.equals(tree)) {
+                                    changed |= graph.union(e.getKey(), graph.add(alternative));
+                                }
+                            }
+                        }
+                        if (graph.getNumNodes() > config.maxNodes()) {
+                            graph.rebuild();
+                            return graph;
+                        }
+                    }
+                }
+            }
+
+            graph.rebuild();
+            if (!changed && graph.getNumNodes() == startNodes) {
+                // saturated
+                break;
+            }
+        }
+
+        return graph;
+    }
+
+    /** Returns the trees made of the given e-node applied to the members of its child classes. */
+    private static List<Node> instantiate(
+            final ENode en, final IntFunction<List<Node>> membersOf, final Map<Integer, List<Node>> members) {
+        final int n = en.getNumChildren();
+        final List<List<Node>> choices = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            choices.add(members.computeIfAbsent(en.getChild(i), membersOf::apply));
+        }
+
+        // the first tree of every child class, then one child at a time replaced by each of the other members
+        final List<Node> result = new ArrayList<>();
+        final List<Node> children = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            children.add(choices.get(i).getFirst());
+        }
+        result.add(en.toNode(children));
+        for (int i = 0; i < n && result.size() < MAX_MATCHES_PER_NODE; i++) {
+            final List<Node> alternatives = choices.get(i);
+            for (int k = 1; k < alternatives.size() && result.size() < MAX_MATCHES_PER_NODE; k++) {
+                children.set(i, alternatives.get(k));
+                result.add(en.toNode(children));
+            }
+            children.set(i, alternatives.getFirst());
+        }
+        return result;
+    }
+
+    /** Returns the first tree of the given class followed by each of its members, one level deep. */
+    private static List<Node> members(final EGraph graph, final int id, final Map<Integer, List<ENode>> classes) {
+        final Set<Node> members = new LinkedHashSet<>();
+        members.add(graph.term(id));
+        for (final ENode m : classes.getOrDefault(id, List.of())) {
+            final List<Node> children = new ArrayList<>(m.getNumChildren());
+            for (int i = 0; i < m.getNumChildren(); i++) {
+                children.add(graph.term(m.getChild(i)));
+            }
+            members.add(m.toNode(children));
+        }
+        return new ArrayList<>(members);
+    }
+}
@@ -17,35 +17,224 @@
  */
 package com.ledmington.sce;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import com.ledmington.sce.engine.Move;
+import com.ledmington.sce.engine.Rewrite;
+import com.ledmington.sce.engine.SearchConfig;
+import com.ledmington.sce.engine.Subtrees;
 import com.ledmington.sce.nodes.Node;
 
+/**
+ * An engine searching the space of equivalent trees, best-first, for the one with the lowest cost. The search keeps
+ * only the most promising trees within a fixed beam width and stops after expanding a fixed number of trees, or after
+ * applying the rewrites a fixed number of times. The alternatives proposed by each rewrite are remembered for the whole
+ * search, so subtrees shared by many trees are rewritten once.
+ */
 public final class EngineV2 {
 
+    private record State(Node tree, int cost, long seq) {}
+
+    // a move together with the tree it builds, so that each candidate tree is built only once
+    private record Candidate(Move move, Node tree) {}
+
+    // lower cost first, then older trees first, so that ties are broken deterministically
+    private static final Comparator<State> BY_COST =
+            Comparator.comparingInt(State::cost).thenComparingLong(State::seq);
+
     private EngineV2() {}
 
-    private static Set<Move> getAvailableMoves(final Node root) {
-        return Set.of();
+    private record Position(List<Integer> path, Node subtree) {}
+
+    /** The alternatives already proposed by each rewrite during one search, and how many rewrites were applied. */
+    private static final class Alternatives {
+
+        private final List<Rewrite> rewrites;
+        private final List<Map<Node, List<Node>>> cache;
+        private final AtomicLong applications = new AtomicLong();
+
+        Alternatives(final List<Rewrite> rewrites) {
+            this.rewrites = rewrites;
+            this.cache = new ArrayList<>(rewrites.size());
+            for (int i = 0; i < rewrites.size(); i++) {
+                cache.add(new ConcurrentHashMap<>());
+            }
+        }
+
+        List<Node> get(final int rule, final Node subtree) {
+            return cache.get(rule).computeIfAbsent(subtree, n -> {
+                applications.incrementAndGet();
+                return rewrites.get(rule).apply(n);
+            });
+        }
+
+        long applications() {
+            return applications.get();
+        }
     }
 
-    public static Node simplify(final Node root) {
-        final Set<Move> moves = getAvailableMoves(root);
-        Move bestMove = null;
-        int bestScore = root.size();
-        for (final Move m : moves) {
-            if (m.score() < bestScore) {
-                bestScore = m.score();
-                bestMove = m;
+    private static void collectPositions(final Node current, final List<Integer> path, final List<Position> positions) {
+        positions.add(new Position(List.copyOf(path), current));
+        for (int i = 0; i < Subtrees.count(current); i++) {
+            path.add(i);
+            collectPositions(Subtrees.get(current, i), path, positions);
+            path.removeLast();
+        }
+    }
+
+    private static List<Position> positions(final Node root) {
+        final List<Position> positions = new ArrayList<>();
+        collectPositions(root, new ArrayList<>(), positions);
+        return positions;
+    }
+
+    private static List<Candidate> candidates(
+            final Node root, final Position pos, final SearchConfig config, final Alternatives alternatives) {
+        final List<Candidate> candidates = new ArrayList<>();
+        for (int r = 0; r < config.rewrites().size(); r++) {
+            for (final Node replacement : alternatives.get(r, pos.subtree())) {
+                if (!replacement.equals(pos.subtree())) {
+                    final Move m = new Move(pos.path(), replacement, 0);
+                    final Node next = m.apply(root);
+                    candidates.add(new Candidate(
+                            new Move(pos.path(), replacement, config.cost().applyAsInt(next)), next));
+                }
             }
         }
+        return candidates;
+    }
 
-        if (bestMove == null) {
-            // no better move found
-            return root;
+    private static List<Candidate> candidates(
+            final Node root, final SearchConfig config, final Alternatives alternatives) {
+        final List<Candidate> candidates = new ArrayList<>();
+        for (final Position pos : positions(root)) {
+            candidates.addAll(candidates(root, pos, config, alternatives));
+        }
+        return candidates;
+    }
+
+    private static List<Candidate> candidates(
+            final Node root, final SearchConfig config, final Alternatives alternatives, final ForkJoinPool pool) {
+        final List<Position> positions = positions(root);
+        // an ordered parallel stream keeps the encounter order, which keeps tie-breaking deterministic
+        return pool.submit(() -> positions.parallelStream()
+                        .flatMap(pos -> candidates(root, pos, config, alternatives).stream())
+                        .toList())
+                .join();
+    }
+
+    /**
+     * Returns all the moves applicable to the given tree, in a deterministic order.
+     *
+     * @param root The tree.
+     * @param config The search configuration.
+     * @return The available moves.
+     */
+    static List<Move> getAvailableMoves(final Node root, final SearchConfig config) {
+        return candidates(root, config, new Alternatives(config.rewrites())).stream()
+                .map(Candidate::move)
+                .toList();
+    }
+
+    /**
+     * Returns all the moves applicable to the given tree, generating and scoring them on the given pool. The order is
+     * the same as {@link #getAvailableMoves(Node, SearchConfig)}.
+     *
+     * @param root The tree.
+     * @param config The search configuration.
+     * @param pool The pool running the rewrites and the cost function.
+     * @return The available moves.
+     */
+    static List<Move> getAvailableMoves(final Node root, final SearchConfig config, final ForkJoinPool pool) {
+        return candidates(root, config, new Alternatives(config.rewrites()), pool).stream()
+                .map(Candidate::move)
+                .toList();
+    }
+
+    /**
+     * Searches for the cheapest tree equivalent to the given one, with the default configuration.
+     *
+     * @param root The tree to simplify.
+     * @return The tree with the lowest cost found.
+     */
+    public static Node simplify(final Node root) {
+        return simplify(root, SearchConfig.defaults());
+    }
+
+    /**
+     * Searches for the cheapest tree equivalent to the given one, applying the rewrites of the given configuration.
+     *
+     * @param root The tree to simplify.
+     * @param config The search configuration.
+     * @return The tree with the lowest cost found.
+     */
+    public static Node simplify(final Node root, final SearchConfig config) {
+        final Alternatives alternatives = new Alternatives(config.rewrites());
+        return search(root, config, alternatives, tree -> candidates(tree, config, alternatives));
+    }
+
+    /**
+     * Runs the same search as {@link #simplify(Node, SearchConfig)}, generating and scoring the candidate moves of each
+     * tree in parallel on the given pool. Trees are still expanded one at a time, so the result is the same as the
+     * sequential search.
+     *
+     * @param root The tree to simplify.
+     * @param config The search configuration.
+     * @param pool The pool running the rewrites and the cost function.
+     * @return The tree with the lowest cost found.
+     */
+    public static Node simplify(final Node root, final SearchConfig config, final ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        final Alternatives alternatives = new Alternatives(config.rewrites());
+        return search(root, config, alternatives, tree -> candidates(tree, config, alternatives, pool));
+    }
+
+    private static Node search(
+            final Node root,
+            final SearchConfig config,
+            final Alternatives alternatives,
+            final Function<Node, List<Candidate>> candidates) {
+        final TreeSet<State> frontier = new TreeSet<>(BY_COST);
+        final Set<Node> visited = new HashSet<>();
+        long seq = 0L;
+
+        State best = new State(root, config.cost().applyAsInt(root), seq++);
+        frontier.add(best);
+        visited.add(root);
+
+        // the rewrite budget is checked between expansions, so that a parallel search stops at the same tree
+        for (int expanded = 0;
+                expanded < config.nodeBudget()
+                        && alternatives.applications() < config.rewriteBudget()
+                        && !frontier.isEmpty();
+                expanded++) {
+            final State current = frontier.pollFirst();
+            for (final Candidate c : candidates.apply(current.tree())) {
+                if (!visited.add(c.tree())) {
+                    continue;
+                }
+                final State s = new State(c.tree(), c.move().score(), seq++);
+                if (s.cost() < best.cost()) {
+                    best = s;
+                }
+                frontier.add(s);
+                if (frontier.size() > config.beamWidth()) {
+                    frontier.pollLast();
+                }
+            }
         }
 
-        return bestMove.apply(root);
+        return best.tree();
     }
 }
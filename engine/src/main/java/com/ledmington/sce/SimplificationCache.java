@@ -0,0 +1,146 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * A bounded cache mapping subtrees to their normal form, evicting the least recently used entries once full. It can be
+ * shared across threads and across calls to {@link Engine#normalize(Node, SimplificationCache)}, or each thread can own
+ * a separate instance to avoid contention. Normal forms depend on the settings in {@link EngineConstants}, so the cache
+ * drops all its entries whenever one of them changes.
+ */
+public final class SimplificationCache {
+
+    private final int capacity;
+    private final Map<Node, Node> normalForms;
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+    private long generation = EngineConstants.generation();
+
+    /**
+     * Creates an empty cache holding at most the given number of entries.
+     *
+     * @param capacity The maximum number of entries.
+     */
+    public SimplificationCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.format("Invalid capacity: %,d", capacity));
+        }
+        this.capacity = capacity;
+        this.normalForms = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Node, Node> eldest) {
+                if (size() > SimplificationCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached normal form of the given subtree, if present.
+     *
+     * @param node The subtree to look up.
+     * @return The normal form of the subtree or null, if not cached.
+     */
+    public synchronized Node get(final Node node) {
+        checkSettings();
+        final Node result = normalForms.get(Objects.requireNonNull(node));
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Records the normal form of the given subtree.
+     *
+     * @param node The subtree.
+     * @param normalForm The normal form of the subtree.
+     */
+    public synchronized void put(final Node node, final Node normalForm) {
+        checkSettings();
+        normalForms.put(Objects.requireNonNull(node), Objects.requireNonNull(normalForm));
+    }
+
+    /**
+     * Records the normal form of the given subtree, unless the settings changed since the given generation, in which
+     * case the normal form may be stale and is dropped.
+     *
+     * @param node The subtree.
+     * @param normalForm The normal form of the subtree.
+     * @param computedAt The generation of the settings read before computing the normal form.
+     */
+    synchronized void put(final Node node, final Node normalForm, final long computedAt) {
+        checkSettings();
+        if (computedAt == generation) {
+            normalForms.put(Objects.requireNonNull(node), Objects.requireNonNull(normalForm));
+        }
+    }
+
+    private void checkSettings() {
+        final long current = EngineConstants.generation();
+        if (current != generation) {
+            normalForms.clear();
+            generation = current;
+        }
+    }
+
+    /** Removes all the entries, keeping the statistics. */
+    public synchronized void clear() {
+        normalForms.clear();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return normalForms.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SimplificationCache(capacity=" + capacity + ";size=" + normalForms.size() + ";hits=" + hits + ";misses="
+                + misses + ";evictions=" + evictions + ")";
+    }
+}
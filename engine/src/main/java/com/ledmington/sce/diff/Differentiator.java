@@ -0,0 +1,278 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.diff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.EquationNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.numbers.Rational;
+
+/**
+ * Symbolic differentiation producing a DAG. The derivative of each distinct subtree is computed once and remembered,
+ * and the results reuse the subtrees of the original expression instead of copying them, so a derivative has at most a
+ * few nodes for each node of the expression even when its tree would be exponentially large. The products of n factors
+ * share their prefix and suffix products, so their derivatives grow linearly with n.
+ *
+ * <p>The remembered derivatives are shared by all the calls on the same instance: higher-order derivatives, gradients
+ * and Jacobians reuse the nodes built for each other. Results are not simplified, which would copy the shared subtrees:
+ * pass them to the engine only when their trees are small enough.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class Differentiator {
+
+    private static final Node ZERO = NodeFactory.constant(0);
+    private static final Node ONE = NodeFactory.constant(1);
+    private static final Node MINUS_ONE = NodeFactory.constant(-1);
+
+    // the derivatives of each subtree, for each variable
+    private final Map<String, Map<Node, Node>> derivatives = new HashMap<>();
+
+    public Differentiator() {}
+
+    /**
+     * Returns the number of remembered derivatives of subtrees.
+     *
+     * @return The number of remembered derivatives.
+     */
+    public int size() {
+        int s = 0;
+        for (final Map<Node, Node> m : derivatives.values()) {
+            s += m.size();
+        }
+        return s;
+    }
+
+    /** Forgets all the remembered derivatives. */
+    public void clear() {
+        derivatives.clear();
+    }
+
+    /**
+     * Differentiates the given expression with respect to the given variable. Each side of an equation is
+     * differentiated on its own.
+     *
+     * @param root The root of the expression.
+     * @param variable The name of the variable.
+     * @return The derivative.
+     * @throws IllegalArgumentException If an exponent depends on the variable, since there is no logarithm to express
+     *     its derivative.
+     */
+    public Node derivative(final Node root, final String variable) {
+        Objects.requireNonNull(root);
+        Objects.requireNonNull(variable);
+        return differentiate(root, variable, derivatives.computeIfAbsent(variable, v -> new HashMap<>()));
+    }
+
+    /**
+     * Differentiates the given expression many times with respect to the given variable.
+     *
+     * @param root The root of the expression.
+     * @param variable The name of the variable.
+     * @param order The number of times to differentiate, at least 0.
+     * @return The derivative of the given order.
+     */
+    public Node derivative(final Node root, final String variable, final int order) {
+        if (order < 0) {
+            throw new IllegalArgumentException(String.format("Invalid order: %,d", order));
+        }
+        Node result = root;
+        for (int i = 0; i < order; i++) {
+            result = derivative(result, variable);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the partial derivatives of the given expression with respect to each variable.
+     *
+     * @param root The root of the expression.
+     * @param variables The names of the variables.
+     * @return The derivatives, in the order of the variables.
+     */
+    public List<Node> gradient(final Node root, final List<String> variables) {
+        final List<Node> result = new ArrayList<>(variables.size());
+        for (final String v : variables) {
+            result.add(derivative(root, v));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the partial derivatives of each given expression with respect to each variable. Subexpressions shared by
+     * many expressions are differentiated only once.
+     *
+     * @param functions The roots of the expressions.
+     * @param variables The names of the variables.
+     * @return One row for each expression, with its gradient.
+     */
+    public List<List<Node>> jacobian(final List<Node> functions, final List<String> variables) {
+        final List<List<Node>> result = new ArrayList<>(functions.size());
+        for (final Node f : functions) {
+            result.add(gradient(f, variables));
+        }
+        return result;
+    }
+
+    private Node differentiate(final Node node, final String variable, final Map<Node, Node> memo) {
+        final Node cached = memo.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        final Node result =
+                switch (node) {
+                    case ConstantNode cn -> ZERO;
+                    case VariableNode vn -> vn.name().equals(variable) ? ONE : ZERO;
+                    case BracketNode bn -> differentiate(bn.inner(), variable, memo);
+                    case PlusNode pn -> {
+                        final List<Node> terms = new ArrayList<>();
+                        for (int i = 0; i < pn.getNumDistinctChildren(); i++) {
+                            final Node d = differentiate(pn.getDistinctChild(i), variable, memo);
+                            if (!d.equals(ZERO)) {
+                                terms.add(product(List.of(NodeFactory.constant(pn.getMultiplicity(i)), d)));
+                            }
+                        }
+                        yield sum(terms);
+                    }
+                    case MultiplyNode mn -> productRule(mn, variable, memo);
+                    case FractionNode fn -> quotientRule(fn, variable, memo);
+                    case PowerNode pn -> powerRule(pn, variable, memo);
+                    case EquationNode en -> NodeFactory.equation(
+                            differentiate(en.lhs(), variable, memo), differentiate(en.rhs(), variable, memo));
+                    default -> throw new IllegalArgumentException(
+                            String.format("Cannot differentiate '%s'", node.toExpression()));
+                };
+        memo.put(node, result);
+        return result;
+    }
+
+    /** (f1*...*fn)' = sum of f1*...*f(i-1) * fi' * f(i+1)*...*fn, with shared prefix and suffix products. */
+    private Node productRule(final MultiplyNode mn, final String variable, final Map<Node, Node> memo) {
+        final int n = mn.getNumChildren();
+        final Node[] d = new Node[n];
+        boolean allConstant = true;
+        for (int i = 0; i < n; i++) {
+            d[i] = differentiate(mn.getChild(i), variable, memo);
+            allConstant = allConstant && d[i].equals(ZERO);
+        }
+        if (allConstant) {
+            return ZERO;
+        }
+
+        // prefix[i] is the product of the first i factors, suffix[i] of the factors from i on
+        final Node[] prefix = new Node[n];
+        final Node[] suffix = new Node[n + 1];
+        prefix[0] = ONE;
+        for (int i = 1; i < n; i++) {
+            prefix[i] = product(List.of(prefix[i - 1], mn.getChild(i - 1)));
+        }
+        suffix[n] = ONE;
+        for (int i = n - 1; i > 0; i--) {
+            suffix[i] = product(List.of(mn.getChild(i), suffix[i + 1]));
+        }
+
+        final List<Node> terms = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!d[i].equals(ZERO)) {
+                terms.add(product(List.of(prefix[i], d[i], suffix[i + 1])));
+            }
+        }
+        return sum(terms);
+    }
+
+    /** (f/g)' = (f'*g - f*g')/g^2. */
+    private Node quotientRule(final FractionNode fn, final String variable, final Map<Node, Node> memo) {
+        final Node f = fn.numerator();
+        final Node g = fn.denominator();
+        final Node df = differentiate(f, variable, memo);
+        final Node dg = differentiate(g, variable, memo);
+        if (dg.equals(ZERO)) {
+            return df.equals(ZERO) ? ZERO : NodeFactory.fraction(df, g);
+        }
+        final Node numerator = sum(List.of(product(List.of(df, g)), product(List.of(MINUS_ONE, f, dg))));
+        return NodeFactory.fraction(numerator, NodeFactory.power(bracketed(g), NodeFactory.constant(2)));
+    }
+
+    /** (f^c)' = c*f^(c-1)*f', for exponents not depending on the variable. */
+    private Node powerRule(final PowerNode pn, final String variable, final Map<Node, Node> memo) {
+        if (!differentiate(pn.exponent(), variable, memo).equals(ZERO)) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot differentiate '%s': its exponent depends on '%s'", pn.toExpression(), variable));
+        }
+        final Node df = differentiate(pn.base(), variable, memo);
+        if (df.equals(ZERO)) {
+            return ZERO;
+        }
+        final Node exponent = pn.exponent();
+        final Node lower = Rational.isRational(exponent)
+                ? Rational.of(exponent).subtract(Rational.ONE).toNode()
+                : NodeFactory.plus(exponent, MINUS_ONE);
+        final Node power = lower.equals(ONE) ? pn.base() : NodeFactory.power(pn.base(), lower);
+        return product(List.of(exponent, power, df));
+    }
+
+    private static Node bracketed(final Node n) {
+        return n instanceof PlusNode ? NodeFactory.bracket(n) : n;
+    }
+
+    /** A sum without zeros, which is not a sum at all when it has less than two terms. */
+    private static Node sum(final List<Node> terms) {
+        final List<Node> nodes = new ArrayList<>(terms.size());
+        for (final Node t : terms) {
+            if (!t.equals(ZERO)) {
+                nodes.add(t);
+            }
+        }
+        return switch (nodes.size()) {
+            case 0 -> ZERO;
+            case 1 -> nodes.getFirst();
+            default -> NodeFactory.plus(nodes);
+        };
+    }
+
+    /** A product without ones, with sums in brackets, which is zero if a factor is zero. */
+    private static Node product(final List<Node> factors) {
+        final List<Node> nodes = new ArrayList<>(factors.size());
+        for (final Node f : factors) {
+            if (f.equals(ZERO)) {
+                return ZERO;
+            }
+            if (!f.equals(ONE)) {
+                nodes.add(bracketed(f));
+            }
+        }
+        return switch (nodes.size()) {
+            case 0 -> ONE;
+            case 1 -> nodes.getFirst();
+            default -> NodeFactory.multiply(nodes);
+        };
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.egraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.EquationNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+
+/**
+ * An e-graph: a compact representation of many equivalent trees at once. Trees are stored as {@link ENode}s grouped in
+ * equivalence classes, identified by integers and merged through a union-find structure. Structurally equal e-nodes are
+ * stored only once, so equivalent subtrees are shared among all the trees containing them.
+ */
+public final class EGraph {
+
+    private int[] parent = new int[16];
+    // the tree each class was first added from
+    private Node[] terms = new Node[16];
+    private int numClasses = 0;
+    private Map<ENode, Integer> memo = new HashMap<>();
+    private boolean dirty = false;
+
+    public EGraph() {}
+
+    /**
+     * Returns the canonical identifier of the class of the given one.
+     *
+     * @param id The identifier of a class.
+     * @return The canonical identifier.
+     */
+    public int find(final int id) {
+        int root = id;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // path compression
+        int x = id;
+        while (parent[x] != root) {
+            final int next = parent[x];
+            parent[x] = root;
+            x = next;
+        }
+        return root;
+    }
+
+    private int makeClass() {
+        if (numClasses == parent.length) {
+            parent = Arrays.copyOf(parent, parent.length * 2);
+            terms = Arrays.copyOf(terms, terms.length * 2);
+        }
+        parent[numClasses] = numClasses;
+        return numClasses++;
+    }
+
+    private ENode canonicalize(final ENode en) {
+        final int[] children = new int[en.getNumChildren()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = find(en.getChild(i));
+        }
+        return new ENode(en.kind(), en.leaf(), children);
+    }
+
+    private int add(final ENode en) {
+        final ENode c = canonicalize(en);
+        final Integer existing = memo.get(c);
+        if (existing != null) {
+            return find(existing);
+        }
+        final int id = makeClass();
+        memo.put(c, id);
+        return id;
+    }
+
+    private int[] addAll(final MultiNode mn) {
+        final int[] children = new int[mn.getNumChildren()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = add(mn.getChild(i));
+        }
+        return children;
+    }
+
+    /**
+     * Adds the given tree, returning the identifier of its class. Subtrees already present are shared.
+     *
+     * @param node The tree to add.
+     * @return The class of the tree.
+     */
+    public int add(final Node node) {
+        final int id = addNode(node);
+        if (terms[id] == null) {
+            terms[id] = node;
+        }
+        return id;
+    }
+
+    private int addNode(final Node node) {
+        return switch (node) {
+            case PlusNode pn -> add(new ENode(ENode.Kind.PLUS, null, addAll(pn)));
+            case MultiplyNode mn -> add(new ENode(ENode.Kind.MULTIPLY, null, addAll(mn)));
+            case BracketNode bn -> add(new ENode(ENode.Kind.BRACKET, null, new int[] {add(bn.inner())}));
+            case FractionNode fn -> add(
+                    new ENode(ENode.Kind.FRACTION, null, new int[] {add(fn.numerator()), add(fn.denominator())}));
+            case PowerNode pn -> add(new ENode(ENode.Kind.POWER, null, new int[] {add(pn.base()), add(pn.exponent())}));
+            case EquationNode en -> add(new ENode(ENode.Kind.EQUATION, null, new int[] {add(en.lhs()), add(en.rhs())}));
+            default -> add(new ENode(ENode.Kind.LEAF, node, new int[0]));
+        };
+    }
+
+    /**
+     * Returns a tree of the class with the given identifier: the first one added to its canonical class. It is not
+     * necessarily the cheapest one, but it is available without extracting the e-graph.
+     *
+     * @param id The class.
+     * @return A tree of the class.
+     */
+    public Node term(final int id) {
+        return terms[find(id)];
+    }
+
+    /**
+     * Merges the classes with the given identifiers. The e-graph must be rebuilt with {@link #rebuild()} before being
+     * queried again.
+     *
+     * @param a The first class.
+     * @param b The second class.
+     * @return True if the classes were different, false otherwise.
+     */
+    public boolean union(final int a, final int b) {
+        final int ra = find(a);
+        final int rb = find(b);
+        if (ra == rb) {
+            return false;
+        }
+        // the oldest class stays the representative, for determinism
+        if (ra < rb) {
+            parent[rb] = ra;
+        } else {
+            parent[ra] = rb;
+        }
+        dirty = true;
+        return true;
+    }
+
+    /** Restores the invariant that equal e-nodes are stored once, merging the classes which became equivalent. */
+    public void rebuild() {
+        while (dirty) {
+            dirty = false;
+            final Map<ENode, Integer> next = new HashMap<>();
+            for (final Map.Entry<ENode, Integer> e : memo.entrySet()) {
+                final ENode c = canonicalize(e.getKey());
+                final int id = find(e.getValue());
+                final Integer other = next.putIfAbsent(c, id);
+                if (other != null) {
+                    // congruence: same operator on the same classes
+                    union(other, id);
+                }
+            }
+            memo = next;
+        }
+    }
+
+    /**
+     * Returns the number of distinct e-nodes.
+     *
+     * @return The number of e-nodes.
+     */
+    public int getNumNodes() {
+        return memo.size();
+    }
+
+    /**
+     * Returns the e-nodes grouped by canonical class, in a deterministic order.
+     *
+     * @return The classes.
+     */
+    public Map<Integer, List<ENode>> classes() {
+        final Map<Integer, List<ENode>> classes = new LinkedHashMap<>();
+        memo.entrySet().stream()
+                .sorted((a, b) -> Integer.compare(a.getValue(), b.getValue()))
+                .forEach(e -> classes.computeIfAbsent(find(e.getValue()), k -> new ArrayList<>())
+                        .add(e.getKey()));
+        return classes;
+    }
+
+    /**
+     * Returns the cheapest tree of every class, measured in {@link Node#size()}.
+     *
+     * @return The map from canonical class identifiers to their cheapest tree.
+     */
+    public Map<Integer, Node> extractAll() {
+        final Map<Integer, List<ENode>> classes = classes();
+        final Map<Integer, Integer> costs = new HashMap<>();
+        final Map<Integer, ENode> best = new HashMap<>();
+
+        // relax the costs until no class gets cheaper: every class has at least one acyclic tree
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (final Map.Entry<Integer, List<ENode>> e : classes.entrySet()) {
+                for (final ENode en : e.getValue()) {
+                    final int cost = cost(en, costs);
+                    if (cost < costs.getOrDefault(e.getKey(), Integer.MAX_VALUE)) {
+                        costs.put(e.getKey(), cost);
+                        best.put(e.getKey(), en);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        final Map<Integer, Node> trees = new HashMap<>();
+        for (final Integer id : classes.keySet()) {
+            build(id, best, trees);
+        }
+        return trees;
+    }
+
+    /**
+     * Returns the cheapest tree in the class of the given identifier, measured in {@link Node#size()}.
+     *
+     * @param id The class.
+     * @return The cheapest tree.
+     */
+    public Node extract(final int id) {
+        return extractAll().get(find(id));
+    }
+
+    private int cost(final ENode en, final Map<Integer, Integer> costs) {
+        long total = 1L;
+        for (int i = 0; i < en.getNumChildren(); i++) {
+            final Integer c = costs.get(find(en.getChild(i)));
+            if (c == null) {
+                return Integer.MAX_VALUE;
+            }
+            total += c;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    private Node build(final int id, final Map<Integer, ENode> best, final Map<Integer, Node> trees) {
+        final Node cached = trees.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        // the best e-node of a class is strictly more expensive than its children, so this always terminates
+        final ENode en = best.get(id);
+        final List<Node> children = new ArrayList<>(en.getNumChildren());
+        for (int i = 0; i < en.getNumChildren(); i++) {
+            children.add(build(find(en.getChild(i)), best, trees));
+        }
+        final Node tree = en.toNode(children);
+        trees.put(id, tree);
+        return tree;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.egraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+
+/**
+ * A node of an {@link EGraph}: an operator applied to equivalence classes rather than to subtrees. Leaves keep the
+ * original node. The children of commutative operators are kept sorted, so that equal multisets are equal e-nodes.
+ */
+public final class ENode {
+
+    /** The operator of an e-node. */
+    public enum Kind {
+
+        /** A leaf: a constant, a variable or any other node without children. */
+        LEAF,
+
+        /** A bracket. */
+        BRACKET,
+
+        /** A commutative sum. */
+        PLUS,
+
+        /** A commutative product. */
+        MULTIPLY,
+
+        /** A fraction. */
+        FRACTION,
+
+        /** A power. */
+        POWER,
+
+        /** An equation. */
+        EQUATION
+    }
+
+    private final Kind kind;
+    private final Node leaf;
+    private final int[] children;
+    private final int hash;
+
+    ENode(final Kind kind, final Node leaf, final int[] children) {
+        this.kind = Objects.requireNonNull(kind);
+        this.leaf = leaf;
+        this.children = children;
+        if (kind == Kind.PLUS || kind == Kind.MULTIPLY) {
+            Arrays.sort(this.children);
+        }
+        this.hash = 31 * (31 * kind.hashCode() + Objects.hashCode(leaf)) + Arrays.hashCode(children);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public Node leaf() {
+        return leaf;
+    }
+
+    public int getNumChildren() {
+        return children.length;
+    }
+
+    public int getChild(final int idx) {
+        return children[idx];
+    }
+
+    /**
+     * Builds the tree made of this operator applied to the given subtrees, one for each child class.
+     *
+     * @param subtrees The subtrees replacing the children.
+     * @return The tree.
+     */
+    public Node toNode(final List<Node> subtrees) {
+        if (subtrees.size() != children.length) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %,d subtrees but were %,d", children.length, subtrees.size()));
+        }
+        return switch (kind) {
+            case LEAF -> leaf;
+            case BRACKET -> NodeFactory.bracket(subtrees.getFirst());
+            case PLUS -> NodeFactory.plus(subtrees);
+            case MULTIPLY -> NodeFactory.multiply(subtrees);
+            case FRACTION -> NodeFactory.fraction(subtrees.get(0), subtrees.get(1));
+            case POWER -> NodeFactory.power(subtrees.get(0), subtrees.get(1));
+            case EQUATION -> NodeFactory.equation(subtrees.get(0), subtrees.get(1));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "ENode(kind=" + kind + ";leaf=" + leaf + ";children=" + Arrays.toString(children) + ")";
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final ENode o = (ENode) other;
+        return this.hash == o.hash
+                && this.kind == o.kind
+                && Objects.equals(this.leaf, o.leaf)
+                && Arrays.equals(this.children, o.children);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.egraph;
+
+import java.util.List;
+
+import com.ledmington.sce.engine.Rewrite;
+import com.ledmington.sce.engine.Rewrites;
+
+/**
+ * The parameters of equality saturation.
+ *
+ * @param rewrites The rules adding equivalent trees to the e-graph.
+ * @param maxIterations The maximum number of times every rule is applied to every e-node.
+ * @param maxNodes The number of e-nodes after which saturation stops.
+ */
+public record SaturationConfig(List<Rewrite> rewrites, int maxIterations, int maxNodes) {
+
+    private static final int DEFAULT_MAX_ITERATIONS = 2;
+    private static final int DEFAULT_MAX_NODES = 500;
+
+    public SaturationConfig {
+        rewrites = List.copyOf(rewrites);
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException(String.format("Invalid maximum iterations: %,d", maxIterations));
+        }
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException(String.format("Invalid maximum nodes: %,d", maxNodes));
+        }
+    }
+
+    /**
+     * Returns a configuration with the built-in rewrites.
+     *
+     * @return The default configuration.
+     */
+    public static SaturationConfig defaults() {
+        return new SaturationConfig(Rewrites.defaults(), DEFAULT_MAX_ITERATIONS, DEFAULT_MAX_NODES);
+    }
+}
@@ -17,15 +17,37 @@
  */
 package com.ledmington.sce.engine;
 
+import java.util.List;
+import java.util.Objects;
 import java.util.function.UnaryOperator;
 
 import com.ledmington.sce.nodes.Node;
 
-public record Move(int score) implements UnaryOperator<Node> {
+/**
+ * The replacement of the subtree at a given position with an equivalent one.
+ *
+ * @param path The indices of the children to follow from the root to reach the subtree to be replaced, as defined by
+ *     {@link Subtrees}.
+ * @param replacement The new subtree.
+ * @param score The cost of the whole tree after the replacement.
+ */
+public record Move(List<Integer> path, Node replacement, int score) implements UnaryOperator<Node> {
+
+    public Move {
+        path = List.copyOf(path);
+        Objects.requireNonNull(replacement);
+    }
 
     @Override
     public Node apply(final Node root) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'apply'");
+        return apply(root, 0);
+    }
+
+    private Node apply(final Node current, final int depth) {
+        if (depth == path.size()) {
+            return replacement;
+        }
+        final int idx = path.get(depth);
+        return Subtrees.replace(current, idx, apply(Subtrees.get(current, idx), depth + 1));
     }
 }
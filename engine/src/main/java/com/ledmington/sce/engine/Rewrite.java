@@ -0,0 +1,36 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.engine;
+
+import java.util.List;
+
+import com.ledmington.sce.nodes.Node;
+
+/** A rule proposing equivalent alternatives to a single subtree. */
+@FunctionalInterface
+public interface Rewrite {
+
+    /**
+     * Returns the alternatives to the given subtree proposed by this rule. The list may be empty, or may contain the
+     * subtree itself, which is ignored.
+     *
+     * @param node The subtree to rewrite.
+     * @return The equivalent subtrees.
+     */
+    List<Node> apply(final Node node);
+}
@@ -0,0 +1,151 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ledmington.sce.Engine;
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.PlusNode;
+
+/** The built-in rewrite rules. */
+public final class Rewrites {
+
+    // trying every pair of children is quadratic, so big nodes are left to the other rules
+    private static final int MAX_PAIRED_CHILDREN = 16;
+
+    private Rewrites() {}
+
+    /**
+     * Returns the rewrite applying a single pass of {@link Engine#simplify(Node)}.
+     *
+     * @return The rewrite.
+     */
+    public static Rewrite step() {
+        return node -> List.of(Engine.simplify(node));
+    }
+
+    /**
+     * Returns the rewrite replacing a subtree with its greedy normal form from {@link Engine#normalize(Node)}.
+     *
+     * @return The rewrite.
+     */
+    public static Rewrite normalize() {
+        return node -> List.of(Engine.normalize(node));
+    }
+
+    /**
+     * Returns the rewrite removing brackets.
+     *
+     * @return The rewrite.
+     */
+    public static Rewrite removeBrackets() {
+        return node -> node instanceof BracketNode bn ? List.of(bn.inner()) : List.of();
+    }
+
+    /**
+     * Returns the rewrite which picks two children of a sum or product, normalizes them on their own and puts the
+     * result back in place of both. This explores the orders in which the greedy engine could combine children.
+     *
+     * @return The rewrite.
+     */
+    public static Rewrite combinePairs() {
+        return node -> {
+            if (!(node instanceof MultiNode mn)
+                    || mn.getNumChildren() < 3
+                    || mn.getNumDistinctChildren() > MAX_PAIRED_CHILDREN) {
+                return List.of();
+            }
+            final List<Node> result = new ArrayList<>();
+            for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+                for (int j = i; j < mn.getNumDistinctChildren(); j++) {
+                    if (i == j && mn.getMultiplicity(i) < 2) {
+                        continue;
+                    }
+                    final List<Node> pair = List.of(mn.getDistinctChild(i), mn.getDistinctChild(j));
+                    final Node combined = Engine.normalize(
+                            node instanceof PlusNode ? NodeFactory.plus(pair) : NodeFactory.multiply(pair));
+                    result.add(rebuild(mn, i, j, combined));
+                }
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Returns the rewrite moving the other factors of a product into the numerator of one of its fractions, as in
+     * {@code a*(b/c) = (a*b)/c}. The greedy engine only applies it to fractions whose denominator is not constant.
+     *
+     * @return The rewrite.
+     */
+    public static Rewrite mergeFractions() {
+        return node -> {
+            if (!(node instanceof MultiplyNode mn)) {
+                return List.of();
+            }
+            final List<Node> result = new ArrayList<>();
+            for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+                if (mn.getDistinctChild(i) instanceof FractionNode fn) {
+                    final List<Node> factors = new ArrayList<>(mn.getNumChildren());
+                    for (int k = 0; k < mn.getNumDistinctChildren(); k++) {
+                        final int copies = k == i ? mn.getMultiplicity(k) - 1 : mn.getMultiplicity(k);
+                        for (int c = 0; c < copies; c++) {
+                            factors.add(mn.getDistinctChild(k));
+                        }
+                    }
+                    factors.add(fn.numerator());
+                    result.add(NodeFactory.fraction(NodeFactory.multiply(factors), fn.denominator()));
+                }
+            }
+            return result;
+        };
+    }
+
+    private static Node rebuild(final MultiNode mn, final int first, final int second, final Node combined) {
+        final List<Node> nodes = new ArrayList<>(mn.getNumChildren() - 1);
+        for (int k = 0; k < mn.getNumDistinctChildren(); k++) {
+            int copies = mn.getMultiplicity(k);
+            if (k == first) {
+                copies--;
+            }
+            if (k == second) {
+                copies--;
+            }
+            for (int c = 0; c < copies; c++) {
+                nodes.add(mn.getDistinctChild(k));
+            }
+        }
+        nodes.add(combined);
+        return mn instanceof PlusNode ? NodeFactory.plus(nodes) : NodeFactory.multiply(nodes);
+    }
+
+    /**
+     * Returns all the built-in rewrites.
+     *
+     * @return The list of rewrites.
+     */
+    public static List<Rewrite> defaults() {
+        return List.of(removeBrackets(), step(), combinePairs(), mergeFractions(), normalize());
+    }
+}
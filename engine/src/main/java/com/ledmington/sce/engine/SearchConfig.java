@@ -0,0 +1,78 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.engine;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * The parameters of the move search.
+ *
+ * @param cost The function to be minimized.
+ * @param rewrites The rules generating the available moves.
+ * @param nodeBudget The maximum number of trees to expand.
+ * @param beamWidth The maximum number of trees waiting to be expanded.
+ * @param rewriteBudget The maximum number of times a rewrite is applied to a distinct subtree. Rewrites may normalize
+ *     whole subtrees, so this bounds the time of the search, while the node budget bounds its memory.
+ */
+public record SearchConfig(
+        ToIntFunction<Node> cost, List<Rewrite> rewrites, int nodeBudget, int beamWidth, long rewriteBudget) {
+
+    private static final int DEFAULT_NODE_BUDGET = 256;
+    private static final int DEFAULT_BEAM_WIDTH = 32;
+    private static final long DEFAULT_REWRITE_BUDGET = 16_384L;
+
+    public SearchConfig {
+        Objects.requireNonNull(cost);
+        rewrites = List.copyOf(rewrites);
+        if (nodeBudget < 1) {
+            throw new IllegalArgumentException(String.format("Invalid node budget: %,d", nodeBudget));
+        }
+        if (beamWidth < 1) {
+            throw new IllegalArgumentException(String.format("Invalid beam width: %,d", beamWidth));
+        }
+        if (rewriteBudget < 1L) {
+            throw new IllegalArgumentException(String.format("Invalid rewrite budget: %,d", rewriteBudget));
+        }
+    }
+
+    /**
+     * Creates a configuration with the default rewrite budget.
+     *
+     * @param cost The function to be minimized.
+     * @param rewrites The rules generating the available moves.
+     * @param nodeBudget The maximum number of trees to expand.
+     * @param beamWidth The maximum number of trees waiting to be expanded.
+     */
+    public SearchConfig(
+            final ToIntFunction<Node> cost, final List<Rewrite> rewrites, final int nodeBudget, final int beamWidth) {
+        this(cost, rewrites, nodeBudget, beamWidth, DEFAULT_REWRITE_BUDGET);
+    }
+
+    /**
+     * Returns a configuration minimizing {@link Node#size()} with the built-in rewrites.
+     *
+     * @return The default configuration.
+     */
+    public static SearchConfig defaults() {
+        return new SearchConfig(Node::size, Rewrites.defaults(), DEFAULT_NODE_BUDGET, DEFAULT_BEAM_WIDTH);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.EquationNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+
+/**
+ * Uniform positional access to the children of any node. The children of a {@link MultiNode} are addressed by their
+ * distinct index, since equal children are interchangeable.
+ */
+public final class Subtrees {
+
+    private Subtrees() {}
+
+    public static int count(final Node node) {
+        return switch (node) {
+            case MultiNode mn -> mn.getNumDistinctChildren();
+            case BracketNode bn -> 1;
+            case FractionNode fn -> 2;
+            case PowerNode pn -> 2;
+            case EquationNode en -> 2;
+            default -> 0;
+        };
+    }
+
+    public static Node get(final Node node, final int idx) {
+        if (idx < 0 || idx >= count(node)) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Invalid child index %,d for '%s'", idx, node.toExpression()));
+        }
+        return switch (node) {
+            case MultiNode mn -> mn.getDistinctChild(idx);
+            case BracketNode bn -> bn.inner();
+            case FractionNode fn -> idx == 0 ? fn.numerator() : fn.denominator();
+            case PowerNode pn -> idx == 0 ? pn.base() : pn.exponent();
+            case EquationNode en -> idx == 0 ? en.lhs() : en.rhs();
+            default -> throw new IllegalArgumentException(
+                    String.format("Unknown node '%s'", node.getClass().getName()));
+        };
+    }
+
+    /**
+     * Returns a copy of the given node with the child at the given index replaced. For a {@link MultiNode}, only one
+     * occurrence of the distinct child is replaced.
+     *
+     * @param node The parent node.
+     * @param idx The index of the child to replace.
+     * @param child The new child.
+     * @return The new parent node.
+     */
+    public static Node replace(final Node node, final int idx, final Node child) {
+        if (idx < 0 || idx >= count(node)) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Invalid child index %,d for '%s'", idx, node.toExpression()));
+        }
+        return switch (node) {
+            case PlusNode pn -> NodeFactory.plus(replaceOne(pn, idx, child));
+            case MultiplyNode mn -> NodeFactory.multiply(replaceOne(mn, idx, child));
+            case BracketNode bn -> NodeFactory.bracket(child);
+            case FractionNode fn -> idx == 0
+                    ? NodeFactory.fraction(child, fn.denominator())
+                    : NodeFactory.fraction(fn.numerator(), child);
+            case PowerNode pn -> idx == 0
+                    ? NodeFactory.power(child, pn.exponent())
+                    : NodeFactory.power(pn.base(), child);
+            case EquationNode en -> idx == 0
+                    ? NodeFactory.equation(child, en.rhs())
+                    : NodeFactory.equation(en.lhs(), child);
+            default -> throw new IllegalArgumentException(
+                    String.format("Unknown node '%s'", node.getClass().getName()));
+        };
+    }
+
+    private static List<Node> replaceOne(final MultiNode mn, final int idx, final Node child) {
+        final List<Node> nodes = new ArrayList<>(mn.getNumChildren());
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            final int copies = i == idx ? mn.getMultiplicity(i) - 1 : mn.getMultiplicity(i);
+            for (int j = 0; j < copies; j++) {
+                nodes.add(mn.getDistinctChild(i));
+            }
+        }
+        nodes.add(child);
+        return nodes;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+/**
+ * The element-wise operations run by a {@link BatchPlan}, as plain scalar loops. Subclasses may override any of them
+ * with vectorized versions: the ones they do not override keep running here.
+ *
+ * <p>Each operation reads {@code n} elements of its operands starting from the given offsets and writes the first
+ * {@code n} elements of the destination.
+ */
+class BatchKernel {
+
+    BatchKernel() {}
+
+    /**
+     * Returns the name of this kernel, for diagnostics.
+     *
+     * @return The name of this kernel.
+     */
+    String name() {
+        return "scalar";
+    }
+
+    void fill(final double value, final double[] dst, final int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = value;
+        }
+    }
+
+    void copy(final double[] x, final int xo, final double[] dst, final int n) {
+        System.arraycopy(x, xo, dst, 0, n);
+    }
+
+    void add(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = x[xo + i] + y[yo + i];
+        }
+    }
+
+    void multiply(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = x[xo + i] * y[yo + i];
+        }
+    }
+
+    void divide(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = x[xo + i] / y[yo + i];
+        }
+    }
+
+    void pow(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = Math.pow(x[xo + i], y[yo + i]);
+        }
+    }
+
+    /**
+     * Raises each element to the given integer power, read as unsigned. Programs only use this for large exponents,
+     * where the rounding errors of repeated squaring would add up, so it runs {@link Math#pow(double, double)}.
+     */
+    void powInt(final double[] x, final int xo, final int exponent, final double[] dst, final int n) {
+        final double e = Integer.toUnsignedLong(exponent);
+        for (int i = 0; i < n; i++) {
+            dst[i] = Math.pow(x[xo + i], e);
+        }
+    }
+}
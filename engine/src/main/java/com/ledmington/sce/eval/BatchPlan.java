@@ -0,0 +1,161 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import java.util.List;
+
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * An expression compiled into a straight-line program over columns of values, to evaluate it on many points at once.
+ * Each instruction applies one operation to a block of points, so that the loops over the points are as long as
+ * possible and can use all the SIMD lanes of the CPU.
+ *
+ * <p>When the {@code jdk.incubator.vector} module is available at runtime (for example with {@code --add-modules
+ * jdk.incubator.vector}), sums, products and quotients run on the Vector API, and so do integer powers with exponents
+ * up to 64, which are compiled into products. Otherwise, and for the other powers, plain loops are used.
+ */
+public final class BatchPlan {
+
+    // the number of points evaluated by each instruction
+    private static final int BLOCK = 1024;
+
+    private static final BatchKernel KERNEL = loadKernel();
+
+    private final Program program;
+
+    private BatchPlan(final Program program) {
+        this.program = program;
+    }
+
+    private static BatchKernel loadKernel() {
+        try {
+            return (BatchKernel) Class.forName("com.ledmington.sce.eval.VectorBatchKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            // the kernel is missing from the classpath, or the incubator module was not added
+            return new BatchKernel();
+        }
+    }
+
+    /**
+     * Returns the name of the kernel used by all plans: "vector" if the Vector API is available, "scalar" otherwise.
+     *
+     * @return The name of the kernel.
+     */
+    public static String kernel() {
+        return KERNEL.name();
+    }
+
+    /**
+     * Compiles the given expression into a plan.
+     *
+     * @param root The root of the expression, with only constants, variables, sums, products, fractions and powers.
+     * @param variables The names of the variables, in the order of their columns.
+     * @return The plan.
+     * @throws IllegalArgumentException If the expression contains variables not in the list, or other nodes.
+     */
+    public static BatchPlan compile(final Node root, final List<String> variables) {
+        return new BatchPlan(Program.compile(root, variables));
+    }
+
+    /**
+     * Returns the names of the variables, in the order of their columns.
+     *
+     * @return The names of the variables.
+     */
+    public List<String> variables() {
+        return program.variables;
+    }
+
+    /**
+     * Returns the number of instructions of this plan.
+     *
+     * @return The number of instructions.
+     */
+    public int size() {
+        return program.size();
+    }
+
+    /**
+     * Returns the number of registers of this plan, each holding the values of a block of points.
+     *
+     * @return The number of registers.
+     */
+    public int registers() {
+        return program.numRegisters;
+    }
+
+    /**
+     * Evaluates the expression on each point.
+     *
+     * @param columns The values of each variable, in the order given at compile time, all of the same length.
+     * @return The value of the expression on each point.
+     */
+    public double[] evaluate(final double[]... columns) {
+        final double[] out = new double[columns.length == 0 ? 1 : columns[0].length];
+        evaluate(columns, out);
+        return out;
+    }
+
+    /**
+     * Evaluates the expression on each point, without allocating anything but the registers of the plan.
+     *
+     * @param columns The values of each variable, in the order given at compile time, all as long as the output.
+     * @param out The array receiving the value of the expression on each point.
+     */
+    public void evaluate(final double[][] columns, final double[] out) {
+        if (columns.length != program.variables.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %,d columns but got %,d", program.variables.size(), columns.length));
+        }
+        for (final double[] c : columns) {
+            if (c.length != out.length) {
+                throw new IllegalArgumentException(
+                        String.format("Expected columns of %,d values but got %,d", out.length, c.length));
+            }
+        }
+
+        final int[] code = program.code;
+        final double[][] registers = new double[program.numRegisters][BLOCK];
+        for (int start = 0; start < out.length; start += BLOCK) {
+            final int n = Math.min(BLOCK, out.length - start);
+            for (int pc = 0; pc < code.length; pc += Program.WIDTH) {
+                final double[] dst = registers[code[pc + 1]];
+                final int a = code[pc + 2];
+                final int b = code[pc + 3];
+                final double[] x = a >= 0 ? registers[a] : columns[-1 - a];
+                final int xo = a >= 0 ? 0 : start;
+                final double[] y = b >= 0 ? registers[b] : columns[-1 - b];
+                final int yo = b >= 0 ? 0 : start;
+                switch (code[pc]) {
+                    case Program.FILL -> KERNEL.fill(program.constants[code[pc + 4]], dst, n);
+                    case Program.COPY -> KERNEL.copy(x, xo, dst, n);
+                    case Program.ADD -> KERNEL.add(x, xo, y, yo, dst, n);
+                    case Program.MULTIPLY -> KERNEL.multiply(x, xo, y, yo, dst, n);
+                    case Program.DIVIDE -> KERNEL.divide(x, xo, y, yo, dst, n);
+                    case Program.POW -> KERNEL.pow(x, xo, y, yo, dst, n);
+                    case Program.POW_INT -> KERNEL.powInt(x, xo, code[pc + 4], dst, n);
+                    default -> throw new IllegalStateException(String.format("Invalid opcode %d", code[pc]));
+                }
+            }
+            System.arraycopy(registers[program.result], 0, out, start, n);
+        }
+    }
+}
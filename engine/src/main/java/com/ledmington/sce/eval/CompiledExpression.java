@@ -0,0 +1,509 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.numbers.Powers;
+import com.ledmington.sce.numbers.Rational;
+
+/**
+ * An expression compiled into a tree of method handles, which the JIT compiles into straight-line code. Variables are
+ * resolved at compile time to the index of their value in the array passed to {@link #evaluate(double...)}, so that
+ * evaluating the expression neither walks the tree nor looks up any name.
+ *
+ * <p>Sums and products are compiled as balanced trees of binary operations, to keep the depth of the handles
+ * logarithmic in the number of operands. Subexpressions referenced more than once, like the ones shared by the nodes
+ * built by {@link com.ledmington.sce.nodes.NodeFactory}, are compiled once and evaluated once per evaluation, into a
+ * slot after the values of the variables.
+ */
+public final class CompiledExpression {
+
+    private static final MethodType DOUBLE_TYPE = MethodType.methodType(double.class, double[].class);
+    private static final MethodType DECIMAL_TYPE =
+            MethodType.methodType(BigDecimal.class, BigDecimal[].class, MathContext.class);
+
+    // how the parameters of two operands, followed by the extra parameters of the operation, map to the parameters of
+    // the result
+    private static final int[] DOUBLE_REORDER = {0, 0};
+    private static final int[] DECIMAL_REORDER = {0, 1, 0, 1, 1};
+
+    // the largest absolute value of an integer exponent computed by repeated squaring
+    private static final int MAX_SQUARING_EXPONENT = 64;
+
+    private static final MethodHandle DOUBLE_ADD;
+    private static final MethodHandle DOUBLE_MULTIPLY;
+    private static final MethodHandle DOUBLE_DIVIDE;
+    private static final MethodHandle DOUBLE_POW;
+    private static final MethodHandle DOUBLE_POW_INT;
+    private static final MethodHandle DECIMAL_ADD;
+    private static final MethodHandle DECIMAL_MULTIPLY;
+    private static final MethodHandle DECIMAL_DIVIDE;
+    private static final MethodHandle DECIMAL_POW;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final Class<?> c = CompiledExpression.class;
+        final MethodType dd = MethodType.methodType(double.class, double.class, double.class);
+        final MethodType bbm =
+                MethodType.methodType(BigDecimal.class, BigDecimal.class, BigDecimal.class, MathContext.class);
+        try {
+            DOUBLE_ADD = lookup.findStatic(c, "add", dd);
+            DOUBLE_MULTIPLY = lookup.findStatic(c, "multiply", dd);
+            DOUBLE_DIVIDE = lookup.findStatic(c, "divide", dd);
+            DOUBLE_POW = lookup.findStatic(Math.class, "pow", dd);
+            DOUBLE_POW_INT = lookup.findStatic(c, "pow", MethodType.methodType(double.class, double.class, int.class));
+            DECIMAL_ADD = lookup.findStatic(c, "add", bbm);
+            DECIMAL_MULTIPLY = lookup.findStatic(c, "multiply", bbm);
+            DECIMAL_DIVIDE = lookup.findStatic(c, "divide", bbm);
+            DECIMAL_POW = lookup.findStatic(
+                    c,
+                    "pow",
+                    MethodType.methodType(BigDecimal.class, BigDecimal.class, Rational.class, MathContext.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The handles of an expression. Each shared handle computes the value of the slot after the variables with its same
+     * index, reading only the variables and the slots before it.
+     */
+    private record Handles(MethodHandle[] shared, MethodHandle root) {}
+
+    private final Node root;
+    private final List<String> variables;
+    private final Handles doubleHandles;
+
+    // built on first use, since most callers only need doubles
+    private volatile Handles decimalHandles;
+
+    private CompiledExpression(final Node root, final List<String> variables, final Handles doubleHandles) {
+        this.root = root;
+        this.variables = variables;
+        this.doubleHandles = doubleHandles;
+    }
+
+    /**
+     * Compiles the given expression, without caching it.
+     *
+     * @param root The root of the expression.
+     * @param variables The names of the variables, in the order of their values.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException If the expression contains variables not in the list, or nodes which cannot be
+     *     evaluated numerically.
+     * @see ExpressionCompiler
+     */
+    public static CompiledExpression compile(final Node root, final List<String> variables) {
+        Objects.requireNonNull(root);
+        final List<String> names = List.copyOf(variables);
+        final Map<String, Integer> slots = slots(names);
+        final List<Node> shared = sharedNodes(root);
+        final Map<Node, Integer> sharedSlots = sharedSlots(shared, names.size());
+        final MethodHandle[] handles = new MethodHandle[shared.size()];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = compileDouble(shared.get(i), slots, sharedSlots, false);
+        }
+        return new CompiledExpression(root, names, new Handles(handles, compileDouble(root, slots, sharedSlots, true)));
+    }
+
+    /**
+     * Returns the non-leaf subexpressions referenced more than once, each after the shared subexpressions it contains.
+     * Brackets are skipped, since they are compiled as their content.
+     */
+    private static List<Node> sharedNodes(final Node root) {
+        final Map<Node, Integer> references = new IdentityHashMap<>();
+        countReferences(withoutBrackets(root), 1, references);
+        final List<Node> shared = new ArrayList<>();
+        collectShared(withoutBrackets(root), references, Collections.newSetFromMap(new IdentityHashMap<>()), shared);
+        return shared;
+    }
+
+    private static boolean isLeaf(final Node node) {
+        return node instanceof VariableNode || Rational.isRational(node);
+    }
+
+    private static void countReferences(final Node node, final int count, final Map<Node, Integer> references) {
+        if (isLeaf(node) || references.merge(node, count, Integer::sum) > count) {
+            // the children were already counted
+            return;
+        }
+        switch (node) {
+            case MultiNode mn -> {
+                for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+                    countReferences(withoutBrackets(mn.getDistinctChild(i)), mn.getMultiplicity(i), references);
+                }
+            }
+            case FractionNode fn -> {
+                countReferences(withoutBrackets(fn.numerator()), 1, references);
+                countReferences(withoutBrackets(fn.denominator()), 1, references);
+            }
+            case PowerNode pn -> {
+                countReferences(withoutBrackets(pn.base()), 1, references);
+                countReferences(withoutBrackets(pn.exponent()), 1, references);
+            }
+            default -> {}
+        }
+    }
+
+    private static void collectShared(
+            final Node node, final Map<Node, Integer> references, final Set<Node> visited, final List<Node> shared) {
+        if (isLeaf(node) || !visited.add(node)) {
+            return;
+        }
+        switch (node) {
+            case MultiNode mn -> {
+                for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+                    collectShared(withoutBrackets(mn.getDistinctChild(i)), references, visited, shared);
+                }
+            }
+            case FractionNode fn -> {
+                collectShared(withoutBrackets(fn.numerator()), references, visited, shared);
+                collectShared(withoutBrackets(fn.denominator()), references, visited, shared);
+            }
+            case PowerNode pn -> {
+                collectShared(withoutBrackets(pn.base()), references, visited, shared);
+                collectShared(withoutBrackets(pn.exponent()), references, visited, shared);
+            }
+            default -> {}
+        }
+        if (references.get(node) > 1) {
+            shared.add(node);
+        }
+    }
+
+    private static Map<Node, Integer> sharedSlots(final List<Node> shared, final int firstSlot) {
+        final Map<Node, Integer> slots = new IdentityHashMap<>();
+        for (int i = 0; i < shared.size(); i++) {
+            slots.put(shared.get(i), firstSlot + i);
+        }
+        return slots;
+    }
+
+    private static Map<String, Integer> slots(final List<String> names) {
+        final Map<String, Integer> slots = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (slots.put(names.get(i), i) != null) {
+                throw new IllegalArgumentException(String.format("Duplicate variable '%s'", names.get(i)));
+            }
+        }
+        return slots;
+    }
+
+    public Node root() {
+        return root;
+    }
+
+    public List<String> variables() {
+        return variables;
+    }
+
+    /**
+     * Evaluates this expression with double precision.
+     *
+     * @param values The values of the variables, in the order given at compile time.
+     * @return The value of the expression.
+     */
+    public double evaluate(final double... values) {
+        if (values.length != variables.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %,d values but got %,d", variables.size(), values.length));
+        }
+        final MethodHandle[] shared = doubleHandles.shared();
+        final double[] frame = shared.length == 0 ? values : Arrays.copyOf(values, values.length + shared.length);
+        try {
+            for (int i = 0; i < shared.length; i++) {
+                frame[values.length + i] = (double) shared[i].invokeExact(frame);
+            }
+            return (double) doubleHandles.root().invokeExact(frame);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Evaluates this expression with the given decimal precision. Each operation is rounded to the given precision.
+     *
+     * @param mc The precision of each operation.
+     * @param values The values of the variables, in the order given at compile time.
+     * @return The value of the expression.
+     * @throws IllegalArgumentException If the expression contains powers with non-rational exponents.
+     * @throws ArithmeticException If the value is not real.
+     */
+    public BigDecimal evaluate(final MathContext mc, final BigDecimal... values) {
+        Objects.requireNonNull(mc);
+        if (values.length != variables.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %,d values but got %,d", variables.size(), values.length));
+        }
+        Handles h = decimalHandles;
+        if (h == null) {
+            h = compileDecimal(root, slots(variables));
+            decimalHandles = h;
+        }
+        final MethodHandle[] shared = h.shared();
+        final BigDecimal[] frame = shared.length == 0 ? values : Arrays.copyOf(values, values.length + shared.length);
+        try {
+            for (int i = 0; i < shared.length; i++) {
+                frame[values.length + i] = (BigDecimal) shared[i].invokeExact(frame, mc);
+            }
+            return (BigDecimal) h.root().invokeExact(frame, mc);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static MethodHandle binary(
+            final MethodHandle op, final MethodHandle a, final MethodHandle b, final int[] reorder) {
+        final MethodType type = a.type();
+        final MethodHandle left = MethodHandles.collectArguments(op, 0, a);
+        final MethodHandle both = MethodHandles.collectArguments(left, type.parameterCount(), b);
+        return MethodHandles.permuteArguments(both, type, reorder);
+    }
+
+    private static MethodHandle balanced(
+            final MethodHandle op, final MethodHandle[] operands, final int from, final int to, final int[] reorder) {
+        if (to - from == 1) {
+            return operands[from];
+        }
+        final int mid = (from + to) >>> 1;
+        return binary(
+                op, balanced(op, operands, from, mid, reorder), balanced(op, operands, mid, to, reorder), reorder);
+    }
+
+    private static MethodHandle[] children(final MultiNode mn, final Function<Node, MethodHandle> compiler) {
+        final MethodHandle[] result = new MethodHandle[mn.getNumChildren()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = compiler.apply(mn.getChild(i));
+        }
+        return result;
+    }
+
+    private static int slot(final Map<String, Integer> slots, final VariableNode vn) {
+        final Integer slot = slots.get(vn.name());
+        if (slot == null) {
+            throw new IllegalArgumentException(String.format("Unknown variable '%s'", vn.name()));
+        }
+        return slot;
+    }
+
+    private static Integer smallIntegerExponent(final Node exponent) {
+        if (Rational.isRational(exponent)) {
+            final Rational e = Rational.of(exponent);
+            if (e.isInteger() && e.numerator().bitLength() < Integer.SIZE) {
+                return e.numerator().intValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the given node. Shared nodes are read from their slot, except for the given node itself when it is
+     * compiled to fill its own slot.
+     */
+    private static MethodHandle compileDouble(
+            final Node node,
+            final Map<String, Integer> slots,
+            final Map<Node, Integer> sharedSlots,
+            final boolean readShared) {
+        final Node n = withoutBrackets(node);
+        final Integer sharedSlot = readShared ? sharedSlots.get(n) : null;
+        if (sharedSlot != null) {
+            return MethodHandles.insertArguments(MethodHandles.arrayElementGetter(double[].class), 1, sharedSlot);
+        }
+        final Function<Node, MethodHandle> compiler = child -> compileDouble(child, slots, sharedSlots, true);
+        return compileDouble(n, slots, compiler);
+    }
+
+    private static MethodHandle compileDouble(
+            final Node node, final Map<String, Integer> slots, final Function<Node, MethodHandle> compiler) {
+        if (Rational.isRational(node)) {
+            final double value = Rational.of(node).doubleValue();
+            return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+        }
+        return switch (node) {
+            case VariableNode vn -> MethodHandles.insertArguments(
+                    MethodHandles.arrayElementGetter(double[].class), 1, slot(slots, vn));
+            case PlusNode pn -> balanced(DOUBLE_ADD, children(pn, compiler), 0, pn.getNumChildren(), DOUBLE_REORDER);
+            case MultiplyNode mn -> balanced(
+                    DOUBLE_MULTIPLY, children(mn, compiler), 0, mn.getNumChildren(), DOUBLE_REORDER);
+            case FractionNode fn -> binary(
+                    DOUBLE_DIVIDE, compiler.apply(fn.numerator()), compiler.apply(fn.denominator()), DOUBLE_REORDER);
+            case PowerNode pn -> {
+                final Integer e = smallIntegerExponent(withoutBrackets(pn.exponent()));
+                if (e != null) {
+                    yield MethodHandles.filterReturnValue(
+                            compiler.apply(pn.base()), MethodHandles.insertArguments(DOUBLE_POW_INT, 1, e));
+                }
+                yield binary(DOUBLE_POW, compiler.apply(pn.base()), compiler.apply(pn.exponent()), DOUBLE_REORDER);
+            }
+            default -> throw new IllegalArgumentException(
+                    String.format("Cannot evaluate '%s' numerically", node.toExpression()));
+        };
+    }
+
+    private static Handles compileDecimal(final Node root, final Map<String, Integer> slots) {
+        final List<Node> shared = sharedNodes(root);
+        final Map<Node, Integer> sharedSlots = sharedSlots(shared, slots.size());
+        final MethodHandle[] handles = new MethodHandle[shared.size()];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = compileDecimal(shared.get(i), slots, sharedSlots, false);
+        }
+        return new Handles(handles, compileDecimal(root, slots, sharedSlots, true));
+    }
+
+    private static MethodHandle compileDecimal(
+            final Node node,
+            final Map<String, Integer> slots,
+            final Map<Node, Integer> sharedSlots,
+            final boolean readShared) {
+        final Node n = withoutBrackets(node);
+        final Integer sharedSlot = readShared ? sharedSlots.get(n) : null;
+        if (sharedSlot != null) {
+            return MethodHandles.dropArguments(
+                    MethodHandles.insertArguments(MethodHandles.arrayElementGetter(BigDecimal[].class), 1, sharedSlot),
+                    1,
+                    MathContext.class);
+        }
+        final Function<Node, MethodHandle> compiler = child -> compileDecimal(child, slots, sharedSlots, true);
+        return compileDecimal(n, slots, compiler);
+    }
+
+    private static MethodHandle compileDecimal(
+            final Node node, final Map<String, Integer> slots, final Function<Node, MethodHandle> compiler) {
+        if (Rational.isRational(node)) {
+            final Rational value = Rational.of(node);
+            // rounded at evaluation time, to the precision requested then
+            final MethodHandle divide = MethodHandles.insertArguments(
+                    DECIMAL_DIVIDE, 0, new BigDecimal(value.numerator()), new BigDecimal(value.denominator()));
+            return MethodHandles.dropArguments(divide, 0, BigDecimal[].class);
+        }
+        return switch (node) {
+            case VariableNode vn -> MethodHandles.dropArguments(
+                    MethodHandles.insertArguments(
+                            MethodHandles.arrayElementGetter(BigDecimal[].class), 1, slot(slots, vn)),
+                    1,
+                    MathContext.class);
+            case PlusNode pn -> balanced(DECIMAL_ADD, children(pn, compiler), 0, pn.getNumChildren(), DECIMAL_REORDER);
+            case MultiplyNode mn -> balanced(
+                    DECIMAL_MULTIPLY, children(mn, compiler), 0, mn.getNumChildren(), DECIMAL_REORDER);
+            case FractionNode fn -> binary(
+                    DECIMAL_DIVIDE, compiler.apply(fn.numerator()), compiler.apply(fn.denominator()), DECIMAL_REORDER);
+            case PowerNode pn -> {
+                final Node exponent = withoutBrackets(pn.exponent());
+                if (!Rational.isRational(exponent)) {
+                    throw new IllegalArgumentException(
+                            String.format("Non-rational exponent in '%s'", pn.toExpression()));
+                }
+                // (base, mc) -> pow(base, exponent, mc), with the two MathContext parameters merged into one
+                final MethodHandle pow = MethodHandles.insertArguments(DECIMAL_POW, 1, Rational.of(exponent));
+                yield MethodHandles.permuteArguments(
+                        MethodHandles.collectArguments(pow, 0, compiler.apply(pn.base())), DECIMAL_TYPE, 0, 1, 1);
+            }
+            default -> throw new IllegalArgumentException(
+                    String.format("Cannot evaluate '%s' numerically", node.toExpression()));
+        };
+    }
+
+    private static Node withoutBrackets(final Node n) {
+        Node result = n;
+        while (result instanceof BracketNode bn) {
+            result = bn.inner();
+        }
+        return result;
+    }
+
+    private static double add(final double a, final double b) {
+        return a + b;
+    }
+
+    private static double multiply(final double a, final double b) {
+        return a * b;
+    }
+
+    private static double divide(final double a, final double b) {
+        return a / b;
+    }
+
+    private static double pow(final double base, final int exponent) {
+        if (exponent > MAX_SQUARING_EXPONENT || exponent < -MAX_SQUARING_EXPONENT) {
+            // each squaring adds a rounding error, which grows too large for larger exponents
+            return Math.pow(base, exponent);
+        }
+        // repeated squaring is accurate for small exponents and much faster than Math.pow, and squaring the reciprocal
+        // does not overflow when the power does not
+        int e = Math.abs(exponent);
+        double result = 1.0;
+        double b = exponent < 0 ? 1.0 / base : base;
+        while (e > 0) {
+            if ((e & 1) != 0) {
+                result *= b;
+            }
+            b *= b;
+            e >>>= 1;
+        }
+        return result;
+    }
+
+    private static BigDecimal add(final BigDecimal a, final BigDecimal b, final MathContext mc) {
+        return a.add(b, mc);
+    }
+
+    private static BigDecimal multiply(final BigDecimal a, final BigDecimal b, final MathContext mc) {
+        return a.multiply(b, mc);
+    }
+
+    private static BigDecimal divide(final BigDecimal a, final BigDecimal b, final MathContext mc) {
+        return a.divide(b, mc);
+    }
+
+    private static BigDecimal pow(final BigDecimal base, final Rational exponent, final MathContext mc) {
+        return Powers.approximate(base, exponent, mc);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledExpression[root=" + root.toExpression() + ", variables=" + variables + "]";
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ledmington.sce.EngineConstants;
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.numbers.ComplexDecimal;
+import com.ledmington.sce.numbers.Powers;
+import com.ledmington.sce.numbers.Rational;
+
+/**
+ * The numeric value of an expression, computed to any number of digits. The rational subexpressions are folded exactly
+ * once, when the evaluation is created, while the others are approximated with {@link BigDecimal}s. The imaginary unit
+ * is supported, so values may be complex.
+ *
+ * <p>Each approximation is repeated at a higher working precision until the requested digits stop changing, so they are
+ * correct even when the intermediate results cancel out. Asking for more digits later reuses the work already done:
+ * every subexpression remembers its most precise value, and roots are refined starting from their previous
+ * approximation.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class Evaluation {
+
+    // digits computed beyond the requested ones, to absorb the rounding errors of the intermediate results
+    private static final int GUARD_DIGITS = 10;
+
+    // how many times the working precision is raised before giving up on stable digits
+    private static final int MAX_REFINEMENTS = 8;
+
+    private final Term root;
+    private ComplexDecimal known = null;
+    private int knownDigits = 0;
+
+    private Evaluation(final Term root) {
+        this.root = root;
+    }
+
+    /**
+     * Prepares the evaluation of a constant expression.
+     *
+     * @param root The root of the expression.
+     * @return The evaluation.
+     * @throws IllegalArgumentException If the expression contains variables other than the imaginary unit, or powers
+     *     with non-rational exponents.
+     * @throws ArithmeticException If a rational subexpression divides by zero.
+     */
+    public static Evaluation of(final Node root) {
+        return of(root, Map.of());
+    }
+
+    /**
+     * Prepares the evaluation of an expression with the given values of its variables.
+     *
+     * @param root The root of the expression.
+     * @param bindings The value of each variable, as a constant expression.
+     * @return The evaluation.
+     * @throws IllegalArgumentException If the expression, or the value of a variable, contains unbound variables other
+     *     than the imaginary unit, or powers with non-rational exponents.
+     * @throws ArithmeticException If a rational subexpression divides by zero.
+     */
+    public static Evaluation of(final Node root, final Map<String, Node> bindings) {
+        Objects.requireNonNull(root);
+        return new Evaluation(compile(root, Map.copyOf(bindings)));
+    }
+
+    /**
+     * Checks whether the value is rational, and therefore known exactly.
+     *
+     * @return True if the value is rational.
+     */
+    public boolean isExact() {
+        return root instanceof Exact;
+    }
+
+    /**
+     * Returns the exact value.
+     *
+     * @return The value, or null if it is not rational.
+     */
+    public Rational exactValue() {
+        return root instanceof Exact e ? e.value : null;
+    }
+
+    /**
+     * Approximates the value to the given number of significant digits, rounding half to even. Values that cancel out
+     * to zero without being rational, like {@code 2^(1/2)*2^(1/2)-2}, never have stable digits: after a few attempts
+     * they are returned as a tiny number, like {@code 1E-756}, whose digits are not correct. Non-integer powers are
+     * principal values, except for the odd roots of negative numbers, which are real.
+     *
+     * @param digits The number of significant digits of each part, at least 1.
+     * @return The approximated value.
+     * @throws ArithmeticException If the value divides by zero, or has a root of a degree too large.
+     */
+    public ComplexDecimal value(final int digits) {
+        if (digits < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of digits: %,d", digits));
+        }
+        final MathContext target = new MathContext(digits, RoundingMode.HALF_EVEN);
+        if (root instanceof Exact e) {
+            return ComplexDecimal.of(e.value.toBigDecimal(target));
+        }
+        if (known != null && digits <= knownDigits) {
+            return known.round(target);
+        }
+
+        int work = digits + GUARD_DIGITS;
+        ComplexDecimal previous = root.value(new MathContext(work, RoundingMode.HALF_EVEN));
+        for (int i = 0; i < MAX_REFINEMENTS; i++) {
+            work += Math.max(GUARD_DIGITS, work / 2);
+            final ComplexDecimal next = root.value(new MathContext(work, RoundingMode.HALF_EVEN));
+            if (next.round(target).hasSameValue(previous.round(target))) {
+                known = next;
+                knownDigits = digits;
+                return next.round(target);
+            }
+            previous = next;
+        }
+        return previous.round(target);
+    }
+
+    /** A subexpression, remembering its most precise value. */
+    private abstract static class Term {
+
+        private ComplexDecimal cached = null;
+        private int cachedPrecision = 0;
+
+        final ComplexDecimal value(final MathContext mc) {
+            if (cached == null || cachedPrecision < mc.getPrecision()) {
+                cached = compute(mc);
+                cachedPrecision = mc.getPrecision();
+                return cached;
+            }
+            return cached.round(mc);
+        }
+
+        abstract ComplexDecimal compute(MathContext mc);
+    }
+
+    private static final class Exact extends Term {
+
+        private final Rational value;
+
+        Exact(final Rational value) {
+            this.value = value;
+        }
+
+        @Override
+        ComplexDecimal compute(final MathContext mc) {
+            return ComplexDecimal.of(value.toBigDecimal(mc));
+        }
+    }
+
+    private static final class ImaginaryUnit extends Term {
+        @Override
+        ComplexDecimal compute(final MathContext mc) {
+            return ComplexDecimal.I;
+        }
+    }
+
+    private static final class Sum extends Term {
+
+        private final List<Term> terms;
+
+        Sum(final List<Term> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        ComplexDecimal compute(final MathContext mc) {
+            ComplexDecimal r = terms.getFirst().value(mc);
+            for (int i = 1; i < terms.size(); i++) {
+                r = r.add(terms.get(i).value(mc), mc);
+            }
+            return r;
+        }
+    }
+
+    private static final class Product extends Term {
+
+        private final List<Term> factors;
+
+        Product(final List<Term> factors) {
+            this.factors = factors;
+        }
+
+        @Override
+        ComplexDecimal compute(final MathContext mc) {
+            ComplexDecimal r = factors.getFirst().value(mc);
+            for (int i = 1; i < factors.size(); i++) {
+                r = r.multiply(factors.get(i).value(mc), mc);
+            }
+            return r;
+        }
+    }
+
+    private static final class Quotient extends Term {
+
+        private final Term numerator;
+        private final Term denominator;
+
+        Quotient(final Term numerator, final Term denominator) {
+            this.numerator = numerator;
+            this.denominator = denominator;
+        }
+
+        @Override
+        ComplexDecimal compute(final MathContext mc) {
+            return numerator.value(mc).divide(denominator.value(mc), mc);
+        }
+    }
+
+    private static final class Power extends Term {
+
+        private final Term base;
+        private final Rational exponent;
+        // the previous approximation of the root, to start the next one from
+        private ComplexDecimal root = null;
+
+        Power(final Term base, final Rational exponent) {
+            this.base = base;
+            this.exponent = exponent;
+        }
+
+        @Override
+        ComplexDecimal compute(final MathContext mc) {
+            final ComplexDecimal b = base.value(mc);
+            if (exponent.isInteger()) {
+                return b.pow(exponent.numerator(), mc);
+            }
+            final BigInteger q = exponent.denominator();
+            if (q.bitLength() >= Integer.SIZE - 1) {
+                throw new ArithmeticException(String.format("Root degree too large: %s", q));
+            }
+            if (b.isReal() && b.real().signum() < 0 && q.testBit(0)) {
+                // odd roots of negative numbers are the real ones
+                root = ComplexDecimal.of(Powers.root(b.real(), q.intValue(), root == null ? null : root.real(), mc));
+            } else {
+                root = b.root(q.intValue(), root, mc);
+            }
+            return root.pow(exponent.numerator(), mc);
+        }
+    }
+
+    private static Term compile(final Node node, final Map<String, Node> bindings) {
+        if (Rational.isRational(node)) {
+            return new Exact(Rational.of(node));
+        }
+        return switch (node) {
+            case VariableNode vn -> {
+                if (vn.equals(EngineConstants.getImaginaryUnit())) {
+                    yield new ImaginaryUnit();
+                }
+                final Node value = bindings.get(vn.name());
+                if (value == null) {
+                    throw new IllegalArgumentException(String.format("Unbound variable '%s'", vn.name()));
+                }
+                // the values of the variables are constant expressions
+                yield compile(value, Map.of());
+            }
+            case BracketNode bn -> compile(bn.inner(), bindings);
+            case PlusNode pn -> {
+                final List<Term> terms = new ArrayList<>();
+                Rational exact = Rational.ZERO;
+                for (int i = 0; i < pn.getNumChildren(); i++) {
+                    final Term t = compile(pn.getChild(i), bindings);
+                    if (t instanceof Exact e) {
+                        exact = exact.add(e.value);
+                    } else {
+                        terms.add(t);
+                    }
+                }
+                if (terms.isEmpty()) {
+                    yield new Exact(exact);
+                }
+                if (!exact.isZero()) {
+                    terms.add(new Exact(exact));
+                }
+                yield terms.size() == 1 ? terms.getFirst() : new Sum(terms);
+            }
+            case MultiplyNode mn -> {
+                final List<Term> factors = new ArrayList<>();
+                Rational exact = Rational.ONE;
+                for (int i = 0; i < mn.getNumChildren(); i++) {
+                    final Term t = compile(mn.getChild(i), bindings);
+                    if (t instanceof Exact e) {
+                        exact = exact.multiply(e.value);
+                    } else {
+                        factors.add(t);
+                    }
+                }
+                if (factors.isEmpty() || exact.isZero()) {
+                    yield new Exact(exact);
+                }
+                if (!exact.equals(Rational.ONE)) {
+                    factors.add(new Exact(exact));
+                }
+                yield factors.size() == 1 ? factors.getFirst() : new Product(factors);
+            }
+            case FractionNode fn -> {
+                final Term n = compile(fn.numerator(), bindings);
+                final Term d = compile(fn.denominator(), bindings);
+                yield n instanceof Exact en && d instanceof Exact ed
+                        ? new Exact(en.value.divide(ed.value))
+                        : new Quotient(n, d);
+            }
+            case PowerNode pn -> {
+                final Term base = compile(pn.base(), bindings);
+                if (!(compile(pn.exponent(), bindings) instanceof Exact exponent)) {
+                    throw new IllegalArgumentException(
+                            String.format("Non-rational exponent in '%s'", pn.toExpression()));
+                }
+                if (base instanceof Exact b) {
+                    final Rational folded =
+                            Powers.fold(b.value, exponent.value, EngineConstants.getMaxFoldedPowerBits());
+                    if (folded != null) {
+                        yield new Exact(folded);
+                    }
+                }
+                yield new Power(base, exponent.value);
+            }
+            default -> throw new IllegalArgumentException(
+                    String.format("'%s' is not a numeric expression", node.toExpression()));
+        };
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * Compiles expressions into {@link CompiledExpression}s, keeping the most recently used ones so that compiling the same
+ * expression with the same variables again returns the same instance. It can be shared across threads.
+ */
+public final class ExpressionCompiler {
+
+    private record Key(Node root, List<String> variables) {}
+
+    private final int capacity;
+    private final Map<Key, CompiledExpression> compiled;
+    private long hits = 0L;
+    private long misses = 0L;
+
+    /**
+     * Creates a compiler keeping at most the given number of compiled expressions.
+     *
+     * @param capacity The maximum number of compiled expressions.
+     */
+    public ExpressionCompiler(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.format("Invalid capacity: %,d", capacity));
+        }
+        this.capacity = capacity;
+        this.compiled = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CompiledExpression> eldest) {
+                return size() > ExpressionCompiler.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled form of the given expression, compiling it only if it is not cached.
+     *
+     * @param root The root of the expression.
+     * @param variables The names of the variables, in the order of their values.
+     * @return The compiled expression.
+     * @see CompiledExpression#compile(Node, List)
+     */
+    public CompiledExpression compile(final Node root, final List<String> variables) {
+        final Key key = new Key(Objects.requireNonNull(root), List.copyOf(variables));
+        synchronized (this) {
+            final CompiledExpression cached = compiled.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // compiled outside the lock: racing threads may compile the same expression twice, but only one is kept
+        final CompiledExpression result = CompiledExpression.compile(root, key.variables());
+        synchronized (this) {
+            final CompiledExpression other = compiled.putIfAbsent(key, result);
+            return other == null ? result : other;
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return compiled.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        compiled.clear();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * Forward-mode automatic differentiation: evaluates an expression together with its partial derivatives with respect to
+ * some of its variables, in a single pass and without building any derivative tree.
+ *
+ * <p>The expression is compiled into the same straight-line code as a {@link BatchPlan}. Each register holds a dual
+ * number with one tangent for each direction: all of them are stored in a single {@code double[]}, with the value of
+ * each register followed by its tangents, so no object is created for each operation. The variables have their own dual
+ * numbers, set once for each evaluation.
+ *
+ * <p>Instances are immutable and can be shared between threads.
+ */
+public final class GradientEvaluator {
+
+    // integer powers up to this one are computed by repeated squaring
+    private static final long MAX_SQUARING_EXPONENT = 64L;
+
+    private final Program program;
+    private final List<String> directions;
+    // for each variable, its index among the directions or -1
+    private final int[] direction;
+    // the value and the tangents of each register
+    private final int stride;
+    // the offsets of the destination and of the operands of each instruction: the variables have their own slots
+    // after the registers
+    private final int[] dst;
+    private final int[] x;
+    private final int[] y;
+
+    private GradientEvaluator(final Program program, final List<String> directions, final int[] direction) {
+        this.program = program;
+        this.directions = directions;
+        this.direction = direction;
+        this.stride = 1 + directions.size();
+        final int n = program.size();
+        this.dst = new int[n];
+        this.x = new int[n];
+        this.y = new int[n];
+        for (int i = 0; i < n; i++) {
+            final int pc = i * Program.WIDTH;
+            dst[i] = program.code[pc + 1] * stride;
+            x[i] = slot(program.code[pc + 2]);
+            y[i] = slot(program.code[pc + 3]);
+        }
+    }
+
+    private int slot(final int operand) {
+        return (operand >= 0 ? operand : program.numRegisters - 1 - operand) * stride;
+    }
+
+    /**
+     * Compiles the given expression, to differentiate it with respect to the given variables.
+     *
+     * @param root The root of the expression, with only constants, variables, sums, products, fractions and powers.
+     * @param variables The names of the variables, in the order of their values.
+     * @param directions The names of the variables to differentiate with respect to, a subset of the variables.
+     * @return The evaluator.
+     * @throws IllegalArgumentException If the expression contains variables not in the list, or other nodes, or if a
+     *     direction is not a variable.
+     */
+    public static GradientEvaluator compile(
+            final Node root, final List<String> variables, final List<String> directions) {
+        final Program program = Program.compile(root, variables);
+        final List<String> dirs = List.copyOf(directions);
+        final int[] direction = new int[program.variables.size()];
+        Arrays.fill(direction, -1);
+        for (int j = 0; j < dirs.size(); j++) {
+            final int v = program.variables.indexOf(dirs.get(j));
+            if (v < 0) {
+                throw new IllegalArgumentException(String.format("Unknown variable '%s'", dirs.get(j)));
+            }
+            if (direction[v] >= 0) {
+                throw new IllegalArgumentException(String.format("Duplicate direction '%s'", dirs.get(j)));
+            }
+            direction[v] = j;
+        }
+        return new GradientEvaluator(program, dirs, direction);
+    }
+
+    /**
+     * Compiles the given expression, to differentiate it with respect to all of its variables.
+     *
+     * @param root The root of the expression.
+     * @param variables The names of the variables, in the order of their values.
+     * @return The evaluator.
+     */
+    public static GradientEvaluator compile(final Node root, final List<String> variables) {
+        return compile(root, variables, variables);
+    }
+
+    /**
+     * Returns the names of the variables, in the order of their values.
+     *
+     * @return The names of the variables.
+     */
+    public List<String> variables() {
+        return program.variables;
+    }
+
+    /**
+     * Returns the names of the variables to differentiate with respect to, in the order of the gradient.
+     *
+     * @return The names of the directions.
+     */
+    public List<String> directions() {
+        return directions;
+    }
+
+    /**
+     * Evaluates the gradient at the given point.
+     *
+     * @param point The values of the variables, in the order given at compile time.
+     * @return The partial derivatives, in the order of the directions.
+     */
+    public double[] gradient(final double... point) {
+        final double[] gradient = new double[directions.size()];
+        evaluate(point, gradient);
+        return gradient;
+    }
+
+    /**
+     * Evaluates the expression and its gradient at the given point, allocating only the registers.
+     *
+     * @param point The values of the variables, in the order given at compile time.
+     * @param gradient The array receiving the partial derivatives, in the order of the directions.
+     * @return The value of the expression.
+     */
+    public double evaluate(final double[] point, final double[] gradient) {
+        if (point.length != program.variables.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %,d values but got %,d", program.variables.size(), point.length));
+        }
+        if (gradient.length != directions.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %,d derivatives but got %,d", directions.size(), gradient.length));
+        }
+
+        final int[] code = program.code;
+        final double[] dual = new double[(program.numRegisters + point.length) * stride];
+        for (int v = 0; v < point.length; v++) {
+            final int s = slot(-1 - v);
+            dual[s] = point[v];
+            if (direction[v] >= 0) {
+                dual[s + 1 + direction[v]] = 1.0;
+            }
+        }
+
+        final int k = directions.size();
+        for (int i = 0; i < dst.length; i++) {
+            final int d = dst[i];
+            final int a = x[i];
+            final int b = y[i];
+            final int pc = i * Program.WIDTH;
+            switch (code[pc]) {
+                case Program.FILL -> {
+                    dual[d] = program.constants[code[pc + 4]];
+                    Arrays.fill(dual, d + 1, d + stride, 0.0);
+                }
+                case Program.COPY -> System.arraycopy(dual, a, dual, d, stride);
+                case Program.ADD -> {
+                    for (int j = 0; j < stride; j++) {
+                        dual[d + j] = dual[a + j] + dual[b + j];
+                    }
+                }
+                case Program.MULTIPLY -> {
+                    // (uv)' = u'v + uv'
+                    final double u = dual[a];
+                    final double v = dual[b];
+                    for (int j = 1; j <= k; j++) {
+                        dual[d + j] = dual[a + j] * v + u * dual[b + j];
+                    }
+                    dual[d] = u * v;
+                }
+                case Program.DIVIDE -> {
+                    // (u/v)' = (u' - (u/v)v')/v
+                    final double v = dual[b];
+                    final double q = dual[a] / v;
+                    for (int j = 1; j <= k; j++) {
+                        dual[d + j] = (dual[a + j] - q * dual[b + j]) / v;
+                    }
+                    dual[d] = q;
+                }
+                case Program.POW -> {
+                    // (u^v)' = v*u^(v-1)*u' + u^v*ln(u)*v', with the logarithm only for exponents which vary
+                    final double u = dual[a];
+                    final double v = dual[b];
+                    final double p = Math.pow(u, v);
+                    final double du = v * Math.pow(u, v - 1.0);
+                    double dv = Double.NaN;
+                    for (int j = 1; j <= k; j++) {
+                        final double t = dual[b + j];
+                        if (t == 0.0) {
+                            dual[d + j] = du * dual[a + j];
+                        } else {
+                            if (Double.isNaN(dv)) {
+                                dv = p * Math.log(u);
+                            }
+                            dual[d + j] = du * dual[a + j] + dv * t;
+                        }
+                    }
+                    dual[d] = p;
+                }
+                case Program.POW_INT -> {
+                    final long e = Integer.toUnsignedLong(code[pc + 4]);
+                    final double u = dual[a];
+                    final double du = e * powInt(u, e - 1L);
+                    for (int j = 1; j <= k; j++) {
+                        dual[d + j] = du * dual[a + j];
+                    }
+                    dual[d] = powInt(u, e);
+                }
+                default -> throw new IllegalStateException(String.format("Invalid opcode %d", code[pc]));
+            }
+        }
+        final int r = program.result * stride;
+        System.arraycopy(dual, r + 1, gradient, 0, k);
+        return dual[r];
+    }
+
+    private static double powInt(final double base, final long exponent) {
+        if (exponent > MAX_SQUARING_EXPONENT) {
+            // each squaring rounds, so the error of large powers would grow with the exponent
+            return Math.pow(base, exponent);
+        }
+        double result = 1.0;
+        double b = base;
+        for (long e = exponent; e > 0L; e >>>= 1) {
+            if ((e & 1L) != 0L) {
+                result *= b;
+            }
+            b *= b;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.numbers.Rational;
+
+/**
+ * An expression compiled into straight-line code over numbered registers, shared by the evaluators which run the same
+ * operations over other kinds of values. Registers are reused as soon as their value has been consumed, so wide
+ * expressions need only a few of them.
+ */
+final class Program {
+
+    static final int FILL = 0;
+    static final int COPY = 1;
+    static final int ADD = 2;
+    static final int MULTIPLY = 3;
+    static final int DIVIDE = 4;
+    static final int POW = 5;
+    static final int POW_INT = 6;
+
+    // each instruction is an opcode, a destination register, two operands and an immediate: operands are registers if
+    // non-negative, or the variables -1, -2 and so on
+    static final int WIDTH = 5;
+
+    // integer powers up to this one are turned into multiplications
+    private static final long MAX_UNROLLED_EXPONENT = 64L;
+
+    final List<String> variables;
+    final int[] code;
+    final double[] constants;
+    final int numRegisters;
+    final int result;
+
+    private Program(
+            final List<String> variables,
+            final int[] code,
+            final double[] constants,
+            final int numRegisters,
+            final int result) {
+        this.variables = variables;
+        this.code = code;
+        this.constants = constants;
+        this.numRegisters = numRegisters;
+        this.result = result;
+    }
+
+    /**
+     * Compiles the given expression.
+     *
+     * @param root The root of the expression, with only constants, variables, sums, products, fractions and powers.
+     * @param variables The names of the variables, in the order of their values.
+     * @return The program, whose result is always in a register.
+     * @throws IllegalArgumentException If the expression contains variables not in the list, or other nodes.
+     */
+    static Program compile(final Node root, final List<String> variables) {
+        Objects.requireNonNull(root);
+        final List<String> names = List.copyOf(variables);
+        final Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (columns.put(names.get(i), i) != null) {
+                throw new IllegalArgumentException(String.format("Duplicate variable '%s'", names.get(i)));
+            }
+        }
+        final Assembler asm = new Assembler(columns, root);
+        int r = asm.compile(root);
+        if (r < 0) {
+            // the whole expression is a variable
+            final int dst = asm.allocate();
+            asm.emit(COPY, dst, r, 0, 0);
+            r = dst;
+        }
+        return new Program(names, asm.code(), asm.constants(), asm.numRegisters, r);
+    }
+
+    /**
+     * Emits the instructions, reusing each register as soon as its value has been consumed. Subtrees shared by several
+     * parents are computed once: their register is kept until its last use.
+     */
+    private static final class Assembler {
+
+        private final Map<String, Integer> columns;
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Double> constants = new ArrayList<>();
+        private final Deque<Integer> free = new ArrayDeque<>();
+        private final Map<Node, Integer> needs = new IdentityHashMap<>();
+        // how many times each node is compiled, counting every parent
+        private final Map<Node, Integer> uses = new IdentityHashMap<>();
+        // the register holding each shared node already computed
+        private final Map<Node, Integer> registers = new IdentityHashMap<>();
+        // the number of operands still to be read from each register of a shared node, while the others have one
+        private final Map<Integer, Integer> holders = new HashMap<>();
+        private int numRegisters = 0;
+
+        Assembler(final Map<String, Integer> columns, final Node root) {
+            this.columns = columns;
+            countUses(root);
+        }
+
+        private void countUses(final Node root) {
+            final Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            uses.put(root, 1);
+            while (!stack.isEmpty()) {
+                final Node n = stack.pop();
+                final List<Node> children =
+                        switch (n) {
+                            case BracketNode bn -> List.of(bn.inner());
+                            case MultiNode mn -> {
+                                final List<Node> all = new ArrayList<>(mn.getNumChildren());
+                                for (int i = 0; i < mn.getNumChildren(); i++) {
+                                    all.add(mn.getChild(i));
+                                }
+                                yield all;
+                            }
+                            case FractionNode fn -> List.of(fn.numerator(), fn.denominator());
+                            case PowerNode pn -> List.of(pn.base(), pn.exponent());
+                            default -> List.of();
+                        };
+                for (final Node child : children) {
+                    // the children of a node are counted only when it is first seen, as it is compiled only once
+                    if (uses.merge(child, 1, Integer::sum) == 1) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+
+        int allocate() {
+            return free.isEmpty() ? numRegisters++ : free.pop();
+        }
+
+        /** Gives up one read of the given operand, freeing its register after the last one. */
+        void release(final int operand) {
+            if (operand < 0) {
+                return;
+            }
+            final int n = holders.getOrDefault(operand, 1);
+            if (n == 1) {
+                holders.remove(operand);
+                free.push(operand);
+            } else {
+                holders.put(operand, n - 1);
+            }
+        }
+
+        /**
+         * Returns a register to write an operation reading the given operand into, which is the operand itself if that
+         * is its last read.
+         */
+        private int target(final int operand) {
+            if (operand >= 0 && holders.getOrDefault(operand, 1) == 1) {
+                holders.remove(operand);
+                return operand;
+            }
+            release(operand);
+            return allocate();
+        }
+
+        void emit(final int op, final int dst, final int a, final int b, final int imm) {
+            code.add(op);
+            code.add(dst);
+            code.add(a);
+            code.add(b);
+            code.add(imm);
+        }
+
+        /** Emits a binary operation, writing into the first operand if it is a register read for the last time. */
+        int binary(final int op, final int a, final int b) {
+            final int dst;
+            if (a >= 0 && holders.getOrDefault(a, 1) <= (a == b ? 2 : 1)) {
+                holders.remove(a);
+                if (b != a) {
+                    release(b);
+                }
+                dst = a;
+            } else {
+                release(a);
+                release(b);
+                dst = allocate();
+            }
+            emit(op, dst, a, b, 0);
+            return dst;
+        }
+
+        int compile(final Node node) {
+            if (Rational.isRational(node) || node instanceof VariableNode) {
+                return compileOnce(node);
+            }
+            final Integer shared = registers.get(node);
+            if (shared != null) {
+                return shared;
+            }
+            final int r = compileOnce(node);
+            final int n = uses.getOrDefault(node, 1);
+            if (n == 1 || r < 0) {
+                return r;
+            }
+            // the value of a shared child may be returned as it is, so the register of a shared node must be its own
+            int own = r;
+            if (holders.containsKey(r)) {
+                own = allocate();
+                emit(COPY, own, r, 0, 0);
+                release(r);
+            }
+            registers.put(node, own);
+            // each parent reads it once
+            holders.put(own, n);
+            return own;
+        }
+
+        private int compileOnce(final Node node) {
+            if (Rational.isRational(node)) {
+                return constant(Rational.of(node).doubleValue());
+            }
+            return switch (node) {
+                case VariableNode vn -> {
+                    final Integer column = columns.get(vn.name());
+                    if (column == null) {
+                        throw new IllegalArgumentException(String.format("Unknown variable '%s'", vn.name()));
+                    }
+                    yield -1 - column;
+                }
+                case BracketNode bn -> compile(bn.inner());
+                case PlusNode pn -> fold(ADD, pn);
+                case MultiplyNode mn -> fold(MULTIPLY, mn);
+                case FractionNode fn -> binary(DIVIDE, compile(fn.numerator()), compile(fn.denominator()));
+                case PowerNode pn -> {
+                    Node exponent = pn.exponent();
+                    while (exponent instanceof BracketNode bn) {
+                        exponent = bn.inner();
+                    }
+                    if (Rational.isRational(exponent)
+                            && Rational.of(exponent).isInteger()
+                            && Rational.of(exponent).numerator().bitLength() < Integer.SIZE) {
+                        yield power(
+                                compile(pn.base()),
+                                Rational.of(exponent).numerator().intValue());
+                    }
+                    // through the brackets, which are counted as the users of the exponent
+                    yield binary(POW, compile(pn.base()), compile(pn.exponent()));
+                }
+                default -> throw new IllegalArgumentException(
+                        String.format("Cannot evaluate '%s' numerically", node.toExpression()));
+            };
+        }
+
+        /**
+         * Emits x^e for an integer e. Small exponents are unrolled into multiplications by repeated squaring, so that
+         * they run on the same lane-wise kernels as products. Negative exponents raise the reciprocal of the base,
+         * which does not overflow when the result does not.
+         */
+        private int power(final int base, final int exponent) {
+            final long abs = Math.abs((long) exponent);
+            if (abs == 0L) {
+                release(base);
+                return constant(1.0);
+            }
+            final int b = exponent < 0 ? binary(DIVIDE, constant(1.0), base) : base;
+            if (abs > MAX_UNROLLED_EXPONENT) {
+                final int r = target(b);
+                emit(POW_INT, r, b, 0, (int) abs);
+                return r;
+            }
+            return unrolledPower(b, abs);
+        }
+
+        private int unrolledPower(final int base, final long exponent) {
+            int square = base;
+            int acc = 0;
+            boolean hasAcc = false;
+            for (long e = exponent; ; e >>>= 1) {
+                if ((e & 1L) != 0L) {
+                    if (hasAcc) {
+                        emit(MULTIPLY, acc, acc, square, 0);
+                    } else if (e == 1L) {
+                        return square;
+                    } else {
+                        acc = allocate();
+                        emit(COPY, acc, square, 0, 0);
+                        hasAcc = true;
+                    }
+                }
+                if (e == 1L) {
+                    release(square);
+                    return acc;
+                }
+                final int dst = target(square);
+                emit(MULTIPLY, dst, square, square, 0);
+                square = dst;
+            }
+        }
+
+        private int constant(final double value) {
+            final int dst = allocate();
+            constants.add(value);
+            emit(FILL, dst, 0, 0, constants.size() - 1);
+            return dst;
+        }
+
+        /**
+         * Folds the children, starting from the ones which need more registers: the partial result is held while each
+         * of the others is computed, so a deep child compiled last would keep it alive for its whole subtree.
+         */
+        private int fold(final int op, final MultiNode mn) {
+            final Node[] children = new Node[mn.getNumChildren()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = mn.getChild(i);
+            }
+            Arrays.sort(children, Comparator.comparingInt(this::need).reversed());
+            int acc = compile(children[0]);
+            for (int i = 1; i < children.length; i++) {
+                acc = binary(op, acc, compile(children[i]));
+            }
+            return acc;
+        }
+
+        /** Estimates the number of registers needed to compute the given node, as in the Sethi-Ullman numbering. */
+        private int need(final Node node) {
+            final Integer cached = needs.get(node);
+            if (cached != null) {
+                return cached;
+            }
+            final int result =
+                    switch (node) {
+                        case VariableNode ignored -> 0;
+                        case BracketNode bn -> need(bn.inner());
+                        case MultiNode mn -> {
+                            final int[] children = new int[mn.getNumDistinctChildren()];
+                            for (int i = 0; i < children.length; i++) {
+                                children[i] = need(mn.getDistinctChild(i));
+                            }
+                            Arrays.sort(children);
+                            int max = 1;
+                            for (int i = 0; i < children.length; i++) {
+                                // the largest is computed first, every other one while holding the partial result
+                                max = Math.max(max, children[children.length - 1 - i] + (i == 0 ? 0 : 1));
+                            }
+                            yield max;
+                        }
+                        case FractionNode fn -> Math.max(need(fn.numerator()), need(fn.denominator()) + 1);
+                        case PowerNode pn -> Math.max(need(pn.base()), need(pn.exponent()) + 1) + 1;
+                        default -> 1;
+                    };
+            needs.put(node, result);
+            return result;
+        }
+
+        int[] code() {
+            final int[] result = new int[code.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = code.get(i);
+            }
+            return result;
+        }
+
+        double[] constants() {
+            final double[] result = new double[constants.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = constants.get(i);
+            }
+            return result;
+        }
+    }
+
+    int size() {
+        return code.length / WIDTH;
+    }
+}
@@ -17,15 +17,34 @@
  */
 package com.ledmington.sce.nodes;
 
-public record BracketNode(Node inner) implements Node {
+import java.util.Objects;
+
+public final class BracketNode implements Node {
+
+    private final Node inner;
+    private final int hash;
+    private final int size;
+    private final boolean isConstant;
+
+    public BracketNode(final Node inner) {
+        this.inner = Objects.requireNonNull(inner);
+        this.hash = 17 + 31 * inner.hashCode();
+        this.size = Sizes.add(1, inner.size());
+        this.isConstant = inner.isConstant();
+    }
+
+    public Node inner() {
+        return inner;
+    }
+
     @Override
     public boolean isConstant() {
-        return inner.isConstant();
+        return isConstant;
     }
 
     @Override
     public int size() {
-        return 1 + inner.size();
+        return size;
     }
 
     @Override
@@ -37,4 +56,29 @@ public record BracketNode(Node inner) implements Node {
     public String toLatex() {
         return "(" + inner.toLatex() + ")";
     }
+
+    @Override
+    public String toString() {
+        return "BracketNode[inner=" + inner + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final BracketNode o = (BracketNode) other;
+        return this.hash == o.hash && this.inner.equals(o.inner);
+    }
 }
@@ -19,9 +19,182 @@ package com.ledmington.sce.nodes;
 
 import java.math.BigInteger;
 
-public record ConstantNode(BigInteger value) implements Node {
+/**
+ * An integer constant. Values that fit in a {@code long} are stored as such and their arithmetic uses overflow-checked
+ * {@code long} operations, falling back to {@link BigInteger} only when a result overflows.
+ */
+public final class ConstantNode implements Node {
+
+    private final long small;
+
+    // null when the value fits in a long
+    private final BigInteger big;
+
+    public ConstantNode(final long value) {
+        this.small = value;
+        this.big = null;
+    }
+
+    public ConstantNode(final BigInteger value) {
+        if (fitsInLong(value)) {
+            this.small = value.longValue();
+            this.big = null;
+        } else {
+            this.small = 0L;
+            this.big = value;
+        }
+    }
+
     public static ConstantNode of(final int value) {
-        return new ConstantNode(BigInteger.valueOf(value));
+        return NodeFactory.constant(value);
+    }
+
+    static boolean fitsInLong(final BigInteger value) {
+        return value.bitLength() < Long.SIZE;
+    }
+
+    public BigInteger value() {
+        return big == null ? BigInteger.valueOf(small) : big;
+    }
+
+    /**
+     * Checks whether this constant fits in a {@code long}.
+     *
+     * @return True if {@link #longValue()} can be called, false otherwise.
+     */
+    public boolean isSmall() {
+        return big == null;
+    }
+
+    /**
+     * Returns the value of this constant, if it fits in a {@code long}.
+     *
+     * @return The value of this constant.
+     * @throws ArithmeticException If the value does not fit in a {@code long}.
+     */
+    public long longValue() {
+        if (big != null) {
+            throw new ArithmeticException(String.format("%s does not fit in a long", big));
+        }
+        return small;
+    }
+
+    public int signum() {
+        return big == null ? Long.signum(small) : big.signum();
+    }
+
+    public ConstantNode negate() {
+        if (big == null && small != Long.MIN_VALUE) {
+            return NodeFactory.constant(-small);
+        }
+        return NodeFactory.constant(value().negate());
+    }
+
+    public ConstantNode abs() {
+        return signum() < 0 ? negate() : this;
+    }
+
+    public ConstantNode add(final ConstantNode other) {
+        if (big == null && other.big == null) {
+            final long r = small + other.small;
+            // same check as Math.addExact, without paying for the exception on overflow
+            if (((small ^ r) & (other.small ^ r)) >= 0L) {
+                return NodeFactory.constant(r);
+            }
+        }
+        return NodeFactory.constant(value().add(other.value()));
+    }
+
+    public ConstantNode multiply(final ConstantNode other) {
+        if (big == null && other.big == null) {
+            final long hi = Math.multiplyHigh(small, other.small);
+            final long lo = small * other.small;
+            // same check as Math.multiplyExact: no overflow iff the high half is the sign extension of the low half
+            if (hi == (lo >> 63)) {
+                return NodeFactory.constant(lo);
+            }
+        }
+        return NodeFactory.constant(value().multiply(other.value()));
+    }
+
+    /**
+     * Divides this constant by the given one, rounding towards zero.
+     *
+     * @param other The divisor.
+     * @return The quotient.
+     * @throws ArithmeticException If the divisor is zero.
+     */
+    public ConstantNode divide(final ConstantNode other) {
+        if (big == null && other.big == null && !(small == Long.MIN_VALUE && other.small == -1L)) {
+            return NodeFactory.constant(small / other.small);
+        }
+        return NodeFactory.constant(value().divide(other.value()));
+    }
+
+    /**
+     * Returns the greatest common divisor of the absolute values of this constant and the given one.
+     *
+     * @param other The other constant.
+     * @return The non-negative greatest common divisor, which is zero only if both constants are zero.
+     */
+    public ConstantNode gcd(final ConstantNode other) {
+        if (big == null && other.big == null && small != Long.MIN_VALUE && other.small != Long.MIN_VALUE) {
+            long a = Math.abs(small);
+            long b = Math.abs(other.small);
+            while (b != 0L) {
+                final long t = a % b;
+                a = b;
+                b = t;
+            }
+            return NodeFactory.constant(a);
+        }
+        return NodeFactory.constant(value().gcd(other.value()));
+    }
+
+    /**
+     * Raises this constant to the given non-negative power.
+     *
+     * @param exponent The exponent.
+     * @return This constant raised to the given power.
+     * @throws ArithmeticException If the exponent is negative.
+     */
+    public ConstantNode pow(final int exponent) {
+        if (exponent < 0) {
+            throw new ArithmeticException("Negative exponent");
+        }
+        if (big == null) {
+            long result = 1L;
+            long base = small;
+            int e = exponent;
+            try {
+                while (e > 0) {
+                    if ((e & 1) != 0) {
+                        result = Math.multiplyExact(result, base);
+                    }
+                    e >>>= 1;
+                    if (e > 0) {
+                        base = Math.multiplyExact(base, base);
+                    }
+                }
+                return NodeFactory.constant(result);
+            } catch (final ArithmeticException overflow) {
+                // fall through to the BigInteger path
+            }
+        }
+        return NodeFactory.constant(value().pow(exponent));
+    }
+
+    /**
+     * Returns the remainder of the floor division of this constant by the given positive divisor.
+     *
+     * @param divisor The divisor.
+     * @return The remainder, in the range {@code [0, divisor)}.
+     */
+    public int floorMod(final int divisor) {
+        if (big == null) {
+            return Math.floorMod(small, divisor);
+        }
+        return big.mod(BigInteger.valueOf(divisor)).intValue();
     }
 
     @Override
@@ -36,11 +209,37 @@ public record ConstantNode(BigInteger value) implements Node {
 
     @Override
     public String toExpression() {
-        return value.toString();
+        return big == null ? Long.toString(small) : big.toString();
     }
 
     @Override
     public String toLatex() {
-        return value.toString();
+        return toExpression();
+    }
+
+    @Override
+    public String toString() {
+        return "ConstantNode[value=" + toExpression() + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return big == null ? Long.hashCode(small) : big.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final ConstantNode o = (ConstantNode) other;
+        // the representation is canonical: a value is stored in big only if it does not fit in a long
+        return this.big == null ? (o.big == null && this.small == o.small) : this.big.equals(o.big);
     }
 }
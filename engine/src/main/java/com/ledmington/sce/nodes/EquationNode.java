@@ -17,16 +17,40 @@
  */
 package com.ledmington.sce.nodes;
 
-public record EquationNode(Node lhs, Node rhs) implements Node {
+import java.util.Objects;
+
+public final class EquationNode implements Node {
+
+    private final Node lhs;
+    private final Node rhs;
+    private final int hash;
+    private final int size;
+    private final boolean isConstant;
+
+    public EquationNode(final Node lhs, final Node rhs) {
+        this.lhs = Objects.requireNonNull(lhs);
+        this.rhs = Objects.requireNonNull(rhs);
+        this.hash = 31 * (17 + 31 * lhs.hashCode()) + rhs.hashCode();
+        this.size = Sizes.add(1, Sizes.add(lhs.size(), rhs.size()));
+        this.isConstant = lhs.isConstant() && rhs.isConstant();
+    }
+
+    public Node lhs() {
+        return lhs;
+    }
+
+    public Node rhs() {
+        return rhs;
+    }
 
     @Override
     public boolean isConstant() {
-        return lhs.isConstant() && rhs.isConstant();
+        return isConstant;
     }
 
     @Override
     public int size() {
-        return 1 + lhs.size() + rhs.size();
+        return size;
     }
 
     @Override
@@ -38,4 +62,29 @@ public record EquationNode(Node lhs, Node rhs) implements Node {
     public String toLatex() {
         return lhs.toLatex() + "=" + rhs.toLatex();
     }
+
+    @Override
+    public String toString() {
+        return "EquationNode[lhs=" + lhs + ", rhs=" + rhs + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final EquationNode o = (EquationNode) other;
+        return this.hash == o.hash && this.lhs.equals(o.lhs) && this.rhs.equals(o.rhs);
+    }
 }
@@ -17,23 +17,48 @@
  */
 package com.ledmington.sce.nodes;
 
-public record FractionNode(Node numerator, Node denominator) implements Node {
+import java.util.Objects;
+
+public final class FractionNode implements Node {
+
+    private final Node numerator;
+    private final Node denominator;
+    private final int hash;
+    private final int size;
+    private final boolean isConstant;
+
+    public FractionNode(final Node numerator, final Node denominator) {
+        this.numerator = Objects.requireNonNull(numerator);
+        this.denominator = Objects.requireNonNull(denominator);
+        this.hash = 31 * (17 + 31 * numerator.hashCode()) + denominator.hashCode();
+        this.size = Sizes.add(1, Sizes.add(numerator.size(), denominator.size()));
+        this.isConstant = numerator.isConstant() && denominator.isConstant();
+    }
+
+    public Node numerator() {
+        return numerator;
+    }
+
+    public Node denominator() {
+        return denominator;
+    }
+
     public static FractionNode of(final int constant) {
-        return new FractionNode(ConstantNode.of(constant), ConstantNode.of(1));
+        return NodeFactory.fraction(ConstantNode.of(constant), ConstantNode.of(1));
     }
 
     public static FractionNode of(final int numerator, final int denominator) {
-        return new FractionNode(ConstantNode.of(numerator), ConstantNode.of(denominator));
+        return NodeFactory.fraction(ConstantNode.of(numerator), ConstantNode.of(denominator));
     }
 
     @Override
     public boolean isConstant() {
-        return numerator.isConstant() && denominator.isConstant();
+        return isConstant;
     }
 
     @Override
     public int size() {
-        return 1 + numerator.size() + denominator.size();
+        return size;
     }
 
     @Override
@@ -51,4 +76,29 @@ public record FractionNode(Node numerator, Node denominator) implements Node {
     public String toLatex() {
         return "\\frac{" + numerator.toLatex() + "}{" + denominator.toLatex() + "}";
     }
+
+    @Override
+    public String toString() {
+        return "FractionNode[numerator=" + numerator + ", denominator=" + denominator + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final FractionNode o = (FractionNode) other;
+        return this.hash == o.hash && this.numerator.equals(o.numerator) && this.denominator.equals(o.denominator);
+    }
 }
@@ -25,4 +25,28 @@ public interface MultiNode extends Node {
     int getNumChildren();
 
     Node getChild(final int idx);
+
+    /**
+     * Returns the number of distinct children, ignoring their multiplicity.
+     *
+     * @return The number of distinct children.
+     */
+    int getNumDistinctChildren();
+
+    /**
+     * Returns the distinct child at the given index. Valid indices range from 0 to {@link #getNumDistinctChildren()}
+     * excluded.
+     *
+     * @param idx The index of the distinct child.
+     * @return The distinct child.
+     */
+    Node getDistinctChild(final int idx);
+
+    /**
+     * Returns how many times the distinct child at the given index appears in this node.
+     *
+     * @param idx The index of the distinct child.
+     * @return The multiplicity of the distinct child.
+     */
+    int getMultiplicity(final int idx);
 }
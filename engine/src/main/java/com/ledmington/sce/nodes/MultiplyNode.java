@@ -17,39 +17,31 @@
  */
 package com.ledmington.sce.nodes;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 public final class MultiplyNode implements MultiNode {
 
-    private final Map<Node, Integer> children;
+    private final NodeMultiset children;
+    private final int size;
+    private final boolean isConstant;
 
     public MultiplyNode(final Node... nodes) {
-        this.children = new HashMap<>();
-        for (final Node n : nodes) {
-            Objects.requireNonNull(n);
-            if (this.children.containsKey(n)) {
-                this.children.put(n, this.children.get(n) + 1);
-            } else {
-                this.children.put(n, 1);
-            }
-        }
+        this(Arrays.asList(nodes));
     }
 
     public MultiplyNode(final List<Node> nodes) {
-        this.children = new HashMap<>();
-        for (final Node n : nodes) {
-            Objects.requireNonNull(n);
-            if (this.children.containsKey(n)) {
-                this.children.put(n, this.children.get(n) + 1);
-            } else {
-                this.children.put(n, 1);
-            }
+        this.children = new NodeMultiset(nodes);
+
+        int s = 1;
+        boolean allConstants = true;
+        for (int i = 0; i < children.distinctSize(); i++) {
+            final Node child = children.getDistinct(i);
+            s = Sizes.add(s, Sizes.multiply(children.getMultiplicity(i), child.size()));
+            allConstants = allConstants && child.isConstant();
         }
+        this.size = s;
+        this.isConstant = allConstants;
     }
 
     @Override
@@ -59,45 +51,64 @@ public final class MultiplyNode implements MultiNode {
 
     @Override
     public int getNumChildren() {
-        return children.values().stream().mapToInt(x -> x).sum();
+        return children.size();
     }
 
     @Override
     public Node getChild(final int idx) {
-        return children.entrySet().stream()
-                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
-                .skip(idx)
-                .findFirst()
-                .orElseThrow();
+        return children.get(idx);
+    }
+
+    @Override
+    public int getNumDistinctChildren() {
+        return children.distinctSize();
+    }
+
+    @Override
+    public Node getDistinctChild(final int idx) {
+        return children.getDistinct(idx);
+    }
+
+    @Override
+    public int getMultiplicity(final int idx) {
+        return children.getMultiplicity(idx);
     }
 
     @Override
     public boolean isConstant() {
-        return children.keySet().stream().allMatch(Node::isConstant);
+        return isConstant;
     }
 
     @Override
     public int size() {
-        return 1
-                + children.entrySet().stream()
-                        .mapToInt(e -> e.getValue() * e.getKey().size())
-                        .sum();
+        return size;
     }
 
     @Override
     public String toExpression() {
-        return children.entrySet().stream()
-                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
-                .map(Node::toExpression)
-                .collect(Collectors.joining("*"));
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0) {
+                sb.append('*');
+            }
+            // a sum is always a single factor
+            final Node child = children.get(i);
+            sb.append(child instanceof PlusNode ? "(" + child.toExpression() + ")" : child.toExpression());
+        }
+        return sb.toString();
     }
 
     @Override
     public String toLatex() {
-        return children.entrySet().stream()
-                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
-                .map(Node::toLatex)
-                .collect(Collectors.joining("*"));
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0) {
+                sb.append('*');
+            }
+            final Node child = children.get(i);
+            sb.append(child instanceof PlusNode ? "(" + child.toLatex() + ")" : child.toLatex());
+        }
+        return sb.toString();
     }
 
     @Override
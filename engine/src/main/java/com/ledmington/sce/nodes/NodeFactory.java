@@ -0,0 +1,151 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.nodes;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-consing factory for nodes. Structurally equal nodes built through this factory are the same instance, so that
+ * repeated subtrees are shared and equality checks between them usually stop at the reference comparison. Interned
+ * nodes are only weakly referenced and are reclaimed once no expression uses them anymore.
+ */
+public final class NodeFactory {
+
+    private static final int MIN_CACHED_CONSTANT = -128;
+    private static final int MAX_CACHED_CONSTANT = 1024;
+    private static final ConstantNode[] SMALL_CONSTANTS =
+            new ConstantNode[MAX_CACHED_CONSTANT - MIN_CACHED_CONSTANT + 1];
+
+    // the intern table is split into independently locked stripes, so that threads building unrelated nodes rarely
+    // wait for each other
+    private static final int STRIPES = 64;
+
+    private static final List<Map<Node, WeakReference<Node>>> TABLES = new ArrayList<>(STRIPES);
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            TABLES.add(new WeakHashMap<>());
+        }
+    }
+
+    private NodeFactory() {}
+
+    private static Map<Node, WeakReference<Node>> stripe(final Node node) {
+        final int h = node.hashCode();
+        return TABLES.get((h ^ (h >>> 16)) & (STRIPES - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Node> T intern(final T node) {
+        final Map<Node, WeakReference<Node>> table = stripe(node);
+        synchronized (table) {
+            final WeakReference<Node> ref = table.get(node);
+            if (ref != null) {
+                final Node existing = ref.get();
+                if (existing != null) {
+                    // equal nodes always have the same class
+                    return (T) existing;
+                }
+            }
+            table.put(node, new WeakReference<>(node));
+            return node;
+        }
+    }
+
+    /**
+     * Returns the number of nodes currently interned.
+     *
+     * @return The number of interned nodes.
+     */
+    public static int size() {
+        int total = 0;
+        for (final Map<Node, WeakReference<Node>> table : TABLES) {
+            synchronized (table) {
+                total += table.size();
+            }
+        }
+        return total;
+    }
+
+    public static ConstantNode constant(final int value) {
+        return constant((long) value);
+    }
+
+    public static ConstantNode constant(final long value) {
+        if (value < MIN_CACHED_CONSTANT || value > MAX_CACHED_CONSTANT) {
+            return intern(new ConstantNode(value));
+        }
+        final int idx = (int) value - MIN_CACHED_CONSTANT;
+        ConstantNode cn = SMALL_CONSTANTS[idx];
+        if (cn == null) {
+            // racing threads would intern the same instance anyway
+            cn = intern(new ConstantNode(value));
+            SMALL_CONSTANTS[idx] = cn;
+        }
+        return cn;
+    }
+
+    public static ConstantNode constant(final BigInteger value) {
+        if (ConstantNode.fitsInLong(value)) {
+            return constant(value.longValue());
+        }
+        return intern(new ConstantNode(value));
+    }
+
+    public static VariableNode variable(final String name) {
+        return intern(new VariableNode(name));
+    }
+
+    public static BracketNode bracket(final Node inner) {
+        return intern(new BracketNode(inner));
+    }
+
+    public static PlusNode plus(final Node... nodes) {
+        return plus(Arrays.asList(nodes));
+    }
+
+    public static PlusNode plus(final List<Node> nodes) {
+        return intern(new PlusNode(nodes));
+    }
+
+    public static MultiplyNode multiply(final Node... nodes) {
+        return multiply(Arrays.asList(nodes));
+    }
+
+    public static MultiplyNode multiply(final List<Node> nodes) {
+        return intern(new MultiplyNode(nodes));
+    }
+
+    public static FractionNode fraction(final Node numerator, final Node denominator) {
+        return intern(new FractionNode(numerator, denominator));
+    }
+
+    public static PowerNode power(final Node base, final Node exponent) {
+        return intern(new PowerNode(base, exponent));
+    }
+
+    public static EquationNode equation(final Node lhs, final Node rhs) {
+        return intern(new EquationNode(lhs, rhs));
+    }
+}
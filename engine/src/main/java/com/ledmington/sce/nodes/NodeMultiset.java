@@ -0,0 +1,196 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.nodes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable multiset of nodes backing the commutative {@link MultiNode}s. Each distinct child is stored once,
+ * together with its multiplicity. Indexed access over the expanded children takes constant time up to
+ * {@link #MAX_EXPANDED_SIZE} children: it reads the distinct children directly when every multiplicity is 1 and
+ * otherwise an expanded array built on first use. Above that, it takes logarithmic time, binary-searching the running
+ * totals of the multiplicities, so that large multiplicities take no more space than a single child.
+ */
+final class NodeMultiset {
+
+    // the largest number of children that get(int) is allowed to expand into a flat array
+    private static final int MAX_EXPANDED_SIZE = 1 << 12;
+
+    private final Node[] distinct;
+    private final int[] multiplicities;
+    // the number of children before each distinct one, plus the total at the end
+    private final int[] offsets;
+    private final int hash;
+    // built lazily by get(int), volatile so that a racing reader never sees a partially filled array
+    private volatile Node[] expanded;
+    // the indices of the distinct children sorted by hash code, built lazily by equals(Object)
+    private volatile int[] byHash;
+
+    NodeMultiset(final Iterable<Node> nodes) {
+        final Map<Node, Integer> counts = new HashMap<>();
+        for (final Node n : nodes) {
+            Objects.requireNonNull(n);
+            counts.merge(n, 1, Integer::sum);
+        }
+
+        this.distinct = new Node[counts.size()];
+        this.multiplicities = new int[counts.size()];
+        this.offsets = new int[counts.size() + 1];
+        int k = 0;
+        for (final Map.Entry<Node, Integer> e : counts.entrySet()) {
+            distinct[k] = e.getKey();
+            multiplicities[k] = e.getValue();
+            offsets[k + 1] = offsets[k] + e.getValue();
+            k++;
+        }
+        this.hash = counts.hashCode();
+    }
+
+    int size() {
+        return offsets[distinct.length];
+    }
+
+    Node get(final int idx) {
+        if (idx < 0 || idx >= size()) {
+            throw new IndexOutOfBoundsException(idx);
+        }
+        if (size() == distinct.length) {
+            return distinct[idx];
+        }
+        if (size() > MAX_EXPANDED_SIZE) {
+            // the offsets are strictly increasing, so an exact match is the first copy of a distinct child
+            final int pos = Arrays.binarySearch(offsets, idx);
+            return distinct[pos >= 0 ? pos : -pos - 2];
+        }
+        Node[] children = expanded;
+        if (children == null) {
+            children = new Node[size()];
+            for (int i = 0; i < distinct.length; i++) {
+                Arrays.fill(children, offsets[i], offsets[i + 1], distinct[i]);
+            }
+            expanded = children;
+        }
+        return children[idx];
+    }
+
+    int distinctSize() {
+        return distinct.length;
+    }
+
+    Node getDistinct(final int idx) {
+        return distinct[idx];
+    }
+
+    int getMultiplicity(final int idx) {
+        return multiplicities[idx];
+    }
+
+    private int[] byHash() {
+        int[] order = byHash;
+        if (order == null) {
+            // sorting the hash codes together with the indices avoids boxing them
+            final long[] keys = new long[distinct.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = ((long) distinct[i].hashCode() << Integer.SIZE) | i;
+            }
+            Arrays.sort(keys);
+            order = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                order[i] = (int) keys[i];
+            }
+            byHash = order;
+        }
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder().append('{');
+        for (int i = 0; i < distinct.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(distinct[i]).append('=').append(multiplicities[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final NodeMultiset o = (NodeMultiset) other;
+        if (this.hash != o.hash || this.distinct.length != o.distinct.length) {
+            return false;
+        }
+        // interned multisets are usually laid out in the same order, with the same instances
+        int same = 0;
+        while (same < distinct.length
+                && distinct[same] == o.distinct[same]
+                && multiplicities[same] == o.multiplicities[same]) {
+            same++;
+        }
+        return same == distinct.length || sameByHash(o);
+    }
+
+    /** Compares the distinct children sorted by hash code, matching the ones with the same hash code in pairs. */
+    private boolean sameByHash(final NodeMultiset o) {
+        final int[] a = this.byHash();
+        final int[] b = o.byHash();
+        int start = 0;
+        while (start < a.length) {
+            final int h = distinct[a[start]].hashCode();
+            int end = start + 1;
+            while (end < a.length && distinct[a[end]].hashCode() == h) {
+                end++;
+            }
+            // the run of children with this hash code must be just as long in the other multiset
+            if (o.distinct[b[start]].hashCode() != h
+                    || o.distinct[b[end - 1]].hashCode() != h
+                    || (end < b.length && o.distinct[b[end]].hashCode() == h)) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                int j = start;
+                while (j < end && !o.distinct[b[j]].equals(distinct[a[i]])) {
+                    j++;
+                }
+                if (j == end || o.multiplicities[b[j]] != multiplicities[a[i]]) {
+                    return false;
+                }
+            }
+            start = end;
+        }
+        return true;
+    }
+}
@@ -17,105 +17,227 @@
  */
 package com.ledmington.sce.nodes;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import com.ledmington.sce.tokens.IntegerLiteral;
 import com.ledmington.sce.tokens.Name;
+import com.ledmington.sce.tokens.ParseError;
 import com.ledmington.sce.tokens.Symbols;
 import com.ledmington.sce.tokens.Token;
+import com.ledmington.sce.tokens.TokenStream;
 
+/**
+ * A single-pass precedence-climbing parser. From the loosest to the tightest binding, the operators are: '+' and '-',
+ * then '*' and '/', then unary '-', then '^'. All binary operators are left-associative. Sums and products are built
+ * directly as flat n-ary nodes.
+ */
 public final class Parser {
 
-    private Parser() {}
+    /** The tokens being parsed, either as objects or as a compact stream. */
+    private interface Input {
+        int size();
+
+        boolean isSymbol(int idx, Symbols s);
+
+        /** Returns the leaf node for the given token, or null if it is a symbol. */
+        Node leaf(int idx);
+
+        String describe(int idx);
+    }
+
+    private record ArrayInput(Token[] tokens) implements Input {
+        @Override
+        public int size() {
+            return tokens.length;
+        }
+
+        @Override
+        public boolean isSymbol(final int idx, final Symbols s) {
+            return tokens[idx] == s;
+        }
+
+        @Override
+        public Node leaf(final int idx) {
+            return switch (tokens[idx]) {
+                case IntegerLiteral il -> NodeFactory.constant(il.value());
+                case Name n -> NodeFactory.variable(n.name());
+                default -> null;
+            };
+        }
+
+        @Override
+        public String describe(final int idx) {
+            return String.format("'%s' at token %,d", tokens[idx], idx);
+        }
+    }
+
+    private record StreamInput(TokenStream tokens) implements Input {
+        @Override
+        public int size() {
+            return tokens.size();
+        }
+
+        @Override
+        public boolean isSymbol(final int idx, final Symbols s) {
+            return tokens.isSymbol(idx, s);
+        }
+
+        @Override
+        public Node leaf(final int idx) {
+            return switch (tokens.kind(idx)) {
+                case TokenStream.INTEGER_LITERAL -> tokens.fitsInLong(idx)
+                        ? NodeFactory.constant(tokens.longValue(idx))
+                        : NodeFactory.constant(tokens.integerValue(idx));
+                case TokenStream.NAME -> NodeFactory.variable(tokens.name(idx));
+                default -> null;
+            };
+        }
+
+        @Override
+        public String describe(final int idx) {
+            return String.format(
+                    "'%s' at offset %,d",
+                    tokens.source().subSequence(tokens.start(idx), tokens.end(idx)), tokens.start(idx));
+        }
+    }
+
+    private final Input tokens;
+    private int pos;
+
+    private Parser(final Input tokens) {
+        this.tokens = tokens;
+        this.pos = 0;
+    }
 
     public static Node parse(final Token... input) {
-        final List<Object> partialAST = new ArrayList<>(Arrays.asList(input));
-
-        // Convert all IntegerLiterals into ConstantNodes (maybe merge those classes?)
-        for (int i = 0; i < partialAST.size(); i++) {
-            if (partialAST.get(i) instanceof IntegerLiteral il) {
-                partialAST.set(i, new ConstantNode(il.value()));
-            } else if (partialAST.get(i) instanceof Name n) {
-                partialAST.set(i, new VariableNode(n.name()));
+        return new Parser(new ArrayInput(input)).parseAll();
+    }
+
+    /**
+     * Parses a compact stream of tokens. Integer literals and names are materialized only once they become nodes.
+     *
+     * @param input The tokens.
+     * @return The root of the parsed tree.
+     */
+    public static Node parse(final TokenStream input) {
+        return new Parser(new StreamInput(input)).parseAll();
+    }
+
+    private Node parseAll() {
+        final Node root = parseSum();
+        if (pos < tokens.size()) {
+            throw error("Unexpected token");
+        }
+        return root;
+    }
+
+    private ParseError error(final String message) {
+        if (pos < tokens.size()) {
+            return new ParseError(String.format("Invalid expression: %s %s", message, tokens.describe(pos)));
+        }
+        return new ParseError(String.format("Invalid expression: %s at the end of the input", message));
+    }
+
+    private boolean accept(final Symbols s) {
+        if (pos < tokens.size() && tokens.isSymbol(pos, s)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private Node parseSum() {
+        final List<Node> terms = new ArrayList<>();
+        terms.add(parseProduct());
+        while (pos < tokens.size()) {
+            if (accept(Symbols.PLUS)) {
+                terms.add(parseProduct());
+            } else if (accept(Symbols.MINUS)) {
+                terms.add(negate(parseProduct()));
+            } else {
+                break;
+            }
+        }
+        return terms.size() == 1 ? terms.getFirst() : NodeFactory.plus(terms);
+    }
+
+    private static Node negate(final Node n) {
+        if (n instanceof MultiplyNode mn) {
+            final List<Node> factors = new ArrayList<>(mn.getNumChildren() + 1);
+            factors.add(ConstantNode.of(-1));
+            for (int i = 0; i < mn.getNumChildren(); i++) {
+                factors.add(mn.getChild(i));
             }
+            return NodeFactory.multiply(factors);
         }
+        return NodeFactory.multiply(ConstantNode.of(-1), n);
+    }
 
-        while (partialAST.size() > 1) {
-            final int startSize = partialAST.size();
-
-            // Convert all multiplications and divisions first
-            for (int i = 0; i < partialAST.size(); i++) {
-                if (i < partialAST.size() - 2
-                        && partialAST.get(i) instanceof Node ln
-                        && partialAST.get(i + 1) == Symbols.ASTERISK
-                        && partialAST.get(i + 2) instanceof Node rn) {
-                    partialAST.remove(i);
-                    partialAST.remove(i);
-                    partialAST.set(i, new MultiplyNode(ln, rn));
-                } else if (i < partialAST.size() - 2
-                        && partialAST.get(i) instanceof Node ln
-                        && partialAST.get(i + 1) == Symbols.SLASH
-                        && partialAST.get(i + 2) instanceof Node rn) {
-                    partialAST.remove(i);
-                    partialAST.remove(i);
-                    partialAST.set(i, new FractionNode(ln, rn));
-                } else if (i < partialAST.size() - 2
-                        && partialAST.get(i) instanceof Node ln
-                        && partialAST.get(i + 1) == Symbols.CARET
-                        && partialAST.get(i + 2) instanceof Node rn) {
-                    partialAST.remove(i);
-                    partialAST.remove(i);
-                    partialAST.set(i, new PowerNode(ln, rn));
-                }
+    private Node parseProduct() {
+        List<Node> factors = new ArrayList<>();
+        factors.add(parseUnary());
+        while (pos < tokens.size()) {
+            if (accept(Symbols.ASTERISK)) {
+                factors.add(parseUnary());
+            } else if (accept(Symbols.SLASH)) {
+                // a/b*c = (a/b)*c
+                final Node numerator = factors.size() == 1 ? factors.getFirst() : NodeFactory.multiply(factors);
+                factors = new ArrayList<>();
+                factors.add(NodeFactory.fraction(numerator, parseUnary()));
+            } else {
+                break;
             }
+        }
+        return factors.size() == 1 ? factors.getFirst() : NodeFactory.multiply(factors);
+    }
 
-            // then convert all the other stuff
-            for (int i = 0; i < partialAST.size(); i++) {
-                if (i < partialAST.size() - 2
-                        && partialAST.get(i) instanceof Node ln
-                        && partialAST.get(i + 1) == Symbols.PLUS
-                        && partialAST.get(i + 2) instanceof Node rn) {
-                    partialAST.remove(i);
-                    partialAST.remove(i);
-                    partialAST.set(i, new PlusNode(ln, rn));
-                }
-                if (i < partialAST.size() - 2
-                        && partialAST.get(i) instanceof Node ln
-                        && partialAST.get(i + 1) == Symbols.MINUS
-                        && partialAST.get(i + 2) instanceof Node rn) {
-                    partialAST.remove(i);
-                    partialAST.remove(i);
-                    partialAST.set(i, new PlusNode(ln, new MultiplyNode(ConstantNode.of(-1), rn)));
-                }
-                if (i < partialAST.size() - 2
-                        && partialAST.get(i) == Symbols.LEFT_BRACKET
-                        && partialAST.get(i + 1) instanceof Node n
-                        && partialAST.get(i + 2) == Symbols.RIGHT_BRACKET) {
-                    partialAST.remove(i);
-                    partialAST.remove(i);
-                    partialAST.set(i, new BracketNode(n));
-                }
-                if (i < partialAST.size() - 1
-                        && partialAST.get(i) == Symbols.MINUS
-                        && partialAST.get(i + 1) instanceof ConstantNode cn) {
-                    partialAST.remove(i);
-                    partialAST.set(i, new ConstantNode(cn.value().multiply(new BigInteger("-1"))));
-                }
+    private Node parseUnary() {
+        if (accept(Symbols.MINUS)) {
+            final Node operand = parseUnary();
+            if (operand instanceof ConstantNode cn) {
+                return cn.negate();
             }
+            return negate(operand);
+        }
+        return parsePower();
+    }
+
+    private Node parsePower() {
+        Node base = parsePrimary();
+        while (accept(Symbols.CARET)) {
+            base = NodeFactory.power(base, parseExponent());
+        }
+        return base;
+    }
 
-            if (partialAST.size() == startSize) {
-                throw new Error(String.format(
-                        "Invalid expression: '%s'",
-                        partialAST.stream()
-                                .map(x -> (x instanceof Node n) ? n.toExpression() : x.toString())
-                                .collect(Collectors.joining(" "))));
+    private Node parseExponent() {
+        if (accept(Symbols.MINUS)) {
+            final Node operand = parseExponent();
+            if (operand instanceof ConstantNode cn) {
+                return cn.negate();
             }
+            return negate(operand);
         }
+        return parsePrimary();
+    }
 
-        return (Node) partialAST.getFirst();
+    private Node parsePrimary() {
+        if (pos >= tokens.size()) {
+            throw error("Expected an operand");
+        }
+        final Node leaf = tokens.leaf(pos);
+        if (leaf != null) {
+            pos++;
+            return leaf;
+        }
+        if (accept(Symbols.LEFT_BRACKET)) {
+            final Node inner = parseSum();
+            if (!accept(Symbols.RIGHT_BRACKET)) {
+                throw error("Expected ')'");
+            }
+            return NodeFactory.bracket(inner);
+        }
+        throw error("Expected an operand");
     }
 }
@@ -17,39 +17,32 @@
  */
 package com.ledmington.sce.nodes;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 public final class PlusNode implements MultiNode {
 
-    private final Map<Node, Integer> children;
+    private final NodeMultiset children;
+    private final int size;
+    private final boolean isConstant;
 
     public PlusNode(final Node... nodes) {
-        this.children = new HashMap<>();
-        for (final Node n : nodes) {
-            Objects.requireNonNull(n);
-            if (this.children.containsKey(n)) {
-                this.children.put(n, this.children.get(n) + 1);
-            } else {
-                this.children.put(n, 1);
-            }
-        }
+        this(Arrays.asList(nodes));
     }
 
     public PlusNode(final List<Node> nodes) {
-        this.children = new HashMap<>();
-        for (final Node n : nodes) {
-            Objects.requireNonNull(n);
-            if (this.children.containsKey(n)) {
-                this.children.put(n, this.children.get(n) + 1);
-            } else {
-                this.children.put(n, 1);
-            }
+        this.children = new NodeMultiset(nodes);
+
+        int s = 1;
+        boolean allConstants = true;
+        for (int i = 0; i < children.distinctSize(); i++) {
+            final Node child = children.getDistinct(i);
+            s = Sizes.add(s, Sizes.multiply(children.getMultiplicity(i), child.size()));
+            allConstants = allConstants && child.isConstant();
         }
+        this.size = s;
+        this.isConstant = allConstants;
     }
 
     @Override
@@ -59,45 +52,72 @@ public final class PlusNode implements MultiNode {
 
     @Override
     public int getNumChildren() {
-        return children.values().stream().mapToInt(x -> x).sum();
+        return children.size();
     }
 
     @Override
     public Node getChild(final int idx) {
-        return children.entrySet().stream()
-                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
-                .skip(idx)
-                .findFirst()
-                .orElseThrow();
+        return children.get(idx);
+    }
+
+    @Override
+    public int getNumDistinctChildren() {
+        return children.distinctSize();
+    }
+
+    @Override
+    public Node getDistinctChild(final int idx) {
+        return children.getDistinct(idx);
+    }
+
+    @Override
+    public int getMultiplicity(final int idx) {
+        return children.getMultiplicity(idx);
     }
 
     @Override
     public boolean isConstant() {
-        return children.keySet().stream().allMatch(Node::isConstant);
+        return isConstant;
     }
 
     @Override
     public int size() {
-        return 1
-                + children.entrySet().stream()
-                        .mapToInt(e -> e.getValue() * e.getKey().size())
-                        .sum();
+        return size;
+    }
+
+    /** Checks whether the given term is a number, which is written before the other terms. */
+    private static boolean isNumber(final Node n) {
+        return n instanceof ConstantNode
+                || (n instanceof FractionNode fn
+                        && fn.numerator() instanceof ConstantNode
+                        && fn.denominator() instanceof ConstantNode);
+    }
+
+    private String join(final Function<Node, String> format) {
+        final StringBuilder sb = new StringBuilder();
+        // numbers first, so that complex constants read as a+b*i
+        for (final boolean numbers : new boolean[] {true, false}) {
+            for (int i = 0; i < children.size(); i++) {
+                final Node child = children.get(i);
+                if (isNumber(child) == numbers) {
+                    if (!sb.isEmpty()) {
+                        sb.append('+');
+                    }
+                    sb.append(format.apply(child));
+                }
+            }
+        }
+        return sb.toString();
     }
 
     @Override
     public String toExpression() {
-        return children.entrySet().stream()
-                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
-                .map(Node::toExpression)
-                .collect(Collectors.joining("+"));
+        return join(Node::toExpression);
     }
 
     @Override
     public String toLatex() {
-        return children.entrySet().stream()
-                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
-                .map(Node::toLatex)
-                .collect(Collectors.joining("+"));
+        return join(Node::toLatex);
     }
 
     @Override
@@ -17,30 +17,58 @@
  */
 package com.ledmington.sce.nodes;
 
-public record PowerNode(Node base, Node exponent) implements Node {
+import java.util.Objects;
+
+public final class PowerNode implements Node {
+
+    private final Node base;
+    private final Node exponent;
+    private final int hash;
+    private final int size;
+    private final boolean isConstant;
+
+    public PowerNode(final Node base, final Node exponent) {
+        this.base = Objects.requireNonNull(base);
+        this.exponent = Objects.requireNonNull(exponent);
+        this.hash = 31 * (17 + 31 * base.hashCode()) + exponent.hashCode();
+        this.size = Sizes.add(1, Sizes.add(base.size(), exponent.size()));
+        this.isConstant = base.isConstant() && exponent.isConstant();
+    }
+
+    public Node base() {
+        return base;
+    }
+
+    public Node exponent() {
+        return exponent;
+    }
+
     public static PowerNode of(final int constant) {
-        return new PowerNode(ConstantNode.of(constant), ConstantNode.of(1));
+        return NodeFactory.power(ConstantNode.of(constant), ConstantNode.of(1));
     }
 
     public static PowerNode of(final int numerator, final int denominator) {
-        return new PowerNode(ConstantNode.of(numerator), ConstantNode.of(denominator));
+        return NodeFactory.power(ConstantNode.of(numerator), ConstantNode.of(denominator));
     }
 
     @Override
     public boolean isConstant() {
-        return base.isConstant() && exponent.isConstant();
+        return isConstant;
     }
 
     @Override
     public int size() {
-        return 1 + base.size() + exponent.size();
+        return size;
+    }
+
+    /** Checks whether the base can be written without brackets: -4^(1/2) would be read as -(4^(1/2)). */
+    private boolean isBareBase() {
+        return (base instanceof ConstantNode cn && cn.signum() >= 0) || base instanceof VariableNode;
     }
 
     @Override
     public String toExpression() {
-        return ((base instanceof ConstantNode || base instanceof VariableNode)
-                        ? base.toExpression()
-                        : ("(" + base.toExpression() + ")"))
+        return (isBareBase() ? base.toExpression() : ("(" + base.toExpression() + ")"))
                 + "^"
                 + ((exponent instanceof ConstantNode || exponent instanceof VariableNode)
                         ? exponent.toExpression()
@@ -49,6 +77,33 @@ public record PowerNode(Node base, Node exponent) implements Node {
 
     @Override
     public String toLatex() {
-        return base.toLatex() + "^" + exponent.toLatex();
+        return (base instanceof ConstantNode cn && cn.signum() < 0 ? "(" + base.toLatex() + ")" : base.toLatex())
+                + "^"
+                + exponent.toLatex();
+    }
+
+    @Override
+    public String toString() {
+        return "PowerNode[base=" + base + ", exponent=" + exponent + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final PowerNode o = (PowerNode) other;
+        return this.hash == o.hash && this.base.equals(o.base) && this.exponent.equals(o.exponent);
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.nodes;
+
+/**
+ * Saturating arithmetic for the cached node sizes. Shared subtrees make the size of a tree grow much faster than the
+ * number of distinct nodes, so sizes which do not fit in an {@code int} are clamped to {@link Integer#MAX_VALUE}
+ * instead of wrapping around.
+ */
+final class Sizes {
+
+    private Sizes() {}
+
+    static int add(final int a, final int b) {
+        final long s = (long) a + b;
+        return s > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) s;
+    }
+
+    static int multiply(final int a, final int b) {
+        final long p = (long) a * b;
+        return p > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) p;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.numbers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+import com.ledmington.sce.EngineConstants;
+
+/**
+ * An approximated complex number, with a {@link BigDecimal} for each part. Real numbers have an imaginary part of zero
+ * and are computed with the real operations only.
+ *
+ * @param real The real part.
+ * @param imaginary The imaginary part.
+ */
+public record ComplexDecimal(BigDecimal real, BigDecimal imaginary) {
+
+    public static final ComplexDecimal ONE = new ComplexDecimal(BigDecimal.ONE, BigDecimal.ZERO);
+    public static final ComplexDecimal I = new ComplexDecimal(BigDecimal.ZERO, BigDecimal.ONE);
+
+    public ComplexDecimal {
+        Objects.requireNonNull(real);
+        Objects.requireNonNull(imaginary);
+    }
+
+    public static ComplexDecimal of(final BigDecimal real) {
+        return new ComplexDecimal(real, BigDecimal.ZERO);
+    }
+
+    public boolean isReal() {
+        return imaginary.signum() == 0;
+    }
+
+    public ComplexDecimal negate() {
+        return new ComplexDecimal(real.negate(), imaginary.negate());
+    }
+
+    public ComplexDecimal add(final ComplexDecimal other, final MathContext mc) {
+        return new ComplexDecimal(real.add(other.real, mc), imaginary.add(other.imaginary, mc));
+    }
+
+    public ComplexDecimal multiply(final ComplexDecimal other, final MathContext mc) {
+        if (isReal() && other.isReal()) {
+            return of(real.multiply(other.real, mc));
+        }
+        return new ComplexDecimal(
+                real.multiply(other.real, mc).subtract(imaginary.multiply(other.imaginary, mc), mc),
+                real.multiply(other.imaginary, mc).add(imaginary.multiply(other.real, mc), mc));
+    }
+
+    /**
+     * Divides this number by the given one.
+     *
+     * @param other The divisor.
+     * @param mc The precision of the result.
+     * @return The quotient.
+     * @throws ArithmeticException If the divisor is zero.
+     */
+    public ComplexDecimal divide(final ComplexDecimal other, final MathContext mc) {
+        if (other.isReal()) {
+            return new ComplexDecimal(real.divide(other.real, mc), imaginary.divide(other.real, mc));
+        }
+        final BigDecimal norm =
+                other.real.multiply(other.real, mc).add(other.imaginary.multiply(other.imaginary, mc), mc);
+        return new ComplexDecimal(
+                real.multiply(other.real, mc)
+                        .add(imaginary.multiply(other.imaginary, mc), mc)
+                        .divide(norm, mc),
+                imaginary
+                        .multiply(other.real, mc)
+                        .subtract(real.multiply(other.imaginary, mc), mc)
+                        .divide(norm, mc));
+    }
+
+    /**
+     * Raises this number to the given integer power. Real powers are delegated to {@link Powers}, while complex ones
+     * are computed by repeated squaring.
+     *
+     * @param exponent The exponent, which may be negative.
+     * @param mc The precision of the result.
+     * @return The power.
+     * @throws ArithmeticException If this number is zero and the exponent is negative.
+     */
+    public ComplexDecimal pow(final BigInteger exponent, final MathContext mc) {
+        if (isReal()) {
+            return of(Powers.approximate(real, Rational.of(exponent), mc));
+        }
+        final BigInteger abs = exponent.abs();
+        ComplexDecimal result = ONE;
+        for (int i = abs.bitLength() - 1; i >= 0; i--) {
+            result = result.multiply(result, mc);
+            if (abs.testBit(i)) {
+                result = result.multiply(this, mc);
+            }
+        }
+        return exponent.signum() < 0 ? ONE.divide(result, mc) : result;
+    }
+
+    /**
+     * Approximates the principal root of the given degree, whose argument is the one of this number, in (-pi, pi],
+     * divided by the degree, with Newton's iteration. Real non-negative numbers have a real root and square roots of
+     * negative numbers are imaginary, so both are computed with the real operations only.
+     *
+     * @param degree The degree of the root, at least 1.
+     * @param guess The starting point, like a less precise approximation of the root, or null to start from a
+     *     double-precision estimate.
+     * @param mc The precision of the result.
+     * @return The principal root.
+     */
+    public ComplexDecimal root(final int degree, final ComplexDecimal guess, final MathContext mc) {
+        if (degree < 1) {
+            throw new IllegalArgumentException(String.format("Invalid root degree: %,d", degree));
+        }
+        if (degree == 1 || (real.signum() == 0 && imaginary.signum() == 0)) {
+            return this;
+        }
+        if (isReal() && real.signum() > 0) {
+            return of(Powers.root(real, degree, guess == null ? null : guess.real, mc));
+        }
+        if (isReal() && degree == 2) {
+            return new ComplexDecimal(BigDecimal.ZERO, real.negate().sqrt(mc));
+        }
+
+        // the powers lose about as many digits as the degree has
+        final MathContext work =
+                new MathContext(mc.getPrecision() + Integer.toString(degree).length() + 5, RoundingMode.HALF_EVEN);
+        final ComplexDecimal k = of(BigDecimal.valueOf(degree));
+        final ComplexDecimal kMinusOne = of(BigDecimal.valueOf(degree - 1L));
+        final BigInteger exponent = BigInteger.valueOf(degree - 1L);
+        ComplexDecimal w = guess != null ? guess : estimateRoot(degree);
+        while (true) {
+            final ComplexDecimal next = kMinusOne
+                    .multiply(w, work)
+                    .add(divide(w.pow(exponent, work), work), work)
+                    .divide(k, work);
+            // rounding may make the last digits oscillate, so the iteration stops once the others are stable
+            final BigDecimal tolerance = next.magnitude().movePointLeft(mc.getPrecision() - 2);
+            if (next.add(w.negate(), work).magnitude().compareTo(tolerance) <= 0) {
+                return next.round(mc);
+            }
+            w = next;
+        }
+    }
+
+    private ComplexDecimal estimateRoot(final int degree) {
+        // the root of a power of ten times the root of a number close to one, so that any magnitude is handled
+        final BigDecimal m = magnitude();
+        final int shift = m.precision() - m.scale() - 1;
+        final double re = real.movePointLeft(shift).doubleValue();
+        final double im = Math.copySign(imaginary.movePointLeft(shift).doubleValue(), imaginary.signum());
+        final double modulus = Math.pow(Math.hypot(re, im), 1.0 / degree);
+        final double argument = Math.atan2(im, re) / degree;
+        final BigDecimal scale = Powers.root(BigDecimal.ONE.movePointRight(shift), degree, null, MathContext.DECIMAL64);
+        return new ComplexDecimal(
+                scale.multiply(new BigDecimal(modulus * Math.cos(argument))),
+                scale.multiply(new BigDecimal(modulus * Math.sin(argument))));
+    }
+
+    private BigDecimal magnitude() {
+        return real.abs().max(imaginary.abs());
+    }
+
+    public ComplexDecimal round(final MathContext mc) {
+        return new ComplexDecimal(real.round(mc), imaginary.round(mc));
+    }
+
+    /**
+     * Checks whether the two numbers have the same value, regardless of the scale of their parts.
+     *
+     * @param other The other number.
+     * @return True if both parts are numerically equal.
+     */
+    public boolean hasSameValue(final ComplexDecimal other) {
+        return real.compareTo(other.real) == 0 && imaginary.compareTo(other.imaginary) == 0;
+    }
+
+    /** Formats this number as {@code a+bi}, using the name of the imaginary unit of the engine. */
+    @Override
+    public String toString() {
+        if (isReal()) {
+            return real.toString();
+        }
+        final String unit = EngineConstants.getImaginaryUnit().toExpression();
+        final String im = imaginary.abs().compareTo(BigDecimal.ONE) == 0
+                ? ""
+                : imaginary.abs().toString();
+        if (real.signum() == 0) {
+            return (imaginary.signum() < 0 ? "-" : "") + im + unit;
+        }
+        return real + (imaginary.signum() < 0 ? "-" : "+") + im + unit;
+    }
+}
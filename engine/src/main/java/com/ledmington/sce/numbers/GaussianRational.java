@@ -0,0 +1,291 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.numbers;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.ledmington.sce.EngineConstants;
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.PlusNode;
+
+/**
+ * An exact complex number with rational real and imaginary parts. In a tree, it is written with the imaginary unit of
+ * the engine: as {@code a}, {@code b*i} or {@code a+b*i}, with the last one in brackets when it is a factor.
+ */
+public final class GaussianRational {
+
+    public static final GaussianRational ZERO = new GaussianRational(Rational.ZERO, Rational.ZERO);
+    public static final GaussianRational ONE = new GaussianRational(Rational.ONE, Rational.ZERO);
+    public static final GaussianRational I = new GaussianRational(Rational.ZERO, Rational.ONE);
+
+    private final Rational real;
+    private final Rational imaginary;
+
+    private GaussianRational(final Rational real, final Rational imaginary) {
+        this.real = Objects.requireNonNull(real);
+        this.imaginary = Objects.requireNonNull(imaginary);
+    }
+
+    public static GaussianRational of(final Rational real) {
+        return new GaussianRational(real, Rational.ZERO);
+    }
+
+    public static GaussianRational of(final Rational real, final Rational imaginary) {
+        return new GaussianRational(real, imaginary);
+    }
+
+    /**
+     * Checks whether the given node is a complex rational constant: a rational, the imaginary unit, a product of them,
+     * or a sum of such products, possibly in brackets.
+     *
+     * @param node The node to check.
+     * @return True if the node is a complex rational constant.
+     */
+    public static boolean isGaussian(final Node node) {
+        return parse(node) != null;
+    }
+
+    /**
+     * Converts a complex rational constant into its value.
+     *
+     * @param node The node to convert.
+     * @return The value of the node.
+     * @throws IllegalArgumentException If the node is not a complex rational constant.
+     * @see #isGaussian(Node)
+     */
+    public static GaussianRational of(final Node node) {
+        final GaussianRational value = parse(node);
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    String.format("'%s' is not a complex rational constant", node.toExpression()));
+        }
+        return value;
+    }
+
+    private static GaussianRational parse(final Node node) {
+        Node n = node;
+        while (n instanceof BracketNode bn) {
+            n = bn.inner();
+        }
+        if (n instanceof PlusNode pn) {
+            GaussianRational sum = ZERO;
+            for (int i = 0; i < pn.getNumChildren(); i++) {
+                final GaussianRational term = parseTerm(pn.getChild(i));
+                if (term == null) {
+                    return null;
+                }
+                sum = sum.add(term);
+            }
+            return sum;
+        }
+        return parseTerm(n);
+    }
+
+    private static GaussianRational parseTerm(final Node n) {
+        if (Rational.isRational(n)) {
+            return of(Rational.of(n));
+        }
+        if (n.equals(EngineConstants.getImaginaryUnit())) {
+            return I;
+        }
+        if (n instanceof MultiplyNode mn) {
+            GaussianRational product = ONE;
+            for (int i = 0; i < mn.getNumChildren(); i++) {
+                final Node factor = mn.getChild(i);
+                if (Rational.isRational(factor)) {
+                    product = product.multiply(of(Rational.of(factor)));
+                } else if (factor.equals(EngineConstants.getImaginaryUnit())) {
+                    product = product.multiply(I);
+                } else {
+                    return null;
+                }
+            }
+            return product;
+        }
+        return null;
+    }
+
+    public Rational real() {
+        return real;
+    }
+
+    public Rational imaginary() {
+        return imaginary;
+    }
+
+    public boolean isReal() {
+        return imaginary.isZero();
+    }
+
+    public boolean isZero() {
+        return real.isZero() && imaginary.isZero();
+    }
+
+    public GaussianRational negate() {
+        return new GaussianRational(real.negate(), imaginary.negate());
+    }
+
+    public GaussianRational conjugate() {
+        return new GaussianRational(real, imaginary.negate());
+    }
+
+    /**
+     * Returns the squared absolute value of this number.
+     *
+     * @return The sum of the squares of the two parts.
+     */
+    public Rational norm() {
+        return real.multiply(real).add(imaginary.multiply(imaginary));
+    }
+
+    public GaussianRational add(final GaussianRational other) {
+        return new GaussianRational(real.add(other.real), imaginary.add(other.imaginary));
+    }
+
+    public GaussianRational subtract(final GaussianRational other) {
+        return add(other.negate());
+    }
+
+    public GaussianRational multiply(final GaussianRational other) {
+        if (this.isReal() && other.isReal()) {
+            return of(real.multiply(other.real));
+        }
+        return new GaussianRational(
+                real.multiply(other.real).subtract(imaginary.multiply(other.imaginary)),
+                real.multiply(other.imaginary).add(imaginary.multiply(other.real)));
+    }
+
+    /**
+     * Returns the reciprocal of this number, as its conjugate divided by its norm.
+     *
+     * @return The reciprocal.
+     * @throws ArithmeticException If this number is zero.
+     */
+    public GaussianRational reciprocal() {
+        if (isZero()) {
+            throw new ArithmeticException("Reciprocal of zero");
+        }
+        final Rational n = norm();
+        return new GaussianRational(real.divide(n), imaginary.negate().divide(n));
+    }
+
+    public GaussianRational divide(final GaussianRational other) {
+        return multiply(other.reciprocal());
+    }
+
+    /**
+     * Raises this number to the given power, by repeated squaring.
+     *
+     * @param exponent The exponent, which may be negative.
+     * @return This number raised to the given power.
+     * @throws ArithmeticException If this number is zero and the exponent is negative.
+     */
+    public GaussianRational pow(final int exponent) {
+        return Powers.pow(this, exponent, ONE, GaussianRational::reciprocal, GaussianRational::multiply);
+    }
+
+    /**
+     * Returns the number of bits of the largest numerator or denominator of the two parts.
+     *
+     * @return The number of bits.
+     */
+    public long bitLength() {
+        return Math.max(
+                Math.max(real.numerator().bitLength(), real.denominator().bitLength()),
+                Math.max(
+                        imaginary.numerator().bitLength(),
+                        imaginary.denominator().bitLength()));
+    }
+
+    private Node imaginaryNode() {
+        return imaginary.equals(Rational.ONE)
+                ? EngineConstants.getImaginaryUnit()
+                : NodeFactory.multiply(imaginary.toNode(), EngineConstants.getImaginaryUnit());
+    }
+
+    /**
+     * Converts this number into a node, with a sum of both parts when neither is zero.
+     *
+     * @return The node representing this number.
+     */
+    public Node toNode() {
+        if (isReal()) {
+            return real.toNode();
+        }
+        if (real.isZero()) {
+            return imaginaryNode();
+        }
+        return NodeFactory.plus(real.toNode(), imaginaryNode());
+    }
+
+    /**
+     * Returns the terms representing this number inside a sum: the real part and the imaginary part, when they are not
+     * zero.
+     *
+     * @return The terms, at least one.
+     */
+    public List<Node> toTerms() {
+        if (isReal()) {
+            return List.of(real.toNode());
+        }
+        return real.isZero() ? List.of(imaginaryNode()) : List.of(real.toNode(), imaginaryNode());
+    }
+
+    /**
+     * Returns the factors representing this number inside a product: the real coefficient and the imaginary unit for
+     * imaginary numbers, the sum of both parts in brackets for the other complex numbers, and the number itself
+     * otherwise.
+     *
+     * @return The factors, at least one.
+     */
+    public List<Node> toFactors() {
+        if (real.isZero() && !imaginary.isZero() && !imaginary.equals(Rational.ONE)) {
+            return List.of(imaginary.toNode(), EngineConstants.getImaginaryUnit());
+        }
+        return List.of(isReal() || real.isZero() ? toNode() : NodeFactory.bracket(toNode()));
+    }
+
+    @Override
+    public String toString() {
+        return real + (imaginary.signum() < 0 ? "" : "+") + imaginary + "i";
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * real.hashCode() + imaginary.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final GaussianRational o = (GaussianRational) other;
+        return this.real.equals(o.real) && this.imaginary.equals(o.imaginary);
+    }
+}
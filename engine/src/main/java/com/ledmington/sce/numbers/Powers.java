@@ -0,0 +1,320 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.numbers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/** Exact and approximate powers of rational numbers, guarded against results too large to be computed. */
+public final class Powers {
+
+    // the largest exponent accepted by BigDecimal.pow
+    private static final int MAX_DECIMAL_EXPONENT = 999_999_999;
+
+    private static final double LN_10 = Math.log(10.0);
+
+    private Powers() {}
+
+    /**
+     * Returns an upper bound to the number of bits of the numerator and the denominator of the given power, which is
+     * the bit length of the base times the absolute value of the exponent.
+     *
+     * @param base The base.
+     * @param exponent The integer exponent.
+     * @return The estimated number of bits, saturated at {@link Long#MAX_VALUE}.
+     */
+    public static long estimateBits(final Rational base, final BigInteger exponent) {
+        final long bits =
+                Math.max(base.numerator().bitLength(), base.denominator().bitLength());
+        if (bits <= 1L || exponent.signum() == 0) {
+            // 0, 1 and -1 stay the same
+            return bits;
+        }
+        if (exponent.bitLength() >= Long.SIZE - 1) {
+            return Long.MAX_VALUE;
+        }
+        final long e = exponent.abs().longValue();
+        return e > Long.MAX_VALUE / bits ? Long.MAX_VALUE : bits * e;
+    }
+
+    /**
+     * Computes the exact value of the given power, unless it is too large or not rational. Integer exponents of any
+     * sign are supported, while a rational exponent {@code p/q} is supported only if the base is the q-th power of a
+     * rational.
+     *
+     * @param base The base.
+     * @param exponent The exponent.
+     * @param maxBits The maximum estimated number of bits of the result.
+     * @return The value of the power, or null if it must stay symbolic.
+     * @see #estimateBits(Rational, BigInteger)
+     */
+    public static Rational fold(final Rational base, final Rational exponent, final long maxBits) {
+        if (exponent.isZero()) {
+            return Rational.ONE;
+        }
+        if (base.isZero()) {
+            // a negative exponent would divide by zero
+            return exponent.signum() > 0 ? Rational.ZERO : null;
+        }
+        if (!exponent.isInteger()) {
+            final BigInteger q = exponent.denominator();
+            if (q.bitLength() >= Integer.SIZE - 1) {
+                return null;
+            }
+            final Rational root = exactRoot(base, q.intValue());
+            return root == null ? null : fold(root, Rational.of(exponent.numerator()), maxBits);
+        }
+
+        final BigInteger e = exponent.numerator();
+        if (base.equals(Rational.ONE)) {
+            return Rational.ONE;
+        }
+        if (base.equals(Rational.ONE.negate())) {
+            return e.testBit(0) ? base : Rational.ONE;
+        }
+        if (estimateBits(base, e) > maxBits || e.bitLength() >= Integer.SIZE) {
+            return null;
+        }
+        return base.pow(e.intValue());
+    }
+
+    /**
+     * Computes the exact value of the given power of a complex rational, unless it is too large. The powers of the
+     * imaginary unit are reduced modulo 4, so they are computed for any exponent.
+     *
+     * @param base The base.
+     * @param exponent The integer exponent.
+     * @param maxBits The maximum estimated number of bits of the parts of the result.
+     * @return The value of the power, or null if it must stay symbolic.
+     */
+    public static GaussianRational fold(final GaussianRational base, final BigInteger exponent, final long maxBits) {
+        if (exponent.signum() == 0) {
+            return GaussianRational.ONE;
+        }
+        if (base.isZero()) {
+            return exponent.signum() > 0 ? GaussianRational.ZERO : null;
+        }
+        if (base.real().isZero()
+                && base.imaginary().numerator().abs().equals(BigInteger.ONE)
+                && base.imaginary().isInteger()) {
+            // i and -i
+            return base.pow(exponent.mod(BigInteger.valueOf(4L)).intValue());
+        }
+        // each multiplication adds at most one bit to the sums of products
+        final long bits = base.bitLength() + 1L;
+        if (exponent.bitLength() >= Integer.SIZE || bits * exponent.abs().longValue() > maxBits) {
+            return null;
+        }
+        return base.pow(exponent.intValue());
+    }
+
+    /**
+     * Returns the exact root of the given degree of a rational, if there is one.
+     *
+     * @param value The radicand.
+     * @param degree The degree of the root, at least 1.
+     * @return The real root, or null if it is not rational.
+     */
+    public static Rational exactRoot(final Rational value, final int degree) {
+        if (degree < 1) {
+            throw new IllegalArgumentException(String.format("Invalid root degree: %,d", degree));
+        }
+        if (value.signum() < 0) {
+            if (degree % 2 == 0) {
+                return null;
+            }
+            final Rational root = exactRoot(value.negate(), degree);
+            return root == null ? null : root.negate();
+        }
+        final BigInteger n = exactRoot(value.numerator(), degree);
+        if (n == null) {
+            return null;
+        }
+        final BigInteger d = exactRoot(value.denominator(), degree);
+        return d == null ? null : Rational.of(n, d);
+    }
+
+    /**
+     * Returns the exact root of the given degree of a non-negative integer, if there is one.
+     *
+     * @param value The non-negative radicand.
+     * @param degree The degree of the root, at least 1.
+     * @return The root, or null if it is not an integer.
+     */
+    public static BigInteger exactRoot(final BigInteger value, final int degree) {
+        if (value.signum() < 0) {
+            throw new ArithmeticException("Negative radicand");
+        }
+        if (degree == 1 || value.compareTo(BigInteger.ONE) <= 0) {
+            return value;
+        }
+        if (degree >= value.bitLength()) {
+            // any root of degree at least the bit length is between 1 and 2
+            return null;
+        }
+        final BigInteger root = degree == 2 ? value.sqrt() : floorRoot(value, degree);
+        return root.pow(degree).equals(value) ? root : null;
+    }
+
+    /** Newton's iteration for the integer root, starting from above and decreasing monotonically. */
+    private static BigInteger floorRoot(final BigInteger value, final int degree) {
+        final BigInteger k = BigInteger.valueOf(degree);
+        final BigInteger kMinusOne = BigInteger.valueOf(degree - 1L);
+        BigInteger x = BigInteger.ONE.shiftLeft(value.bitLength() / degree + 1);
+        while (true) {
+            final BigInteger next =
+                    kMinusOne.multiply(x).add(value.divide(x.pow(degree - 1))).divide(k);
+            if (next.compareTo(x) >= 0) {
+                return x;
+            }
+            x = next;
+        }
+    }
+
+    /**
+     * Approximates the given power to the given precision, without computing it exactly.
+     *
+     * @param base The base.
+     * @param exponent The exponent.
+     * @param mc The precision of the result.
+     * @return The approximated value.
+     * @throws ArithmeticException If the power is not real, or if its decimal exponent does not fit in an int.
+     */
+    public static BigDecimal approximate(final BigDecimal base, final Rational exponent, final MathContext mc) {
+        // a few guard digits absorb the rounding errors of the intermediate steps
+        final MathContext work = new MathContext(mc.getPrecision() + 10, RoundingMode.HALF_EVEN);
+        BigDecimal b = base;
+        if (!exponent.isInteger()) {
+            final BigInteger q = exponent.denominator();
+            if (q.bitLength() >= Integer.SIZE - 1) {
+                throw new ArithmeticException(String.format("Root degree too large: %s", q));
+            }
+            b = root(base, q.intValue(), null, work);
+        }
+        return pow(b, exponent.numerator(), work).round(mc);
+    }
+
+    /**
+     * Raises the given exact number to the given power, by repeated squaring.
+     *
+     * @param base The base.
+     * @param exponent The exponent, which may be negative.
+     * @param one The multiplicative identity.
+     * @param reciprocal The reciprocal, for negative exponents.
+     * @param multiply The product.
+     * @param <T> The type of the numbers.
+     * @return The base raised to the given power.
+     */
+    static <T> T pow(
+            final T base,
+            final int exponent,
+            final T one,
+            final UnaryOperator<T> reciprocal,
+            final BinaryOperator<T> multiply) {
+        if (exponent < 0) {
+            // the negation of Integer.MIN_VALUE overflows, so one factor is taken out first
+            final T r = reciprocal.apply(base);
+            return multiply.apply(pow(r, -(exponent + 1), one, reciprocal, multiply), r);
+        }
+        T result = one;
+        T b = base;
+        int e = exponent;
+        while (e > 0) {
+            if ((e & 1) != 0) {
+                result = multiply.apply(result, b);
+            }
+            e >>>= 1;
+            if (e > 0) {
+                b = multiply.apply(b, b);
+            }
+        }
+        return result;
+    }
+
+    private static BigDecimal pow(final BigDecimal base, final BigInteger exponent, final MathContext mc) {
+        if (exponent.abs().compareTo(BigInteger.valueOf(MAX_DECIMAL_EXPONENT)) <= 0) {
+            return base.pow(exponent.intValueExact(), mc);
+        }
+        // base^(q*M + r) = (base^M)^q * base^r
+        final BigInteger[] qr = exponent.divideAndRemainder(BigInteger.valueOf(MAX_DECIMAL_EXPONENT));
+        final BigDecimal high = pow(base.pow(MAX_DECIMAL_EXPONENT, mc), qr[0], mc);
+        return high.multiply(base.pow(qr[1].intValueExact(), mc), mc);
+    }
+
+    /**
+     * Approximates the real root of the given degree with Newton's iteration. A guess close to the root, like a less
+     * precise approximation of it, saves most of the iterations.
+     *
+     * @param value The radicand.
+     * @param degree The degree of the root, at least 1.
+     * @param guess The starting point, or null to start from a double-precision estimate.
+     * @param mc The precision of the result.
+     * @return The approximated root.
+     * @throws ArithmeticException If the root is not real.
+     */
+    public static BigDecimal root(
+            final BigDecimal value, final int degree, final BigDecimal guess, final MathContext mc) {
+        if (degree < 1) {
+            throw new IllegalArgumentException(String.format("Invalid root degree: %,d", degree));
+        }
+        if (value.signum() == 0 || degree == 1) {
+            return value;
+        }
+        if (value.signum() < 0) {
+            if (degree % 2 == 0) {
+                throw new ArithmeticException(String.format("Even root of a negative number: %s", value));
+            }
+            return root(value.negate(), degree, guess == null ? null : guess.negate(), mc)
+                    .negate();
+        }
+        if (degree == 2) {
+            return value.sqrt(mc);
+        }
+
+        BigDecimal x = guess != null && guess.signum() > 0 ? guess : estimateRoot(value, degree);
+        final BigDecimal k = BigDecimal.valueOf(degree);
+        final BigDecimal kMinusOne = BigDecimal.valueOf(degree - 1L);
+        while (true) {
+            final BigDecimal next = kMinusOne
+                    .multiply(x, mc)
+                    .add(value.divide(x.pow(degree - 1, mc), mc), mc)
+                    .divide(k, mc);
+            // rounding may make the last digits oscillate, so the iteration stops once the others are stable
+            final BigDecimal tolerance = next.abs().movePointLeft(mc.getPrecision() - 2);
+            if (next.subtract(x, mc).abs().compareTo(tolerance) <= 0) {
+                return next;
+            }
+            x = next;
+        }
+    }
+
+    private static BigDecimal estimateRoot(final BigDecimal value, final int degree) {
+        // ln(value) from its unscaled digits and its scale, so that values beyond the range of doubles are handled
+        final BigInteger unscaled = value.unscaledValue();
+        final int shift = Math.max(0, unscaled.bitLength() - 64);
+        final double ln =
+                Math.log(unscaled.shiftRight(shift).doubleValue()) + shift * Math.log(2.0) - value.scale() * LN_10;
+        final double log10OfRoot = ln / degree / LN_10;
+        final double exponent10 = Math.floor(log10OfRoot);
+        return new BigDecimal(Math.pow(10.0, log10OfRoot - exponent10)).scaleByPowerOfTen((int) exponent10);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.numbers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+
+/**
+ * An exact rational number, always kept in lowest terms with a positive denominator. Numerators and denominators that
+ * fit in a {@code long} are stored as such and combined with overflow-checked arithmetic, switching to
+ * {@link BigInteger} only when a result overflows. Sums and products reduce their operands before multiplying them, so
+ * intermediate values stay as small as the result allows.
+ */
+public final class Rational implements Comparable<Rational> {
+
+    public static final Rational ZERO = new Rational(0L, 1L);
+    public static final Rational ONE = new Rational(1L, 1L);
+
+    // valid only when bigNum is null; Long.MIN_VALUE is never stored, so that negation and abs cannot overflow
+    private final long num;
+    private final long den;
+
+    // null when both the numerator and the denominator fit in a long
+    private final BigInteger bigNum;
+    private final BigInteger bigDen;
+
+    private Rational(final long num, final long den) {
+        this.num = num;
+        this.den = den;
+        this.bigNum = null;
+        this.bigDen = null;
+    }
+
+    private Rational(final BigInteger num, final BigInteger den) {
+        this.num = 0L;
+        this.den = 0L;
+        this.bigNum = num;
+        this.bigDen = den;
+    }
+
+    public static Rational of(final long value) {
+        return of(value, 1L);
+    }
+
+    public static Rational of(final long numerator, final long denominator) {
+        if (denominator == 0L) {
+            throw new ArithmeticException("Zero denominator");
+        }
+        if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+            return of(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+        }
+        final long g = gcd(Math.abs(numerator), Math.abs(denominator));
+        final long n = numerator / g;
+        final long d = denominator / g;
+        return d < 0L ? new Rational(-n, -d) : new Rational(n, d);
+    }
+
+    public static Rational of(final BigInteger value) {
+        return of(value, BigInteger.ONE);
+    }
+
+    public static Rational of(final BigInteger numerator, final BigInteger denominator) {
+        if (denominator.signum() == 0) {
+            throw new ArithmeticException("Zero denominator");
+        }
+        final BigInteger g = numerator.gcd(denominator);
+        final BigInteger n = numerator.divide(g);
+        final BigInteger d = denominator.divide(g);
+        return d.signum() < 0 ? reduced(n.negate(), d.negate()) : reduced(n, d);
+    }
+
+    /** Builds a rational from an already reduced fraction with a positive denominator. */
+    private static Rational reduced(final BigInteger n, final BigInteger d) {
+        if (fitsInSmall(n) && fitsInSmall(d)) {
+            return new Rational(n.longValue(), d.longValue());
+        }
+        return new Rational(n, d);
+    }
+
+    private static boolean fitsInSmall(final BigInteger value) {
+        return value.bitLength() < Long.SIZE && value.longValue() != Long.MIN_VALUE;
+    }
+
+    /** Builds a rational from an already reduced fraction of longs with a positive denominator. */
+    private static Rational reduced(final long n, final long d) {
+        return n == Long.MIN_VALUE ? of(BigInteger.valueOf(n), BigInteger.valueOf(d)) : new Rational(n, d);
+    }
+
+    /**
+     * Checks whether the given node is a rational constant, which is either a {@link ConstantNode} or a
+     * {@link FractionNode} of two constants with a non-zero denominator.
+     *
+     * @param node The node to check.
+     * @return True if {@link #of(Node)} accepts the node, false otherwise.
+     */
+    public static boolean isRational(final Node node) {
+        return node instanceof ConstantNode
+                || (node instanceof FractionNode fn
+                        && fn.numerator() instanceof ConstantNode
+                        && fn.denominator() instanceof ConstantNode den
+                        && den.signum() != 0);
+    }
+
+    /**
+     * Converts a rational constant into its value.
+     *
+     * @param node The node to convert.
+     * @return The value of the node.
+     * @throws IllegalArgumentException If the node is not a rational constant.
+     * @see #isRational(Node)
+     */
+    public static Rational of(final Node node) {
+        if (node instanceof ConstantNode cn) {
+            return of(cn);
+        }
+        if (isRational(node)) {
+            final FractionNode fn = (FractionNode) node;
+            final ConstantNode n = (ConstantNode) fn.numerator();
+            final ConstantNode d = (ConstantNode) fn.denominator();
+            if (n.isSmall() && d.isSmall()) {
+                return of(n.longValue(), d.longValue());
+            }
+            return of(n.value(), d.value());
+        }
+        throw new IllegalArgumentException(String.format("'%s' is not a rational constant", node.toExpression()));
+    }
+
+    private static Rational of(final ConstantNode cn) {
+        return cn.isSmall() ? of(cn.longValue()) : of(cn.value());
+    }
+
+    private static long gcd(final long a, final long b) {
+        long x = a;
+        long y = b;
+        while (y != 0L) {
+            final long t = x % y;
+            x = y;
+            y = t;
+        }
+        return x;
+    }
+
+    private boolean isSmall() {
+        return bigNum == null;
+    }
+
+    public BigInteger numerator() {
+        return isSmall() ? BigInteger.valueOf(num) : bigNum;
+    }
+
+    public BigInteger denominator() {
+        return isSmall() ? BigInteger.valueOf(den) : bigDen;
+    }
+
+    public int signum() {
+        return isSmall() ? Long.signum(num) : bigNum.signum();
+    }
+
+    public boolean isZero() {
+        return signum() == 0;
+    }
+
+    public boolean isInteger() {
+        return isSmall() ? den == 1L : bigDen.equals(BigInteger.ONE);
+    }
+
+    public Rational negate() {
+        return isSmall() ? new Rational(-num, den) : reduced(bigNum.negate(), bigDen);
+    }
+
+    public Rational reciprocal() {
+        if (isZero()) {
+            throw new ArithmeticException("Reciprocal of zero");
+        }
+        if (isSmall()) {
+            return num < 0L ? new Rational(-den, -num) : new Rational(den, num);
+        }
+        return bigNum.signum() < 0 ? reduced(bigDen.negate(), bigNum.negate()) : reduced(bigDen, bigNum);
+    }
+
+    public Rational add(final Rational other) {
+        if (this.isSmall() && other.isSmall()) {
+            try {
+                // a/b + c/d with g = gcd(b, d): the result is (a*(d/g) + c*(b/g)) / (b*(d/g)), and only g can share
+                // factors with the new numerator
+                final long g = gcd(this.den, other.den);
+                final long b = this.den / g;
+                final long d = other.den / g;
+                final long n = Math.addExact(Math.multiplyExact(this.num, d), Math.multiplyExact(other.num, b));
+                final long g2 = gcd(Math.absExact(n), g);
+                return reduced(n / g2, Math.multiplyExact(this.den / g2, d));
+            } catch (final ArithmeticException overflow) {
+                // fall through to the BigInteger path
+            }
+        }
+        return of(
+                this.numerator()
+                        .multiply(other.denominator())
+                        .add(other.numerator().multiply(this.denominator())),
+                this.denominator().multiply(other.denominator()));
+    }
+
+    public Rational subtract(final Rational other) {
+        return add(other.negate());
+    }
+
+    public Rational multiply(final Rational other) {
+        if (this.isSmall() && other.isSmall()) {
+            try {
+                // cross-cancel first, so that the products are already in lowest terms
+                final long g1 = gcd(Math.abs(this.num), other.den);
+                final long g2 = gcd(Math.abs(other.num), this.den);
+                final long n = Math.multiplyExact(this.num / g1, other.num / g2);
+                final long d = Math.multiplyExact(this.den / g2, other.den / g1);
+                return reduced(n, d);
+            } catch (final ArithmeticException overflow) {
+                // fall through to the BigInteger path
+            }
+        }
+        return of(
+                this.numerator().multiply(other.numerator()), this.denominator().multiply(other.denominator()));
+    }
+
+    public Rational divide(final Rational other) {
+        return multiply(other.reciprocal());
+    }
+
+    /**
+     * Raises this value to the given power, by repeated squaring.
+     *
+     * @param exponent The exponent, which may be negative.
+     * @return This value raised to the given power.
+     * @throws ArithmeticException If this value is zero and the exponent is negative.
+     */
+    public Rational pow(final int exponent) {
+        return Powers.pow(this, exponent, ONE, Rational::reciprocal, Rational::multiply);
+    }
+
+    /**
+     * Returns the double closest to this value.
+     *
+     * @return The value as a double.
+     */
+    public double doubleValue() {
+        final long exact = 1L << 53;
+        if (isSmall() && Math.abs(num) <= exact && den <= exact) {
+            // both operands are exact doubles, and IEEE division rounds correctly
+            return (double) num / (double) den;
+        }
+        // 17 significant digits identify a double, the others make double rounding unlikely
+        return toBigDecimal(new MathContext(40)).doubleValue();
+    }
+
+    /**
+     * Returns this value rounded to the given precision.
+     *
+     * @param mc The precision.
+     * @return The value as a decimal.
+     */
+    public BigDecimal toBigDecimal(final MathContext mc) {
+        return new BigDecimal(numerator()).divide(new BigDecimal(denominator()), mc);
+    }
+
+    /**
+     * Converts this value into a node: a {@link ConstantNode} if it is an integer, a {@link FractionNode} with the sign
+     * on the numerator otherwise.
+     *
+     * @return The node representing this value.
+     */
+    public Node toNode() {
+        if (isSmall()) {
+            return den == 1L
+                    ? NodeFactory.constant(num)
+                    : NodeFactory.fraction(NodeFactory.constant(num), NodeFactory.constant(den));
+        }
+        return isInteger()
+                ? NodeFactory.constant(bigNum)
+                : NodeFactory.fraction(NodeFactory.constant(bigNum), NodeFactory.constant(bigDen));
+    }
+
+    @Override
+    public int compareTo(final Rational other) {
+        if (this.isSmall() && other.isSmall()) {
+            final long hi1 = Math.multiplyHigh(this.num, other.den);
+            final long hi2 = Math.multiplyHigh(other.num, this.den);
+            if (hi1 != hi2) {
+                return Long.compare(hi1, hi2);
+            }
+            return Long.compareUnsigned(this.num * other.den, other.num * this.den);
+        }
+        return this.numerator()
+                .multiply(other.denominator())
+                .compareTo(other.numerator().multiply(this.denominator()));
+    }
+
+    @Override
+    public String toString() {
+        if (isSmall()) {
+            return den == 1L ? Long.toString(num) : num + "/" + den;
+        }
+        return isInteger() ? bigNum.toString() : bigNum + "/" + bigDen;
+    }
+
+    @Override
+    public int hashCode() {
+        return isSmall() ? 31 * Long.hashCode(num) + Long.hashCode(den) : 31 * bigNum.hashCode() + bigDen.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final Rational o = (Rational) other;
+        // the representation is canonical: the BigIntegers are used only if the value does not fit in longs
+        if (this.isSmall()) {
+            return o.isSmall() && this.num == o.num && this.den == o.den;
+        }
+        return !o.isSmall() && this.bigNum.equals(o.bigNum) && this.bigDen.equals(o.bigDen);
+    }
+}
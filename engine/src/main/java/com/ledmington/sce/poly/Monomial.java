@@ -0,0 +1,229 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.poly;
+
+import java.util.Arrays;
+
+/**
+ * A product of variables raised to positive powers, stored as the sorted indices of the variables it contains and
+ * their exponents. Variables with a zero exponent are never stored, so a monomial takes space proportional to the
+ * variables it contains, regardless of how many variables were registered, and monomials built before a new variable
+ * was registered compare equal to the ones built after it.
+ */
+final class Monomial implements Comparable<Monomial> {
+
+    private static final int[] EMPTY = new int[0];
+
+    static final Monomial ONE = new Monomial(EMPTY, EMPTY);
+
+    private final int[] variables;
+    private final int[] exponents;
+    private final int degree;
+    private final int hash;
+
+    private Monomial(final int[] variables, final int[] exponents) {
+        this.variables = variables;
+        this.exponents = exponents;
+        int d = 0;
+        for (final int e : exponents) {
+            d = Math.addExact(d, e);
+        }
+        this.degree = d;
+        this.hash = 31 * Arrays.hashCode(variables) + Arrays.hashCode(exponents);
+    }
+
+    /**
+     * Builds a monomial from the given sorted variable indices and their exponents, skipping the zero ones. The arrays
+     * are not copied when no exponent is zero.
+     */
+    static Monomial of(final int[] variables, final int[] exponents) {
+        int nonZero = 0;
+        for (final int e : exponents) {
+            if (e != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero == 0) {
+            return ONE;
+        }
+        if (nonZero == exponents.length) {
+            return new Monomial(variables, exponents);
+        }
+        final int[] v = new int[nonZero];
+        final int[] e = new int[nonZero];
+        int k = 0;
+        for (int i = 0; i < exponents.length; i++) {
+            if (exponents[i] != 0) {
+                v[k] = variables[i];
+                e[k] = exponents[i];
+                k++;
+            }
+        }
+        return new Monomial(v, e);
+    }
+
+    static Monomial variable(final int index) {
+        return new Monomial(new int[] {index}, new int[] {1});
+    }
+
+    /** Returns the number of variables with a non-zero exponent. */
+    int size() {
+        return variables.length;
+    }
+
+    /** Returns the index of the k-th variable with a non-zero exponent, in increasing order. */
+    int variableAt(final int k) {
+        return variables[k];
+    }
+
+    /** Returns the exponent of the k-th variable with a non-zero exponent. */
+    int exponentAt(final int k) {
+        return exponents[k];
+    }
+
+    int exponent(final int variable) {
+        final int k = Arrays.binarySearch(variables, variable);
+        return k < 0 ? 0 : exponents[k];
+    }
+
+    int degree() {
+        return degree;
+    }
+
+    Monomial multiply(final Monomial other) {
+        if (this.variables.length == 0) {
+            return other;
+        }
+        if (other.variables.length == 0) {
+            return this;
+        }
+        // merge the two sorted lists of variables
+        final int[] v = new int[this.variables.length + other.variables.length];
+        final int[] e = new int[v.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < this.variables.length || j < other.variables.length) {
+            if (j == other.variables.length
+                    || (i < this.variables.length && this.variables[i] < other.variables[j])) {
+                v[k] = this.variables[i];
+                e[k] = this.exponents[i++];
+            } else if (i == this.variables.length || other.variables[j] < this.variables[i]) {
+                v[k] = other.variables[j];
+                e[k] = other.exponents[j++];
+            } else {
+                v[k] = this.variables[i];
+                e[k] = Math.addExact(this.exponents[i++], other.exponents[j++]);
+            }
+            k++;
+        }
+        // the exponents are positive, so their sums are never zero
+        return new Monomial(k == v.length ? v : Arrays.copyOf(v, k), k == e.length ? e : Arrays.copyOf(e, k));
+    }
+
+    /** Returns this monomial with the given variable raised to the given power instead. */
+    Monomial withExponent(final int variable, final int exponent) {
+        final int k = Arrays.binarySearch(variables, variable);
+        if (k >= 0) {
+            final int[] e = exponents.clone();
+            e[k] = exponent;
+            return of(variables, e);
+        }
+        if (exponent == 0) {
+            return this;
+        }
+        final int at = -k - 1;
+        final int[] v = new int[variables.length + 1];
+        final int[] e = new int[v.length];
+        System.arraycopy(variables, 0, v, 0, at);
+        System.arraycopy(exponents, 0, e, 0, at);
+        v[at] = variable;
+        e[at] = exponent;
+        System.arraycopy(variables, at, v, at + 1, variables.length - at);
+        System.arraycopy(exponents, at, e, at + 1, exponents.length - at);
+        return new Monomial(v, e);
+    }
+
+    Monomial pow(final int exponent) {
+        if (exponent == 0) {
+            return ONE;
+        }
+        final int[] result = new int[exponents.length];
+        for (int i = 0; i < exponents.length; i++) {
+            result[i] = Math.multiplyExact(exponents[i], exponent);
+        }
+        return new Monomial(variables, result);
+    }
+
+    /** Sorts by decreasing degree first, then by decreasing exponent of the earliest variable. */
+    @Override
+    public int compareTo(final Monomial other) {
+        if (this.degree != other.degree) {
+            return Integer.compare(other.degree, this.degree);
+        }
+        int i = 0;
+        int j = 0;
+        while (i < this.variables.length && j < other.variables.length) {
+            if (this.variables[i] != other.variables[j]) {
+                // the earliest variable is missing from the other monomial, where its exponent is zero
+                return this.variables[i] < other.variables[j] ? -1 : 1;
+            }
+            final int cmp = Integer.compare(other.exponents[j], this.exponents[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+            i++;
+            j++;
+        }
+        return Integer.compare(other.variables.length - j, this.variables.length - i);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder().append("Monomial{");
+        for (int i = 0; i < variables.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(variables[i]).append('=').append(exponents[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == null) {
+            return false;
+        }
+        if (this == other) {
+            return true;
+        }
+        if (!this.getClass().equals(other.getClass())) {
+            return false;
+        }
+        final Monomial o = (Monomial) other;
+        return this.hash == o.hash
+                && Arrays.equals(this.variables, o.variables)
+                && Arrays.equals(this.exponents, o.exponents);
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.poly;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.ledmington.sce.numbers.Rational;
+
+/**
+ * Multiplication and powers of sparse polynomials.
+ *
+ * <p>The dense algorithms first apply the Kronecker substitution to the variables: with {@code B_i} larger than the
+ * degree in the i-th variable of any term of the product, each monomial maps to the integer {@code sum e_i * prod_{j<i}
+ * B_j}, and multiplying monomials maps to adding their integers without carries. Both factors thus become univariate
+ * coefficient arrays.
+ */
+final class Multiplication {
+
+    // below this many terms in either factor, multiplying pairs of terms is cheaper than building dense arrays
+    private static final int SCHOOLBOOK_MAX_TERMS = 16;
+
+    private static final int MAX_DENSE_LENGTH = 1 << 22;
+    private static final long MAX_PACKED_BITS = 1L << 30;
+    private static final int KARATSUBA_THRESHOLD = 32;
+
+    private Multiplication() {}
+
+    static void accumulate(final Map<Monomial, Rational> terms, final Monomial m, final Rational c) {
+        final Rational sum = terms.merge(m, c, Rational::add);
+        if (sum.isZero()) {
+            terms.remove(m);
+        }
+    }
+
+    static Map<Monomial, Rational> multiply(
+            final Map<Monomial, Rational> a, final Map<Monomial, Rational> b, final MultiplicationAlgorithm algorithm) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return new HashMap<>();
+        }
+        if (algorithm == MultiplicationAlgorithm.SCHOOLBOOK
+                || (algorithm == MultiplicationAlgorithm.AUTOMATIC
+                        && Math.min(a.size(), b.size()) <= SCHOOLBOOK_MAX_TERMS)) {
+            return schoolbook(a, b);
+        }
+
+        final Radix radix = Radix.of(a, b);
+        if (radix == null) {
+            // the dense arrays would be too long
+            return schoolbook(a, b);
+        }
+        if (algorithm == MultiplicationAlgorithm.AUTOMATIC && (long) a.size() * b.size() < radix.length()) {
+            // too sparse: most of the dense product would be zeros
+            return schoolbook(a, b);
+        }
+
+        final Rational[] da = radix.toDense(a);
+        final Rational[] db = radix.toDense(b);
+        Rational[] product = null;
+        if (algorithm != MultiplicationAlgorithm.KARATSUBA) {
+            product = kronecker(da, db);
+        }
+        if (product == null) {
+            product = karatsuba(da, db);
+        }
+        return radix.toSparse(product);
+    }
+
+    private static Map<Monomial, Rational> schoolbook(
+            final Map<Monomial, Rational> a, final Map<Monomial, Rational> b) {
+        final Map<Monomial, Rational> result = new HashMap<>();
+        for (final Map.Entry<Monomial, Rational> x : a.entrySet()) {
+            for (final Map.Entry<Monomial, Rational> y : b.entrySet()) {
+                accumulate(result, x.getKey().multiply(y.getKey()), x.getValue().multiply(y.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The mixed radix mapping the monomials of a product to the indices of dense arrays. Only the variables appearing in
+     * the factors get a digit.
+     */
+    private record Radix(int[] variables, int[] bounds, int[] strides, int length) {
+
+        static Radix of(final Map<Monomial, Rational> a, final Map<Monomial, Rational> b) {
+            final Map<Integer, Integer> maxA = maxExponents(a);
+            final Map<Integer, Integer> maxB = maxExponents(b);
+            final int[] variables = Stream.concat(maxA.keySet().stream(), maxB.keySet().stream())
+                    .mapToInt(Integer::intValue)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+            final int n = variables.length;
+            final int[] bounds = new int[n];
+            final int[] strides = new int[n];
+            long length = 1L;
+            for (int i = 0; i < n; i++) {
+                bounds[i] = maxA.getOrDefault(variables[i], 0) + maxB.getOrDefault(variables[i], 0) + 1;
+                strides[i] = (int) length;
+                length *= bounds[i];
+                if (length > MAX_DENSE_LENGTH) {
+                    return null;
+                }
+            }
+            return new Radix(variables, bounds, strides, (int) length);
+        }
+
+        private static Map<Integer, Integer> maxExponents(final Map<Monomial, Rational> terms) {
+            final Map<Integer, Integer> max = new HashMap<>();
+            for (final Monomial m : terms.keySet()) {
+                for (int k = 0; k < m.size(); k++) {
+                    max.merge(m.variableAt(k), m.exponentAt(k), Math::max);
+                }
+            }
+            return max;
+        }
+
+        private int index(final Monomial m) {
+            int idx = 0;
+            for (int k = 0; k < m.size(); k++) {
+                idx += m.exponentAt(k) * strides[Arrays.binarySearch(variables, m.variableAt(k))];
+            }
+            return idx;
+        }
+
+        Rational[] toDense(final Map<Monomial, Rational> terms) {
+            int last = 0;
+            for (final Monomial m : terms.keySet()) {
+                last = Math.max(last, index(m));
+            }
+            final Rational[] dense = new Rational[last + 1];
+            Arrays.fill(dense, Rational.ZERO);
+            for (final Map.Entry<Monomial, Rational> e : terms.entrySet()) {
+                dense[index(e.getKey())] = e.getValue();
+            }
+            return dense;
+        }
+
+        Map<Monomial, Rational> toSparse(final Rational[] dense) {
+            final Map<Monomial, Rational> terms = new HashMap<>();
+            for (int idx = 0; idx < dense.length; idx++) {
+                if (dense[idx].isZero()) {
+                    continue;
+                }
+                final int[] exponents = new int[bounds.length];
+                for (int i = 0; i < bounds.length; i++) {
+                    exponents[i] = (idx / strides[i]) % bounds[i];
+                }
+                terms.put(Monomial.of(variables, exponents), dense[idx]);
+            }
+            return terms;
+        }
+    }
+
+    private static Rational[] denseSchoolbook(final Rational[] a, final Rational[] b) {
+        final Rational[] result = new Rational[a.length + b.length - 1];
+        Arrays.fill(result, Rational.ZERO);
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].isZero()) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                if (!b[j].isZero()) {
+                    result[i + j] = result[i + j].add(a[i].multiply(b[j]));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Rational[] karatsuba(final Rational[] a, final Rational[] b) {
+        if (Math.min(a.length, b.length) <= KARATSUBA_THRESHOLD) {
+            return denseSchoolbook(a, b);
+        }
+
+        // a = a0 + a1*t^h and b = b0 + b1*t^h, so a*b = z0 + ((a0+a1)*(b0+b1) - z0 - z2)*t^h + z2*t^(2h)
+        final int h = Math.max(a.length, b.length) / 2;
+        final Rational[] a0 = Arrays.copyOfRange(a, 0, Math.min(h, a.length));
+        final Rational[] a1 = high(a, h);
+        final Rational[] b0 = Arrays.copyOfRange(b, 0, Math.min(h, b.length));
+        final Rational[] b1 = high(b, h);
+
+        final Rational[] result = new Rational[a.length + b.length - 1];
+        Arrays.fill(result, Rational.ZERO);
+        final Rational[] z0 = karatsuba(a0, b0);
+        addInto(result, z0, 0);
+        if (a1.length == 0 || b1.length == 0) {
+            // unbalanced factors: only one of the cross products is there
+            if (a1.length > 0) {
+                addInto(result, karatsuba(a1, b0), h);
+            }
+            if (b1.length > 0) {
+                addInto(result, karatsuba(a0, b1), h);
+            }
+            return result;
+        }
+        final Rational[] z2 = karatsuba(a1, b1);
+        final Rational[] z1 = karatsuba(sum(a0, a1), sum(b0, b1));
+        subtractInto(z1, z0);
+        subtractInto(z1, z2);
+        addInto(result, z1, h);
+        addInto(result, z2, 2 * h);
+        return result;
+    }
+
+    private static Rational[] high(final Rational[] x, final int h) {
+        return h < x.length ? Arrays.copyOfRange(x, h, x.length) : new Rational[0];
+    }
+
+    private static Rational[] sum(final Rational[] x, final Rational[] y) {
+        final Rational[] result = Arrays.copyOf(x.length >= y.length ? x : y, Math.max(x.length, y.length));
+        final Rational[] shorter = x.length >= y.length ? y : x;
+        for (int i = 0; i < shorter.length; i++) {
+            result[i] = result[i].add(shorter[i]);
+        }
+        return result;
+    }
+
+    private static void addInto(final Rational[] target, final Rational[] x, final int offset) {
+        for (int i = 0; i < x.length && offset + i < target.length; i++) {
+            if (!x[i].isZero()) {
+                target[offset + i] = target[offset + i].add(x[i]);
+            }
+        }
+    }
+
+    private static void subtractInto(final Rational[] target, final Rational[] x) {
+        for (int i = 0; i < x.length; i++) {
+            if (!x[i].isZero()) {
+                target[i] = target[i].subtract(x[i]);
+            }
+        }
+    }
+
+    /**
+     * Multiplies two dense arrays by packing each into one big integer, after scaling the coefficients to integers.
+     * Each slot is wide enough to hold any coefficient of the product together with its sign, so the slots of the
+     * product can be read back one by one, borrowing from the next slot whenever a coefficient is negative.
+     *
+     * @return The product, or null if the packed integers would be too large.
+     */
+    private static Rational[] kronecker(final Rational[] a, final Rational[] b) {
+        final BigInteger scaleA = commonDenominator(a);
+        final BigInteger scaleB = commonDenominator(b);
+        final BigInteger[] ia = scale(a, scaleA);
+        final BigInteger[] ib = scale(b, scaleB);
+
+        final int bound =
+                maxBitLength(ia) + maxBitLength(ib) + (32 - Integer.numberOfLeadingZeros(Math.min(a.length, b.length)));
+        final int slot = bound + 1;
+        final int length = a.length + b.length - 1;
+        if ((long) slot * (length + 1) > MAX_PACKED_BITS) {
+            return null;
+        }
+
+        final BigInteger[] product = unpack(pack(ia, slot).multiply(pack(ib, slot)), slot, length);
+        final BigInteger scale = scaleA.multiply(scaleB);
+        final Rational[] result = new Rational[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = product[i].signum() == 0 ? Rational.ZERO : Rational.of(product[i], scale);
+        }
+        return result;
+    }
+
+    private static BigInteger commonDenominator(final Rational[] x) {
+        BigInteger lcm = BigInteger.ONE;
+        for (final Rational r : x) {
+            final BigInteger d = r.denominator();
+            if (!d.equals(BigInteger.ONE)) {
+                lcm = lcm.divide(lcm.gcd(d)).multiply(d);
+            }
+        }
+        return lcm;
+    }
+
+    private static BigInteger[] scale(final Rational[] x, final BigInteger scale) {
+        final BigInteger[] result = new BigInteger[x.length];
+        for (int i = 0; i < x.length; i++) {
+            result[i] = x[i].numerator().multiply(scale.divide(x[i].denominator()));
+        }
+        return result;
+    }
+
+    private static int maxBitLength(final BigInteger[] x) {
+        int max = 0;
+        for (final BigInteger v : x) {
+            max = Math.max(max, v.bitLength());
+        }
+        return max;
+    }
+
+    /** Returns the sum of {@code x[i] * 2^(i*slot)}. */
+    private static BigInteger pack(final BigInteger[] x, final int slot) {
+        // negative coefficients would need borrows, so the positive and negative ones are packed separately
+        final byte[] positive = new byte[(int) (((long) x.length * slot) / 8) + 3];
+        final byte[] negative = new byte[positive.length];
+        boolean anyNegative = false;
+        for (int i = 0; i < x.length; i++) {
+            if (x[i].signum() > 0) {
+                write(positive, (long) i * slot, x[i]);
+            } else if (x[i].signum() < 0) {
+                write(negative, (long) i * slot, x[i].negate());
+                anyNegative = true;
+            }
+        }
+        final BigInteger packed = new BigInteger(1, reverse(positive));
+        return anyNegative ? packed.subtract(new BigInteger(1, reverse(negative))) : packed;
+    }
+
+    /** ORs the bits of a non-negative value into a little-endian byte array, starting from the given bit. */
+    private static void write(final byte[] target, final long bit, final BigInteger value) {
+        final byte[] bytes = value.toByteArray();
+        final int shift = (int) (bit & 7L);
+        int idx = (int) (bit >>> 3);
+        for (int j = bytes.length - 1; j >= 0; j--, idx++) {
+            final int b = bytes[j] & 0xff;
+            target[idx] |= (byte) (b << shift);
+            if (shift != 0) {
+                target[idx + 1] |= (byte) (b >>> (8 - shift));
+            }
+        }
+    }
+
+    private static BigInteger[] unpack(final BigInteger packed, final int slot, final int length) {
+        final byte[] bytes = reverse(packed.abs().toByteArray());
+        final BigInteger mask = BigInteger.ONE.shiftLeft(slot).subtract(BigInteger.ONE);
+        final BigInteger half = BigInteger.ONE.shiftLeft(slot - 1);
+        final BigInteger full = BigInteger.ONE.shiftLeft(slot);
+        final BigInteger[] result = new BigInteger[length];
+        boolean borrow = false;
+        for (int i = 0; i < length; i++) {
+            BigInteger v = read(bytes, (long) i * slot, slot, mask);
+            if (borrow) {
+                v = v.add(BigInteger.ONE);
+            }
+            // values in the upper half of the slot are negative coefficients, which borrowed from this slot's successor
+            borrow = v.compareTo(half) >= 0;
+            if (borrow) {
+                v = v.subtract(full);
+            }
+            result[i] = packed.signum() < 0 ? v.negate() : v;
+        }
+        return result;
+    }
+
+    /** Reads the given number of bits from a little-endian byte array, starting from the given bit. */
+    private static BigInteger read(final byte[] source, final long bit, final int count, final BigInteger mask) {
+        final int first = (int) (bit >>> 3);
+        if (first >= source.length) {
+            return BigInteger.ZERO;
+        }
+        final int last = (int) Math.min(source.length - 1, (bit + count - 1) >>> 3);
+        final byte[] bigEndian = new byte[last - first + 1];
+        for (int i = first; i <= last; i++) {
+            bigEndian[last - i] = source[i];
+        }
+        return new BigInteger(1, bigEndian).shiftRight((int) (bit & 7L)).and(mask);
+    }
+
+    private static byte[] reverse(final byte[] bytes) {
+        final byte[] result = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i] = bytes[bytes.length - 1 - i];
+        }
+        return result;
+    }
+
+    static Map<Monomial, Rational> pow(
+            final Map<Monomial, Rational> p, final int exponent, final MultiplicationAlgorithm algorithm) {
+        final Map<Monomial, Rational> one = new HashMap<>();
+        one.put(Monomial.ONE, Rational.ONE);
+        if (exponent == 0) {
+            return one;
+        }
+        if (p.isEmpty()) {
+            return new HashMap<>();
+        }
+        if (p.size() == 1) {
+            final Map.Entry<Monomial, Rational> t = p.entrySet().iterator().next();
+            final Map<Monomial, Rational> result = new HashMap<>();
+            result.put(t.getKey().pow(exponent), t.getValue().pow(exponent));
+            return result;
+        }
+        if (p.size() == 2) {
+            return binomial(p, exponent);
+        }
+
+        // repeated squaring
+        Map<Monomial, Rational> result = one;
+        Map<Monomial, Rational> base = p;
+        int e = exponent;
+        while (true) {
+            if ((e & 1) != 0) {
+                result = multiply(result, base, algorithm);
+            }
+            e >>>= 1;
+            if (e == 0) {
+                return result;
+            }
+            base = multiply(base, base, algorithm);
+        }
+    }
+
+    /** Expands {@code (c1*m1 + c2*m2)^n} with the binomial theorem, in time linear in {@code n}. */
+    private static Map<Monomial, Rational> binomial(final Map<Monomial, Rational> p, final int n) {
+        final Iterator<Map.Entry<Monomial, Rational>> it = p.entrySet().iterator();
+        final Map.Entry<Monomial, Rational> first = it.next();
+        final Map.Entry<Monomial, Rational> second = it.next();
+
+        // powers of the second term, from 0 to n
+        final Monomial[] m2 = new Monomial[n + 1];
+        final Rational[] c2 = new Rational[n + 1];
+        m2[0] = Monomial.ONE;
+        c2[0] = Rational.ONE;
+        for (int k = 1; k <= n; k++) {
+            m2[k] = m2[k - 1].multiply(second.getKey());
+            c2[k] = c2[k - 1].multiply(second.getValue());
+        }
+
+        final Map<Monomial, Rational> result = new HashMap<>();
+        Monomial m1 = Monomial.ONE;
+        Rational c1 = Rational.ONE;
+        BigInteger binomial = BigInteger.ONE;
+        // k goes down, so that the powers of the first term go up
+        for (int k = n; k >= 0; k--) {
+            accumulate(
+                    result,
+                    m1.multiply(m2[k]),
+                    Rational.of(binomial).multiply(c1).multiply(c2[k]));
+            m1 = m1.multiply(first.getKey());
+            c1 = c1.multiply(first.getValue());
+            // C(n, k-1) = C(n, k) * k / (n-k+1)
+            binomial = binomial.multiply(BigInteger.valueOf(k)).divide(BigInteger.valueOf(n - k + 1));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.poly;
+
+/** The algorithms available to multiply two polynomials. */
+public enum MultiplicationAlgorithm {
+
+    /** Multiplies each pair of terms, which is the fastest option when either factor has only a few terms. */
+    SCHOOLBOOK,
+
+    /**
+     * Maps both factors to dense coefficient arrays and multiplies them with Karatsuba's divide-and-conquer algorithm,
+     * performing three half-sized products instead of four.
+     */
+    KARATSUBA,
+
+    /**
+     * Maps both factors to dense coefficient arrays, packs each array into a single big integer with one fixed-width
+     * slot per coefficient and performs a single big integer multiplication.
+     */
+    KRONECKER,
+
+    /** Chooses among the other algorithms according to the number of terms and how dense the factors are. */
+    AUTOMATIC
+}
@@ -0,0 +1,399 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.poly;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ledmington.sce.EngineConstants;
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.numbers.GaussianRational;
+import com.ledmington.sce.numbers.Powers;
+import com.ledmington.sce.numbers.Rational;
+
+/**
+ * A sparse multivariate polynomial with rational coefficients, stored as a hash map from monomials to their non-zero
+ * coefficients. Like terms are therefore merged in constant time each, regardless of how they were written.
+ *
+ * <p>Polynomials can only be combined with polynomials over the same variables, which are the ones converted from the
+ * same tree.
+ */
+public final class Polynomial {
+
+    private final Variables variables;
+    private final Map<Monomial, Rational> terms;
+
+    private Polynomial(final Variables variables, final Map<Monomial, Rational> terms) {
+        this.variables = variables;
+        this.terms = terms;
+    }
+
+    private static Polynomial constant(final Variables variables, final Rational value) {
+        final Map<Monomial, Rational> terms = new HashMap<>();
+        if (!value.isZero()) {
+            terms.put(Monomial.ONE, value);
+        }
+        return new Polynomial(variables, terms);
+    }
+
+    private static Polynomial variable(final Variables variables, final Node variable) {
+        final Map<Monomial, Rational> terms = new HashMap<>();
+        terms.put(Monomial.variable(variables.indexOf(variable)), Rational.ONE);
+        return new Polynomial(variables, terms);
+    }
+
+    /**
+     * Converts the given tree into a polynomial, distributing every product and integer power of sums. Products and
+     * powers whose expansion would be too large stay symbolic and become variables of the result. The powers of the
+     * imaginary unit are reduced, so that i^2 becomes -1.
+     *
+     * @param root The tree to convert.
+     * @return The expanded polynomial.
+     */
+    public static Polynomial expand(final Node root) {
+        Objects.requireNonNull(root);
+        return new Converter(new Variables(), true).convert(root).foldImaginaryUnit();
+    }
+
+    /**
+     * Converts the given tree into a polynomial, merging like terms but keeping products and powers of sums as they
+     * are. Each such sum is collected on its own and becomes a variable of the result. The powers of the imaginary unit
+     * are reduced, so that i^2 becomes -1.
+     *
+     * @param root The tree to convert.
+     * @return The collected polynomial.
+     */
+    public static Polynomial collect(final Node root) {
+        Objects.requireNonNull(root);
+        return new Converter(new Variables(), false).convert(root).foldImaginaryUnit();
+    }
+
+    private record Converter(Variables variables, boolean expand) {
+        Polynomial convert(final Node node) {
+            if (Rational.isRational(node)) {
+                return constant(variables, Rational.of(node));
+            }
+            return switch (node) {
+                case VariableNode vn -> variable(variables, vn);
+                case BracketNode bn -> convert(bn.inner());
+                case PlusNode pn -> {
+                    // every child is merged into the same map, so that each term costs constant time
+                    final Map<Monomial, Rational> sum = new HashMap<>();
+                    for (int i = 0; i < pn.getNumDistinctChildren(); i++) {
+                        final Polynomial child = convert(pn.getDistinctChild(i));
+                        final Rational multiplicity = Rational.of(pn.getMultiplicity(i));
+                        for (final Map.Entry<Monomial, Rational> e : child.terms.entrySet()) {
+                            Multiplication.accumulate(
+                                    sum,
+                                    e.getKey(),
+                                    pn.getMultiplicity(i) == 1 ? e.getValue() : e.getValue().multiply(multiplicity));
+                        }
+                    }
+                    yield new Polynomial(variables, sum);
+                }
+                case MultiplyNode mn -> {
+                    final Polynomial[] factors = new Polynomial[mn.getNumDistinctChildren()];
+                    for (int i = 0; i < factors.length; i++) {
+                        factors[i] = factor(mn.getDistinctChild(i));
+                    }
+                    Polynomial result = constant(variables, Rational.ONE);
+                    for (int i = 0; i < factors.length && result != null; i++) {
+                        final Polynomial f = pow(factors[i], mn.getMultiplicity(i));
+                        result = f == null ? null : multiply(result, f);
+                    }
+                    if (result != null) {
+                        yield result;
+                    }
+                    // too large to be expanded: the product becomes a variable
+                    final List<Node> children = new ArrayList<>();
+                    for (int i = 0; i < factors.length; i++) {
+                        final Node child = toFactor(factors[i]);
+                        for (int j = 0; j < mn.getMultiplicity(i); j++) {
+                            children.add(child);
+                        }
+                    }
+                    yield variable(variables, NodeFactory.multiply(children));
+                }
+                case PowerNode pn -> {
+                    Node exponent = pn.exponent();
+                    while (exponent instanceof BracketNode bn) {
+                        exponent = bn.inner();
+                    }
+                    if (exponent instanceof ConstantNode e
+                            && e.signum() >= 0
+                            && e.isSmall()
+                            && e.longValue() <= Integer.MAX_VALUE) {
+                        final Polynomial base = factor(pn.base());
+                        final Polynomial result = pow(base, (int) e.longValue());
+                        yield result != null ? result : variable(variables, NodeFactory.power(base.toNode(), e));
+                    }
+                    yield variable(variables, NodeFactory.power(operand(pn.base()), operand(pn.exponent())));
+                }
+                case FractionNode fn -> {
+                    if (Rational.isRational(fn.denominator())
+                            && Rational.of(fn.denominator()).signum() != 0) {
+                        yield convert(fn.numerator())
+                                .multiply(constant(
+                                        variables, Rational.of(fn.denominator()).reciprocal()));
+                    }
+                    yield variable(variables, NodeFactory.fraction(operand(fn.numerator()), operand(fn.denominator())));
+                }
+                default -> variable(variables, node);
+            };
+        }
+
+        /**
+         * Converts an operand of a subtree which is not polynomial, so that equal subtrees written differently become
+         * the same variable.
+         */
+        private Node operand(final Node node) {
+            return convert(node).toNode();
+        }
+
+        /** Converts a factor of a product or the base of a power. */
+        private Polynomial factor(final Node node) {
+            final Polynomial p = convert(node);
+            if (expand || p.terms.size() <= 1) {
+                return p;
+            }
+            // a sum which must not be distributed: collect it and use it as a variable
+            return variable(variables, toFactor(p));
+        }
+
+        private static Node toFactor(final Polynomial p) {
+            return p.terms.size() <= 1 ? p.toNode() : NodeFactory.bracket(p.toNode());
+        }
+
+        /**
+         * Raises the given polynomial to the given power, unless the result would have too many terms, too large
+         * coefficients or a degree not fitting an int.
+         *
+         * @return The power, or null if it must stay symbolic.
+         */
+        private static Polynomial pow(final Polynomial base, final int exponent) {
+            if (exponent == 1) {
+                return base;
+            }
+            final int terms = base.terms.size();
+            if ((long) base.degree() * exponent > Integer.MAX_VALUE
+                    || powerTerms(terms, exponent) > Math.max(EngineConstants.getMaxExpandedTerms(), terms)) {
+                return null;
+            }
+            // the coefficients are sums of products of powers of the coefficients, at most terms^exponent of them
+            final long sumBits = Long.SIZE - Long.numberOfLeadingZeros(terms - 1L);
+            final BigInteger e = BigInteger.valueOf(exponent);
+            for (final Rational c : base.terms.values()) {
+                final long bits = Powers.estimateBits(c, e);
+                if (bits > EngineConstants.getMaxFoldedPowerBits()
+                        || sumBits * exponent > EngineConstants.getMaxFoldedPowerBits() - bits) {
+                    return null;
+                }
+            }
+            return base.pow(exponent);
+        }
+
+        /**
+         * Multiplies the given polynomials, unless the result would have too many terms or a degree not fitting an int.
+         *
+         * @return The product, or null if it must stay symbolic.
+         */
+        private static Polynomial multiply(final Polynomial a, final Polynomial b) {
+            final long terms = (long) a.terms.size() * b.terms.size();
+            if ((long) a.degree() + b.degree() > Integer.MAX_VALUE
+                    || terms
+                            > Math.max(EngineConstants.getMaxExpandedTerms(), (long) a.terms.size() + b.terms.size())) {
+                return null;
+            }
+            return a.multiply(b);
+        }
+
+        /**
+         * Returns an upper bound to the number of terms of a polynomial with the given number of terms raised to the
+         * given power, which is the number of monomials of that degree in that many variables.
+         */
+        private static long powerTerms(final int terms, final int exponent) {
+            if (exponent == 0) {
+                return 1L;
+            }
+            if (terms <= 1) {
+                return terms;
+            }
+            // C(exponent + terms - 1, terms - 1), which grows at each step, so it saturates quickly
+            final int k = Math.min(exponent, terms - 1);
+            final long n = (long) exponent + terms - 1L;
+            double bound = 1.0;
+            for (int i = 1; i <= k && bound < Long.MAX_VALUE; i++) {
+                bound = bound * (n - k + i) / i;
+            }
+            return bound >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) Math.ceil(bound);
+        }
+    }
+
+    /** Replaces each power of the imaginary unit above 1 with its value, which is 1, i, -1 or -i. */
+    private Polynomial foldImaginaryUnit() {
+        final int unit = variables.find(EngineConstants.getImaginaryUnit());
+        if (unit < 0) {
+            return this;
+        }
+        final Map<Monomial, Rational> result = new HashMap<>(terms.size() * 2);
+        for (final Map.Entry<Monomial, Rational> e : terms.entrySet()) {
+            final int k = e.getKey().exponent(unit);
+            if (k < 2) {
+                Multiplication.accumulate(result, e.getKey(), e.getValue());
+                continue;
+            }
+            // the powers of i are reduced modulo 4, so they always fold
+            final GaussianRational power = Powers.fold(
+                    GaussianRational.I, BigInteger.valueOf(k), EngineConstants.getMaxFoldedPowerBits());
+            Multiplication.accumulate(
+                    result,
+                    e.getKey().withExponent(unit, power.isReal() ? 0 : 1),
+                    e.getValue().multiply(power.isReal() ? power.real() : power.imaginary()));
+        }
+        return new Polynomial(variables, result);
+    }
+
+    private void checkVariables(final Polynomial other) {
+        if (this.variables != other.variables) {
+            throw new IllegalArgumentException("Polynomials over different variables");
+        }
+    }
+
+    public Polynomial add(final Polynomial other) {
+        checkVariables(other);
+        final Map<Monomial, Rational> result = new HashMap<>(this.terms);
+        for (final Map.Entry<Monomial, Rational> e : other.terms.entrySet()) {
+            Multiplication.accumulate(result, e.getKey(), e.getValue());
+        }
+        return new Polynomial(variables, result);
+    }
+
+    public Polynomial negate() {
+        final Map<Monomial, Rational> result = new HashMap<>(terms.size() * 2);
+        for (final Map.Entry<Monomial, Rational> e : terms.entrySet()) {
+            result.put(e.getKey(), e.getValue().negate());
+        }
+        return new Polynomial(variables, result);
+    }
+
+    public Polynomial multiply(final Polynomial other) {
+        return multiply(other, MultiplicationAlgorithm.AUTOMATIC);
+    }
+
+    /**
+     * Multiplies this polynomial by the given one with the given algorithm. The dense algorithms fall back to
+     * {@link MultiplicationAlgorithm#SCHOOLBOOK} when the dense arrays would be too long.
+     *
+     * @param other The other factor.
+     * @param algorithm The algorithm to use.
+     * @return The product.
+     */
+    public Polynomial multiply(final Polynomial other, final MultiplicationAlgorithm algorithm) {
+        checkVariables(other);
+        Objects.requireNonNull(algorithm);
+        return new Polynomial(variables, Multiplication.multiply(this.terms, other.terms, algorithm));
+    }
+
+    /**
+     * Raises this polynomial to the given power. Binomials are expanded directly with the binomial theorem, other
+     * polynomials by repeated squaring.
+     *
+     * @param exponent The non-negative exponent.
+     * @return This polynomial raised to the given power.
+     */
+    public Polynomial pow(final int exponent) {
+        return pow(exponent, MultiplicationAlgorithm.AUTOMATIC);
+    }
+
+    public Polynomial pow(final int exponent, final MultiplicationAlgorithm algorithm) {
+        if (exponent < 0) {
+            throw new IllegalArgumentException(String.format("Negative exponent: %,d", exponent));
+        }
+        Objects.requireNonNull(algorithm);
+        return new Polynomial(variables, Multiplication.pow(terms, exponent, algorithm));
+    }
+
+    public boolean isZero() {
+        return terms.isEmpty();
+    }
+
+    public int getNumTerms() {
+        return terms.size();
+    }
+
+    /**
+     * Returns the highest total degree of the terms of this polynomial.
+     *
+     * @return The degree, or -1 for the zero polynomial.
+     */
+    public int degree() {
+        int degree = -1;
+        for (final Monomial m : terms.keySet()) {
+            degree = Math.max(degree, m.degree());
+        }
+        return degree;
+    }
+
+    /**
+     * Converts this polynomial back into a tree, with the terms sorted by decreasing degree.
+     *
+     * @return The tree of this polynomial.
+     */
+    public Node toNode() {
+        if (terms.isEmpty()) {
+            return ConstantNode.of(0);
+        }
+        final List<Monomial> monomials = new ArrayList<>(terms.keySet());
+        monomials.sort(null);
+        final List<Node> addends = new ArrayList<>(monomials.size());
+        for (final Monomial m : monomials) {
+            addends.add(term(terms.get(m), m));
+        }
+        return addends.size() == 1 ? addends.getFirst() : NodeFactory.plus(addends);
+    }
+
+    private Node term(final Rational coefficient, final Monomial m) {
+        final List<Node> factors = new ArrayList<>();
+        if (!coefficient.equals(Rational.ONE) || m.size() == 0) {
+            factors.add(coefficient.toNode());
+        }
+        for (int k = 0; k < m.size(); k++) {
+            final int e = m.exponentAt(k);
+            final Node v = variables.get(m.variableAt(k));
+            factors.add(e == 1 ? v : NodeFactory.power(v, ConstantNode.of(e)));
+        }
+        return factors.size() == 1 ? factors.getFirst() : NodeFactory.multiply(factors);
+    }
+
+    @Override
+    public String toString() {
+        return toNode().toExpression();
+    }
+}
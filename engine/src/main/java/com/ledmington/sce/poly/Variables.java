@@ -0,0 +1,52 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.poly;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ledmington.sce.nodes.Node;
+
+/**
+ * The variables shared by a set of polynomials. A variable is any subtree that is not itself polynomial, like a
+ * {@link com.ledmington.sce.nodes.VariableNode} or {@code x/y}. Variables are only ever appended, so the indices in
+ * existing monomials stay valid.
+ */
+final class Variables {
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    int indexOf(final Node variable) {
+        return indices.computeIfAbsent(variable, v -> {
+            nodes.add(v);
+            return nodes.size() - 1;
+        });
+    }
+
+    /** Returns the index of the given variable, or -1 if it was never registered. */
+    int find(final Node variable) {
+        return indices.getOrDefault(variable, -1);
+    }
+
+    Node get(final int index) {
+        return nodes.get(index);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.tokens;
+
+/**
+ * The error thrown by the tokenizer and the parser when the input is not a valid expression. Callers handling many
+ * inputs can catch it to report the invalid ones without catching other errors, which leave the JVM in an unknown
+ * state.
+ */
+public final class ParseError extends Error {
+
+    private static final long serialVersionUID = 1L;
+
+    public ParseError(final String message) {
+        super(message);
+    }
+}
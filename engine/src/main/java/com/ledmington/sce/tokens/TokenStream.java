@@ -0,0 +1,174 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.tokens;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A compact sequence of tokens, stored as primitive kind codes and ranges over the source text. Literal values and
+ * names are materialized only when requested.
+ */
+public final class TokenStream {
+
+    /** The kind code of integer literals. Symbols use their ordinal as kind code. */
+    public static final int INTEGER_LITERAL = -1;
+
+    /** The kind code of names. Symbols use their ordinal as kind code. */
+    public static final int NAME = -2;
+
+    private static final Symbols[] SYMBOLS = Symbols.values();
+
+    // the longest decimal literal which surely fits in a long
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final CharSequence source;
+    private int[] kinds = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size = 0;
+
+    TokenStream(final CharSequence source) {
+        this.source = Objects.requireNonNull(source);
+    }
+
+    void add(final int kind, final int start, final int end) {
+        if (size == kinds.length) {
+            final int newLength = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, newLength);
+            starts = Arrays.copyOf(starts, newLength);
+            ends = Arrays.copyOf(ends, newLength);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(final int idx) {
+        Objects.checkIndex(idx, size);
+    }
+
+    public int kind(final int idx) {
+        checkIndex(idx);
+        return kinds[idx];
+    }
+
+    /**
+     * Returns the offset in the source of the first character of the given token.
+     *
+     * @param idx The index of the token.
+     * @return The offset of the first character, inclusive.
+     */
+    public int start(final int idx) {
+        checkIndex(idx);
+        return starts[idx];
+    }
+
+    /**
+     * Returns the offset in the source after the last character of the given token.
+     *
+     * @param idx The index of the token.
+     * @return The offset of the last character, exclusive.
+     */
+    public int end(final int idx) {
+        checkIndex(idx);
+        return ends[idx];
+    }
+
+    public boolean isSymbol(final int idx, final Symbols s) {
+        checkIndex(idx);
+        return kinds[idx] == s.ordinal();
+    }
+
+    private void checkIntegerLiteral(final int idx) {
+        checkIndex(idx);
+        if (kinds[idx] != INTEGER_LITERAL) {
+            throw new IllegalArgumentException(String.format("Token %,d is not an integer literal", idx));
+        }
+    }
+
+    /**
+     * Checks whether the given integer literal is short enough to be read with {@link #longValue(int)}.
+     *
+     * @param idx The index of the token.
+     * @return True if the literal fits in a {@code long}, false otherwise.
+     */
+    public boolean fitsInLong(final int idx) {
+        checkIntegerLiteral(idx);
+        return ends[idx] - starts[idx] <= MAX_LONG_DIGITS;
+    }
+
+    public long longValue(final int idx) {
+        checkIntegerLiteral(idx);
+        return Long.parseLong(source, starts[idx], ends[idx], 10);
+    }
+
+    public BigInteger integerValue(final int idx) {
+        checkIntegerLiteral(idx);
+        if (ends[idx] - starts[idx] <= MAX_LONG_DIGITS) {
+            return BigInteger.valueOf(Long.parseLong(source, starts[idx], ends[idx], 10));
+        }
+        return new BigInteger(source.subSequence(starts[idx], ends[idx]).toString(), 10);
+    }
+
+    public String name(final int idx) {
+        checkIndex(idx);
+        if (kinds[idx] != NAME) {
+            throw new IllegalArgumentException(String.format("Token %,d is not a name", idx));
+        }
+        return source.subSequence(starts[idx], ends[idx]).toString();
+    }
+
+    /**
+     * Materializes the given token as an object.
+     *
+     * @param idx The index of the token.
+     * @return The token.
+     */
+    public Token get(final int idx) {
+        checkIndex(idx);
+        return switch (kinds[idx]) {
+            case INTEGER_LITERAL -> new IntegerLiteral(integerValue(idx));
+            case NAME -> new Name(name(idx));
+            default -> SYMBOLS[kinds[idx]];
+        };
+    }
+
+    /**
+     * Materializes all the tokens as objects.
+     *
+     * @return The tokens.
+     */
+    public Token[] toArray() {
+        final Token[] tokens = new Token[size];
+        for (int i = 0; i < size; i++) {
+            tokens[i] = get(i);
+        }
+        return tokens;
+    }
+}
@@ -17,81 +17,82 @@
  */
 package com.ledmington.sce.tokens;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * Splits the input text into tokens. Each call works on its own state, so tokenization can run concurrently on many
+ * threads.
+ */
 public final class Tokenizer {
 
-    private static char[] v;
-    private static int i;
+    private final CharSequence v;
+    private final TokenStream tokens;
+    private int i;
 
-    private Tokenizer() {}
+    private Tokenizer(final CharSequence input) {
+        this.v = input;
+        this.tokens = new TokenStream(input);
+        this.i = 0;
+    }
 
     public static Token[] tokenize(final String input) {
-        final List<Token> tokens = new ArrayList<>();
-        v = input.toCharArray();
-        i = 0;
-        while (i < v.length) {
-            final char ch = v[i];
+        return tokenizeCompact(input).toArray();
+    }
+
+    /**
+     * Splits the given input into a compact stream of tokens, without creating an object for each token.
+     *
+     * @param input The text to be tokenized.
+     * @return The stream of tokens.
+     */
+    public static TokenStream tokenizeCompact(final CharSequence input) {
+        final Tokenizer t = new Tokenizer(input);
+        t.run();
+        return t.tokens;
+    }
+
+    private void symbol(final Symbols s) {
+        tokens.add(s.ordinal(), i, i + 1);
+        i++;
+    }
+
+    private void run() {
+        final int length = v.length();
+        while (i < length) {
+            final char ch = v.charAt(i);
             switch (ch) {
-                case '(' -> {
-                    tokens.add(Symbols.LEFT_BRACKET);
-                    i++;
-                }
-                case ')' -> {
-                    tokens.add(Symbols.RIGHT_BRACKET);
-                    i++;
-                }
-                case '+' -> {
-                    tokens.add(Symbols.PLUS);
-                    i++;
-                }
-                case '-' -> {
-                    tokens.add(Symbols.MINUS);
-                    i++;
-                }
-                case '*' -> {
-                    tokens.add(Symbols.ASTERISK);
-                    i++;
-                }
-                case '/' -> {
-                    tokens.add(Symbols.SLASH);
-                    i++;
-                }
-                case '^' -> {
-                    tokens.add(Symbols.CARET);
-                    i++;
-                }
+                case '(' -> symbol(Symbols.LEFT_BRACKET);
+                case ')' -> symbol(Symbols.RIGHT_BRACKET);
+                case '+' -> symbol(Symbols.PLUS);
+                case '-' -> symbol(Symbols.MINUS);
+                case '*' -> symbol(Symbols.ASTERISK);
+                case '/' -> symbol(Symbols.SLASH);
+                case '^' -> symbol(Symbols.CARET);
                 default -> {
                     if (Character.isDigit(ch)) {
-                        tokens.add(readIntegerLiteral());
+                        readIntegerLiteral();
                     } else if (Character.isAlphabetic(ch)) {
-                        tokens.add(readName());
+                        readName();
                     } else {
-                        throw new Error(String.format("Unknown character '%c'", ch));
+                        throw new ParseError(String.format("Unknown character '%c' at offset %,d", ch, i));
                     }
                 }
             }
         }
-        return tokens.toArray(new Token[0]);
     }
 
-    private static IntegerLiteral readIntegerLiteral() {
-        final StringBuilder sb = new StringBuilder(10);
-        while (i < v.length && Character.isDigit(v[i])) {
-            sb.append(v[i]);
+    private void readIntegerLiteral() {
+        final int start = i;
+        while (i < v.length() && Character.isDigit(v.charAt(i))) {
             i++;
         }
-        return new IntegerLiteral(new BigInteger(sb.toString(), 10));
+        tokens.add(TokenStream.INTEGER_LITERAL, start, i);
     }
 
-    private static Name readName() {
-        final StringBuilder sb = new StringBuilder();
-        while (i < v.length && (Character.isAlphabetic(v[i]) || Character.isDigit(v[i]) || v[i] == '_')) {
-            sb.append(v[i]);
+    private void readName() {
+        final int start = i;
+        while (i < v.length()
+                && (Character.isAlphabetic(v.charAt(i)) || Character.isDigit(v.charAt(i)) || v.charAt(i) == '_')) {
             i++;
         }
-        return new Name(sb.toString());
+        tokens.add(TokenStream.NAME, start, i);
     }
 }
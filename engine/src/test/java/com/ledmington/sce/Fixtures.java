@@ -0,0 +1,136 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.provider.Arguments;
+
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.tokens.Tokenizer;
+
+/** Inputs and checks shared by the tests of several components. */
+final class Fixtures {
+
+    /** The variables of the numeric expressions, in the order of their values. */
+    static final List<String> XY = List.of("x", "y");
+
+    /** The value of x where the numeric expressions are evaluated. */
+    static final double X = 1.5;
+
+    /** The value of y where the numeric expressions are evaluated. */
+    static final double Y = -2.0;
+
+    private Fixtures() {}
+
+    static Node parse(final String expression) {
+        return Parser.parse(Tokenizer.tokenize(expression));
+    }
+
+    /** Expressions in x and y, each with its value at ({@link #X}, {@link #Y}), which every evaluator must agree on. */
+    static Stream<Arguments> numericExpressions() {
+        final double x = X;
+        final double y = Y;
+        return Stream.of(
+                Arguments.of("3", 3.0),
+                Arguments.of("x", x),
+                Arguments.of("3/4", 0.75),
+                Arguments.of("x+y+x", x + y + x),
+                Arguments.of("x^2+2*x*y-3/4", x * x + 2 * x * y - 0.75),
+                Arguments.of("(x+1)/(y-2)", (x + 1) / (y - 2)),
+                Arguments.of("x^(1/2)", Math.sqrt(x)),
+                Arguments.of("y^-3", 1.0 / (y * y * y)),
+                Arguments.of("x^y", Math.pow(x, y)),
+                Arguments.of("-(x*y)^3", -Math.pow(x * y, 3)),
+                Arguments.of("x*x*x+y*y*y+x*y*(x+y)", x * x * x + y * y * y + x * y * (x + y)),
+                Arguments.of("x^0+y^1+x^2*y^7", 1.0 + y + x * x * Math.pow(y, 7)),
+                Arguments.of("x^(1/2)*y^-3", Math.sqrt(x) / (y * y * y)),
+                Arguments.of("(x*y+1)^70", Math.pow(x * y + 1, 70)),
+                Arguments.of("x*x*x*y*y+x/y", x * x * x * y * y + x / y),
+                Arguments.of("((x+y)^3-x)/(x*y)^2", (Math.pow(x + y, 3) - x) / Math.pow(x * y, 2)),
+                Arguments.of("(x/5)^70+(y/5)^-65", Math.pow(x / 5, 70) + Math.pow(y / 5, -65)));
+    }
+
+    /**
+     * Builds f(k) = (f(k-1)+1)*(f(k-1)+x) with f(0) = x, whose tree has about 2^k nodes but whose DAG has a few nodes
+     * per level. Since -1/2 is a fixed point of every level, the value at x = -1/2 stays finite at any depth.
+     *
+     * @param levels The number of levels.
+     * @return The root of the product.
+     */
+    static Node nestedProduct(final int levels) {
+        final Node x = NodeFactory.variable("x");
+        Node f = x;
+        for (int k = 0; k < levels; k++) {
+            f = NodeFactory.multiply(
+                    NodeFactory.bracket(NodeFactory.plus(f, NodeFactory.constant(1))),
+                    NodeFactory.bracket(NodeFactory.plus(f, x)));
+        }
+        return f;
+    }
+
+    /**
+     * Returns the derivative of {@link #nestedProduct(int)} at x = -1/2. Since every level is -1/2 there, the
+     * derivative d(k) = d(k-1)*(f+x) + (f+1)*(d(k-1)+1) is -d(k-1) + (d(k-1)+1)/2, starting from d(0) = 1.
+     *
+     * @param levels The number of levels.
+     * @return The derivative at x = -1/2.
+     */
+    static double nestedProductDerivative(final int levels) {
+        double d = 1.0;
+        for (int k = 0; k < levels; k++) {
+            d = -d + (d + 1.0) / 2.0;
+        }
+        return d;
+    }
+
+    /** Expressions which the search engines must simplify at least as well as {@link Engine#normalize(Node)}. */
+    static Stream<String> greedyInputs() {
+        return Stream.of(
+                "1+2",
+                "(2+3)*4",
+                "1/2+1/3",
+                "(2/3)/(4/5)",
+                "x+3+x",
+                "x*3*x",
+                "2*(3/x)",
+                "1+x+2+x",
+                "(1/2)*(3-4)^2",
+                "i^7");
+    }
+
+    /**
+     * Checks that the given simplification of the given input is not larger than its greedy normal form.
+     *
+     * @param input The input.
+     * @param simplified The simplified tree.
+     */
+    static void assertNotWorseThanGreedy(final String input, final Node simplified) {
+        final Node greedy = Engine.normalize(parse(input));
+        assertTrue(
+                simplified.size() <= greedy.size(),
+                () -> String.format(
+                        "Expected at most %,d nodes but '%s' has %,d",
+                        greedy.size(), simplified.toExpression(), simplified.size()));
+    }
+}
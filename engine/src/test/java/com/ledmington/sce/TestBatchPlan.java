@@ -0,0 +1,161 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static com.ledmington.sce.Fixtures.X;
+import static com.ledmington.sce.Fixtures.XY;
+import static com.ledmington.sce.Fixtures.Y;
+import static com.ledmington.sce.Fixtures.nestedProduct;
+import static com.ledmington.sce.Fixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.ledmington.sce.eval.BatchPlan;
+import com.ledmington.sce.eval.CompiledExpression;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+
+final class TestBatchPlan {
+
+    // a size which is not a multiple of the block or of any vector length
+    private static final int N = 2_503;
+
+    /** Checks the plan against the scalar evaluation on random points with x in [0.5, 4.5) and y in [-4, -1). */
+    private static void assertMatchesCompiledExpression(final Node root, final int n) {
+        final Random rng = new Random(42);
+        final double[] xs = new double[n];
+        final double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = 0.5 + rng.nextDouble() * 4.0;
+            ys[i] = -4.0 + rng.nextDouble() * 3.0;
+        }
+        final CompiledExpression ce = CompiledExpression.compile(root, XY);
+        final double[] actual = BatchPlan.compile(root, XY).evaluate(xs, ys);
+        assertEquals(n, actual.length);
+        for (int i = 0; i < n; i++) {
+            final double expected = ce.evaluate(xs[i], ys[i]);
+            // large powers may be rounded differently
+            assertEquals(expected, actual[i], Math.max(1e-9, Math.abs(expected) * 1e-12), "at point " + i);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#numericExpressions")
+    void matchesCompiledExpression(final String expression) {
+        assertMatchesCompiledExpression(parse(expression), N);
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#numericExpressions")
+    void singlePoint(final String expression, final double expected) {
+        final double[] out = BatchPlan.compile(parse(expression), XY).evaluate(new double[] {X}, new double[] {Y});
+        assertEquals(expected, out[0], Math.max(1.0, Math.abs(expected)) * 1e-12);
+    }
+
+    @ParameterizedTest
+    // around the vector lengths and the block size
+    @ValueSource(ints = {1, 2, 3, 5, 7, 9, 15, 17, 1_023, 1_025, 2_047, 2_049})
+    void oddLengths(final int n) {
+        assertMatchesCompiledExpression(parse("(x+1)/(y-2)*x^3-y^70+x^(1/2)"), n);
+    }
+
+    @Test
+    void wideSumsReuseRegisters() {
+        final int n = 10_000;
+        final String expression = IntStream.range(0, n).mapToObj(i -> i + "*x").collect(Collectors.joining("+"));
+        final BatchPlan plan = BatchPlan.compile(parse(expression), List.of("x"));
+        assertTrue(plan.registers() <= 4, () -> plan.registers() + " registers");
+        final double[] out = plan.evaluate(new double[] {0.5, 1.0});
+        assertEquals((double) n * (n - 1) / 2.0 * 0.5, out[0], 1e-6);
+        assertEquals((double) n * (n - 1) / 2.0, out[1], 1e-6);
+    }
+
+    @Test
+    void deepProductsReuseRegisters() {
+        // x*(x+1)*(x+2)*... nests one product per factor
+        final int n = 200;
+        Node root = NodeFactory.variable("x");
+        for (int i = 1; i < n; i++) {
+            root = NodeFactory.multiply(
+                    root, NodeFactory.bracket(NodeFactory.plus(NodeFactory.variable("x"), NodeFactory.constant(i))));
+        }
+        final BatchPlan plan = BatchPlan.compile(root, List.of("x"));
+        final Node r = root;
+        assertTrue(plan.registers() <= 4, () -> plan.registers() + " registers for " + r.toExpression());
+        // the factor x+7 vanishes
+        assertEquals(0.0, Math.abs(plan.evaluate(new double[] {-7.0})[0]));
+    }
+
+    @Test
+    void sharedSubexpressionsAreComputedOnce() {
+        final int levels = 60;
+        final BatchPlan plan = assertTimeoutPreemptively(
+                Duration.ofSeconds(5), () -> BatchPlan.compile(nestedProduct(levels), List.of("x")));
+        assertTrue(plan.size() <= 10 * levels, () -> plan.size() + " instructions");
+        assertTrue(plan.registers() <= 4, () -> plan.registers() + " registers");
+        final double[] xs = new double[N];
+        Arrays.fill(xs, -0.5);
+        for (final double v : plan.evaluate(xs)) {
+            assertEquals(-0.5, v);
+        }
+    }
+
+    @Test
+    void sharedSubexpressionsMatchCompiledExpression() {
+        assertMatchesCompiledExpression(nestedProduct(3), N);
+    }
+
+    @Test
+    void emptyColumns() {
+        assertArrayEquals(
+                new double[0], BatchPlan.compile(parse("x+1"), List.of("x")).evaluate(new double[0]));
+    }
+
+    @Test
+    void usesVectorKernel() {
+        // the tests run with the incubator module added
+        assertEquals("vector", BatchPlan.kernel());
+    }
+
+    @Test
+    void rejectsUnknownVariables() {
+        assertThrows(IllegalArgumentException.class, () -> BatchPlan.compile(parse("x+z"), XY));
+    }
+
+    @Test
+    void rejectsMismatchedColumns() {
+        final BatchPlan plan = BatchPlan.compile(parse("x+y"), XY);
+        assertThrows(IllegalArgumentException.class, () -> plan.evaluate(new double[2], new double[3]));
+        assertThrows(IllegalArgumentException.class, () -> plan.evaluate(new double[2]));
+    }
+}
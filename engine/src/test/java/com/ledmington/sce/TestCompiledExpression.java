@@ -0,0 +1,145 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static com.ledmington.sce.Fixtures.X;
+import static com.ledmington.sce.Fixtures.XY;
+import static com.ledmington.sce.Fixtures.Y;
+import static com.ledmington.sce.Fixtures.nestedProduct;
+import static com.ledmington.sce.Fixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.eval.CompiledExpression;
+import com.ledmington.sce.eval.ExpressionCompiler;
+import com.ledmington.sce.nodes.Node;
+
+final class TestCompiledExpression {
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#numericExpressions")
+    void doubles(final String expression, final double expected) {
+        assertEquals(
+                expected,
+                CompiledExpression.compile(parse(expression), XY).evaluate(X, Y),
+                Math.max(1.0, Math.abs(expected)) * 1e-12);
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#numericExpressions")
+    void decimalsMatchDoubles(final String expression, final double expected) {
+        if (expression.contains("x^y")) {
+            // real exponents have no decimal version
+            return;
+        }
+        final double actual = CompiledExpression.compile(parse(expression), XY)
+                .evaluate(new MathContext(30), BigDecimal.valueOf(X), BigDecimal.valueOf(Y))
+                .doubleValue();
+        assertEquals(expected, actual, Math.max(1.0, Math.abs(expected)) * 1e-12);
+    }
+
+    @Test
+    void wideSums() {
+        final int n = 10_000;
+        final String expression = IntStream.range(0, n).mapToObj(i -> i + "*x").collect(Collectors.joining("+"));
+        final CompiledExpression ce = CompiledExpression.compile(parse(expression), List.of("x"));
+        assertEquals((double) n * (n - 1) / 2.0 * 0.5, ce.evaluate(0.5), 1e-6);
+    }
+
+    @Test
+    void decimals() {
+        final MathContext mc = new MathContext(40);
+        final CompiledExpression ce = CompiledExpression.compile(parse("1/3+x^(1/2)*y"), XY);
+        final BigDecimal expected = BigDecimal.ONE
+                .divide(BigDecimal.valueOf(3), mc)
+                .add(BigDecimal.TWO.sqrt(mc).multiply(BigDecimal.TEN, mc), mc);
+        assertEquals(
+                expected.round(new MathContext(35)),
+                ce.evaluate(mc, BigDecimal.TWO, BigDecimal.TEN).round(new MathContext(35)));
+    }
+
+    @Test
+    void largeIntegerExponents() {
+        final CompiledExpression ce = CompiledExpression.compile(parse("x^1000000000"), List.of("x"));
+        assertEquals(1.105170927214347, ce.evaluate(1.0000000001), 1e-15);
+    }
+
+    @Test
+    void negativeIntegerExponentsDoNotOverflowEarly() {
+        // 1e5^62 overflows, while its reciprocal is still a subnormal double
+        final CompiledExpression ce = CompiledExpression.compile(parse("x^-62"), List.of("x"));
+        assertEquals(1e-310, ce.evaluate(1e5), 1e-320);
+    }
+
+    @Test
+    void sharedSubexpressionsAreEvaluatedOnce() {
+        final Node f = nestedProduct(60);
+        final CompiledExpression ce =
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> CompiledExpression.compile(f, List.of("x")));
+        assertEquals(-0.5, assertTimeoutPreemptively(Duration.ofSeconds(5), () -> ce.evaluate(-0.5)));
+        assertEquals(
+                new BigDecimal("-0.5"),
+                assertTimeoutPreemptively(
+                                Duration.ofSeconds(5), () -> ce.evaluate(new MathContext(20), new BigDecimal("-0.5")))
+                        .stripTrailingZeros());
+        // (x+1)*(x+x) at x = 2
+        assertEquals(
+                12.0, CompiledExpression.compile(nestedProduct(1), List.of("x")).evaluate(2.0));
+        // ((x+1)*(x+x)+1)*((x+1)*(x+x)+x) at x = 2
+        assertEquals(
+                182.0,
+                CompiledExpression.compile(nestedProduct(2), List.of("x")).evaluate(2.0));
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile(parse("x+z"), XY));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile(parse("x"), List.of("x", "x")));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile(parse("x"), XY)
+                .evaluate(1.0));
+        assertThrows(IllegalArgumentException.class, () -> CompiledExpression.compile(parse("x^y"), XY)
+                .evaluate(new MathContext(10), BigDecimal.ONE, BigDecimal.ONE));
+    }
+
+    @Test
+    void caching() {
+        final ExpressionCompiler compiler = new ExpressionCompiler(2);
+        final CompiledExpression a = compiler.compile(parse("x+y"), XY);
+        assertSame(a, compiler.compile(parse("y+x"), XY));
+        assertNotSame(a, compiler.compile(parse("x+y"), List.of("y", "x")));
+        compiler.compile(parse("x*y"), XY);
+        assertEquals(2, compiler.size());
+        assertEquals(1L, compiler.hits());
+        assertEquals(3L, compiler.misses());
+        assertNotSame(a, compiler.compile(parse("x+y"), XY));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.NodeFactory;
+
+final class TestConstantNode {
+
+    private static Stream<Arguments> pairs() {
+        final long[] values = {
+            0L,
+            1L,
+            -1L,
+            2L,
+            -7L,
+            12L,
+            3_037_000_499L,
+            3_037_000_500L,
+            Integer.MAX_VALUE,
+            Integer.MIN_VALUE,
+            Long.MAX_VALUE,
+            Long.MAX_VALUE - 1L,
+            Long.MIN_VALUE,
+            Long.MIN_VALUE + 1L
+        };
+        return Stream.of(values).flatMapToLong(Arrays::stream).boxed().flatMap(a -> Stream.of(values)
+                .flatMapToLong(Arrays::stream)
+                .mapToObj(b -> Arguments.of(a, b)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("pairs")
+    void matchesBigInteger(final long a, final long b) {
+        final ConstantNode x = NodeFactory.constant(a);
+        final ConstantNode y = NodeFactory.constant(b);
+        final BigInteger bx = BigInteger.valueOf(a);
+        final BigInteger by = BigInteger.valueOf(b);
+
+        assertEquals(NodeFactory.constant(bx.add(by)), x.add(y));
+        assertEquals(NodeFactory.constant(bx.multiply(by)), x.multiply(y));
+        assertEquals(NodeFactory.constant(bx.gcd(by)), x.gcd(y));
+        assertEquals(NodeFactory.constant(bx.negate()), x.negate());
+        if (b != 0L) {
+            assertEquals(NodeFactory.constant(bx.divide(by)), x.divide(y));
+        }
+    }
+
+    @Test
+    void promotesOnOverflow() {
+        final ConstantNode max = NodeFactory.constant(Long.MAX_VALUE);
+        assertTrue(max.isSmall());
+        assertFalse(max.add(ConstantNode.of(1)).isSmall());
+        assertFalse(ConstantNode.of(3).pow(40).isSmall());
+        assertEquals(BigInteger.valueOf(3).pow(40), ConstantNode.of(3).pow(40).value());
+        assertEquals(NodeFactory.constant(1L << 62), ConstantNode.of(2).pow(62));
+    }
+
+    @Test
+    void representationIsCanonical() {
+        final ConstantNode fromBig = new ConstantNode(BigInteger.valueOf(Long.MIN_VALUE));
+        assertTrue(fromBig.isSmall());
+        assertEquals(new ConstantNode(Long.MIN_VALUE), fromBig);
+        assertEquals(new ConstantNode(Long.MIN_VALUE).hashCode(), fromBig.hashCode());
+    }
+}
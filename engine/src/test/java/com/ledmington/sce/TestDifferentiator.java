@@ -0,0 +1,231 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static com.ledmington.sce.Fixtures.X;
+import static com.ledmington.sce.Fixtures.XY;
+import static com.ledmington.sce.Fixtures.Y;
+import static com.ledmington.sce.Fixtures.nestedProduct;
+import static com.ledmington.sce.Fixtures.nestedProductDerivative;
+import static com.ledmington.sce.Fixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.diff.Differentiator;
+import com.ledmington.sce.eval.CompiledExpression;
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.EquationNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.PowerNode;
+
+final class TestDifferentiator {
+
+    private static double evaluate(final Node n) {
+        return CompiledExpression.compile(n, XY).evaluate(X, Y);
+    }
+
+    /** The number of distinct nodes, counting shared subtrees once. */
+    private static int dagSize(final Node root) {
+        final Set<Node> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Deque<Node> stack = new ArrayDeque<>(List.of(root));
+        while (!stack.isEmpty()) {
+            final Node n = stack.pop();
+            if (!seen.add(n)) {
+                continue;
+            }
+            switch (n) {
+                case MultiNode mn -> {
+                    for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+                        stack.push(mn.getDistinctChild(i));
+                    }
+                }
+                case BracketNode bn -> stack.push(bn.inner());
+                case FractionNode fn -> {
+                    stack.push(fn.numerator());
+                    stack.push(fn.denominator());
+                }
+                case PowerNode pn -> {
+                    stack.push(pn.base());
+                    stack.push(pn.exponent());
+                }
+                case EquationNode en -> {
+                    stack.push(en.lhs());
+                    stack.push(en.rhs());
+                }
+                default -> {}
+            }
+        }
+        return seen.size();
+    }
+
+    private static Stream<Arguments> derivatives() {
+        return Stream.of(
+                Arguments.of("3", 0.0),
+                Arguments.of("y", 0.0),
+                Arguments.of("x", 1.0),
+                Arguments.of("x+x+y", 2.0),
+                Arguments.of("x^3*y+x/y", 3 * X * X * Y + 1 / Y),
+                Arguments.of("x*x*x*y*y", 3 * X * X * Y * Y),
+                Arguments.of("(x+1)/(x-y)", ((X - Y) - (X + 1)) / ((X - Y) * (X - Y))),
+                Arguments.of("y/x^2", -2 * Y / (X * X * X)),
+                Arguments.of("(x^2+y)^(1/2)", X / Math.sqrt(X * X + Y)),
+                Arguments.of("(x*y+1)^y", Y * Math.pow(X * Y + 1, Y - 1) * Y));
+    }
+
+    @ParameterizedTest
+    @MethodSource("derivatives")
+    void derivatives(final String expression, final double expected) {
+        assertEquals(expected, evaluate(new Differentiator().derivative(parse(expression), "x")), 1e-9);
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#numericExpressions")
+    void matchesFiniteDifferences(final String expression) {
+        final Node root = parse(expression);
+        final CompiledExpression ce = CompiledExpression.compile(root, XY);
+        final double h = 1e-6;
+        final double numeric = (ce.evaluate(X + h, Y) - ce.evaluate(X - h, Y)) / (2 * h);
+        final double symbolic = evaluate(new Differentiator().derivative(root, "x"));
+        assertEquals(numeric, symbolic, Math.max(1.0, Math.abs(numeric)) * 1e-6);
+    }
+
+    @Test
+    void higherOrder() {
+        final Differentiator d = new Differentiator();
+        assertEquals(60 * X * X, evaluate(d.derivative(parse("x^5+y*x"), "x", 3)), 1e-9);
+        assertEquals(parse("x^5+y*x"), d.derivative(parse("x^5+y*x"), "x", 0));
+    }
+
+    @Test
+    void gradient() {
+        final List<Node> g = new Differentiator().gradient(parse("x^2*y+y^3"), XY);
+        assertEquals(2 * X * Y, evaluate(g.get(0)), 1e-9);
+        assertEquals(X * X + 3 * Y * Y, evaluate(g.get(1)), 1e-9);
+    }
+
+    @Test
+    void nestedProductsStayLinear() {
+        final int levels = 60;
+        final Node f = nestedProduct(levels);
+        final Node derivative = new Differentiator().derivative(f, "x");
+        // the trees have about 2^60 nodes, so their sizes saturate instead of wrapping around
+        assertEquals(Integer.MAX_VALUE, f.size());
+        assertEquals(Integer.MAX_VALUE, derivative.size());
+        final int half = dagSize(new Differentiator().derivative(nestedProduct(levels / 2), "x"));
+        final int full = dagSize(derivative);
+        assertTrue(full <= 20 * levels, () -> "DAG of " + full + " nodes");
+        // each level adds the same number of nodes
+        assertTrue(full <= 2 * half + 20, () -> "DAG of " + half + " nodes at half depth and " + full + " at full");
+    }
+
+    @Test
+    void deepDerivativesCanBeEvaluated() {
+        final int levels = 40;
+        final Node derivative = assertTimeoutPreemptively(
+                Duration.ofSeconds(5), () -> new Differentiator().derivative(nestedProduct(levels), "x"));
+        assertTrue(derivative.size() > 0);
+        final CompiledExpression ce = assertTimeoutPreemptively(
+                Duration.ofSeconds(5), () -> CompiledExpression.compile(derivative, List.of("x")));
+        assertEquals(nestedProductDerivative(levels), ce.evaluate(-0.5), 1e-12);
+    }
+
+    @Test
+    void nestedProductsAreCorrect() {
+        final Node f = nestedProduct(4);
+        final CompiledExpression ce = CompiledExpression.compile(f, XY);
+        final double h = 1e-6;
+        final double numeric = (ce.evaluate(X * 0.1 + h, Y) - ce.evaluate(X * 0.1 - h, Y)) / (2 * h);
+        final double symbolic = CompiledExpression.compile(new Differentiator().derivative(f, "x"), XY)
+                .evaluate(X * 0.1, Y);
+        assertEquals(numeric, symbolic, Math.abs(numeric) * 1e-6);
+    }
+
+    @Test
+    void jacobianSharesSubexpressions() {
+        final int n = 200;
+        final List<String> variables = new ArrayList<>();
+        final List<Node> terms = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            variables.add("x" + i);
+            terms.add(NodeFactory.multiply(
+                    NodeFactory.constant(i + 1),
+                    NodeFactory.variable("x" + i),
+                    NodeFactory.variable("x" + ((i + 1) % n))));
+        }
+        final Node model = NodeFactory.plus(terms);
+        final List<Node> functions =
+                List.of(model, NodeFactory.power(NodeFactory.bracket(model), NodeFactory.constant(2)));
+
+        final Differentiator d = new Differentiator();
+        final List<List<Node>> jacobian = d.jacobian(functions, variables);
+        assertEquals(2, jacobian.size());
+        assertEquals(n, jacobian.get(0).size());
+        // the derivative of the model is reused inside the derivative of its square
+        final Node dModel = jacobian.get(0).get(7);
+        assertSame(dModel, d.derivative(model, "x7"));
+        final int before = d.size();
+        d.jacobian(functions, variables);
+        assertEquals(before, d.size());
+
+        final double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = 1.0 + i * 0.01;
+        }
+        // d/dx7 of the model is 7*x6 + 8*x8
+        assertEquals(
+                7 * values[6] + 8 * values[8],
+                CompiledExpression.compile(dModel, variables).evaluate(values),
+                1e-9);
+    }
+
+    @Test
+    void equations() {
+        final Differentiator d = new Differentiator();
+        final Node en = NodeFactory.equation(parse("x^2"), parse("y*x"));
+        assertEquals(
+                NodeFactory.equation(d.derivative(parse("x^2"), "x"), d.derivative(parse("y*x"), "x")),
+                d.derivative(en, "x"));
+    }
+
+    @Test
+    void variableExponents() {
+        assertThrows(IllegalArgumentException.class, () -> new Differentiator().derivative(parse("2^x"), "x"));
+        assertEquals(0.0, evaluate(new Differentiator().derivative(parse("2^y"), "x")));
+    }
+}
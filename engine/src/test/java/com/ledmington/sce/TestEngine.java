@@ -23,6 +23,7 @@ import java.math.BigInteger;
 import java.util.List;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -54,6 +55,8 @@ final class TestEngine {
                 Arguments.of("1+2", three),
                 Arguments.of("1-2", ConstantNode.of(-1)),
                 Arguments.of("1*2", two),
+                Arguments.of("1*1", one),
+                Arguments.of("0+0", ConstantNode.of(0)),
                 Arguments.of("2+3*4", ConstantNode.of(14)),
                 Arguments.of("(2+3)*4", ConstantNode.of(20)),
                 Arguments.of("1^2", one),
@@ -107,6 +110,21 @@ final class TestEngine {
                         new PlusNode(List.of(new MultiplyNode(List.of(ConstantNode.of(2), x)), ConstantNode.of(3)))),
                 Arguments.of(
                         "x*3*x", new MultiplyNode(List.of(new PowerNode(x, ConstantNode.of(2)), ConstantNode.of(3)))),
+                // constants which are not rational are not folded, so like terms are still combined
+                Arguments.of("x*x*2^(1/2)", new MultiplyNode(new PowerNode(two, oneHalf), new PowerNode(x, two))),
+                Arguments.of(
+                        "x*x*2^(1/2)*3^(1/2)",
+                        new MultiplyNode(
+                                new PowerNode(two, oneHalf), new PowerNode(three, oneHalf), new PowerNode(x, two))),
+                // powers too large to fold stay symbolic, but like terms next to them are still combined
+                Arguments.of(
+                        "x*x*2*3^99999999",
+                        new MultiplyNode(
+                                two, new PowerNode(three, ConstantNode.of(99_999_999)), new PowerNode(x, two))),
+                Arguments.of(
+                        "x+x+1+2^99999999",
+                        new PlusNode(
+                                one, new MultiplyNode(two, x), new PowerNode(two, ConstantNode.of(99_999_999)))),
                 // imaginary unit
                 Arguments.of("i*i", ConstantNode.of(-1)),
                 Arguments.of("i^2", ConstantNode.of(-1)),
@@ -133,4 +151,21 @@ final class TestEngine {
                 next,
                 () -> String.format("Expected '%s' but was '%s'", expected.toExpression(), finalNext.toExpression()));
     }
+
+    @ParameterizedTest
+    @MethodSource("correctSimplifications")
+    void normalizing(final String input, final Node expected) {
+        final Node actual = Engine.normalize(Parser.parse(Tokenizer.tokenize(input)));
+        assertEquals(
+                expected,
+                actual,
+                () -> String.format("Expected '%s' but was '%s'", expected.toExpression(), actual.toExpression()));
+    }
+
+    @Test
+    void negativeBasesKeepTheirBrackets() {
+        final Node result = Engine.normalize(Parser.parse(Tokenizer.tokenize("(-4)^(1/2)")));
+        assertEquals("(-4)^(1/2)", result.toExpression());
+        assertEquals(result, Engine.normalize(Parser.parse(Tokenizer.tokenize(result.toExpression()))));
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static com.ledmington.sce.Fixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.ledmington.sce.egraph.EGraph;
+import com.ledmington.sce.egraph.SaturationConfig;
+import com.ledmington.sce.engine.Rewrite;
+import com.ledmington.sce.engine.Rewrites;
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+
+final class TestEngineEGraph {
+
+    @Test
+    void sharesEqualSubtrees() {
+        final EGraph graph = new EGraph();
+        final int a = graph.add(parse("(x+1)*(x+1)"));
+        final int b = graph.add(parse("(x+1)"));
+        // x, 1, x+1, (x+1) and the product
+        assertEquals(5, graph.getNumNodes());
+        assertEquals(parse("(x+1)*(x+1)"), graph.extract(a));
+        assertEquals(parse("(x+1)"), graph.extract(b));
+    }
+
+    @Test
+    void unionPropagatesThroughCongruence() {
+        final EGraph graph = new EGraph();
+        final int sum = graph.add(parse("(1+2)*x"));
+        final int bracket = graph.add(parse("(1+2)"));
+        graph.union(bracket, graph.add(ConstantNode.of(3)));
+        graph.rebuild();
+        assertEquals(graph.find(sum), graph.find(graph.add(parse("3*x"))));
+        assertEquals(parse("3*x"), graph.extract(sum));
+    }
+
+    @Test
+    void mergedClassesKeepTheirFirstTerm() {
+        final EGraph graph = new EGraph();
+        final int a = graph.add(parse("x*2"));
+        final int b = graph.add(parse("x+x"));
+        assertTrue(graph.union(a, b));
+        assertFalse(graph.union(b, a));
+        graph.rebuild();
+        assertEquals(graph.find(a), graph.find(b));
+        assertEquals(parse("x*2"), graph.term(b));
+        assertEquals(2, graph.classes().get(graph.find(a)).size());
+    }
+
+    @Test
+    void rulesFireOnMembersOtherThanTheCheapest() {
+        // y = 3/x is recorded in the e-graph, but y stays the cheapest member of its class: merging the fraction into
+        // the product only happens if the rule sees the other member
+        final Node y = NodeFactory.variable("y");
+        final Rewrite defineY = node -> node.equals(y) ? List.of(parse("3/x")) : List.of();
+        final SaturationConfig config =
+                new SaturationConfig(List.of(defineY, Rewrites.mergeFractions(), Rewrites.normalize()), 8, 1_000);
+        final EGraph graph = EngineEGraph.saturate(parse("2*y"), config);
+        assertEquals(graph.find(graph.add(parse("2*y"))), graph.find(graph.add(parse("6/x"))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#greedyInputs")
+    void notWorseThanGreedy(final String input) {
+        Fixtures.assertNotWorseThanGreedy(input, EngineEGraph.simplify(parse(input)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"(2/3)/(4/5)", "(1/2)*(3-4)^2", "i^7", "a*b*c*d+b*a*d*c+(1/2)*(3/4)*(5/6)*x"})
+    void tiesGoToTheGreedyNormalForm(final String input) {
+        assertEquals(Engine.normalize(parse(input)), EngineEGraph.simplify(parse(input)));
+    }
+
+    @Test
+    void findsSimplerFormThanGreedy() {
+        assertEquals(
+                NodeFactory.fraction(NodeFactory.variable("x"), ConstantNode.of(2)),
+                EngineEGraph.simplify(parse("x*(1/2)")));
+    }
+
+    /** A rule adding a new constant to every tree, so that saturation never ends and each application grows. */
+    private static Rewrite growing() {
+        final AtomicInteger next = new AtomicInteger(100);
+        return node -> List.of(NodeFactory.plus(node, NodeFactory.constant(next.getAndIncrement())));
+    }
+
+    @Test
+    void equalTreesSaturate() {
+        // a bracket around a tree is in the class of the tree itself, so bracketing again adds nothing
+        final Rewrite wrap = node -> List.of(NodeFactory.bracket(node));
+        final EGraph graph = EngineEGraph.saturate(parse("x"), new SaturationConfig(List.of(wrap), 100, 1_000));
+        assertEquals(2, graph.getNumNodes());
+        assertEquals(graph.find(graph.add(parse("x"))), graph.find(graph.add(parse("((x))"))));
+    }
+
+    @Test
+    void stopsAtNodeLimit() {
+        // each application adds a constant and a sum, and the limit is checked after each tree
+        final SaturationConfig config = new SaturationConfig(List.of(growing()), 100, 10);
+        assertEquals(11, EngineEGraph.saturate(parse("1+x"), config).getNumNodes());
+        assertEquals(
+                parse("1+x"), EngineEGraph.simplify(parse("1+x"), new SaturationConfig(List.of(growing()), 100, 10)));
+    }
+
+    @Test
+    void stopsAtIterationLimit() {
+        final int three = EngineEGraph.saturate(parse("x"), new SaturationConfig(List.of(growing()), 3, 100_000))
+                .getNumNodes();
+        final int four = EngineEGraph.saturate(parse("x"), new SaturationConfig(List.of(growing()), 4, 100_000))
+                .getNumNodes();
+        assertTrue(three < four, () -> String.format("%,d e-nodes after 3 iterations, %,d after 4", three, four));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static com.ledmington.sce.Fixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.ledmington.sce.engine.Move;
+import com.ledmington.sce.engine.Rewrite;
+import com.ledmington.sce.engine.Rewrites;
+import com.ledmington.sce.engine.SearchConfig;
+import com.ledmington.sce.engine.Subtrees;
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+
+final class TestEngineV2 {
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#greedyInputs")
+    void notWorseThanGreedy(final String input) {
+        Fixtures.assertNotWorseThanGreedy(input, EngineV2.simplify(parse(input)));
+    }
+
+    @Test
+    void findsSimplerFormThanGreedy() {
+        // the greedy engine keeps fractions of constants as coefficients
+        assertEquals(
+                NodeFactory.fraction(NodeFactory.variable("x"), ConstantNode.of(2)),
+                EngineV2.simplify(parse("x*(1/2)")));
+    }
+
+    @Test
+    void moveReplacesSubtree() {
+        final Node root = parse("x*(1+2)");
+        final Node expected = parse("x*3");
+        // the bracket is the only composite child of the product
+        final Node bracket = parse("(1+2)");
+        int idx = 0;
+        while (!Subtrees.get(root, idx).equals(bracket)) {
+            idx++;
+        }
+        assertEquals(expected, new Move(List.of(idx), ConstantNode.of(3), 0).apply(root));
+    }
+
+    @Test
+    void respectsCustomCost() {
+        // a cost preferring bigger trees never accepts a simplification
+        final Node root = parse("1+2");
+        final SearchConfig config = new SearchConfig(n -> -n.size(), List.of(Rewrites.step()), 16, 4);
+        assertEquals(root, EngineV2.simplify(root, config));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1+x+2+x", "(1/2)*(3-4)^2", "x*3*x*(2/x)", "(x+1)*(x+1)+2*(3/y)+1/2+1/3"})
+    void parallelMatchesSequential(final String input) {
+        final Node root = parse(input);
+        final SearchConfig config = SearchConfig.defaults();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(EngineV2.simplify(root, config), EngineV2.simplify(root, config, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sharedSubtreesAreRewrittenOnce() {
+        final List<Node> seen = new ArrayList<>();
+        final Rewrite normalize = Rewrites.normalize();
+        final Rewrite recording = node -> {
+            synchronized (seen) {
+                seen.add(node);
+            }
+            return normalize.apply(node);
+        };
+        final SearchConfig config =
+                new SearchConfig(Node::size, List.of(Rewrites.removeBrackets(), Rewrites.step(), recording), 64, 16);
+        EngineV2.simplify(parse("(x+1+2)*(y+1+2)+(x+1+2)/(y+1+2)"), config);
+        assertEquals(new HashSet<>(seen).size(), seen.size());
+    }
+
+    @Test
+    void rewriteBudgetBoundsTheSearch() {
+        final AtomicInteger calls = new AtomicInteger();
+        final Rewrite normalize = Rewrites.normalize();
+        final Rewrite counting = node -> {
+            calls.incrementAndGet();
+            return normalize.apply(node);
+        };
+        final Node root = parse("(1+2)*x+(3+4)*y+(5+6)/(x+y)");
+        final SearchConfig unbounded = new SearchConfig(Node::size, List.of(Rewrites.step(), counting), 256, 32);
+        EngineV2.simplify(root, unbounded);
+        final int all = calls.getAndSet(0);
+
+        // with a budget of one application, only the input tree is expanded
+        final SearchConfig bounded = new SearchConfig(Node::size, List.of(Rewrites.step(), counting), 256, 32, 1L);
+        EngineV2.simplify(root, bounded);
+        assertTrue(calls.get() < all, () -> String.format("%,d calls out of %,d", calls.get(), all));
+        assertTrue(calls.get() > 0 && calls.get() <= root.size());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.eval.Evaluation;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.numbers.ComplexDecimal;
+import com.ledmington.sce.numbers.Rational;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestEvaluation {
+
+    private static Node parse(final String expression) {
+        return Parser.parse(Tokenizer.tokenizeCompact(expression));
+    }
+
+    private static Stream<Arguments> values() {
+        return Stream.of(
+                Arguments.of("1/3+1/6", 10, "0.5"),
+                Arguments.of("2/3", 20, "0.66666666666666666667"),
+                Arguments.of("2^(1/2)", 30, "1.41421356237309504880168872421"),
+                Arguments.of("8^(2/3)+2^(-1/2)", 15, "4.70710678118655"),
+                Arguments.of("(1+i)^2", 10, "2i"),
+                Arguments.of("(2+3*i)/(1-i)", 10, "-0.5+2.5i"),
+                Arguments.of("(-4)^(1/2)", 10, "2i"),
+                Arguments.of("(-2)^(3/2)", 12, "-2.82842712475i"),
+                Arguments.of("(-16)^(1/4)", 10, "1.414213562+1.414213562i"),
+                Arguments.of("(-8)^(1/3)", 10, "-2"),
+                Arguments.of("i^(1/2)", 10, "0.7071067812+0.7071067812i"),
+                Arguments.of("(-i)^(1/2)", 10, "0.7071067812-0.7071067812i"),
+                Arguments.of("(1+i)^(1/2)", 10, "1.098684113+0.4550898606i"),
+                Arguments.of("(-8*i)^(2/3)", 10, "2.000000000-3.464101615i"),
+                Arguments.of("(3-4*i)^(-1/2)", 10, "0.4+0.2i"),
+                Arguments.of("(1+i)^-4", 10, "-0.25"),
+                Arguments.of("7^123456789", 9, "2.57248981E+104333090"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("values")
+    void values(final String expression, final int digits, final String expected) {
+        assertEquals(expected, Evaluation.of(parse(expression)).value(digits).toString());
+    }
+
+    @Test
+    void exact() {
+        final Evaluation e = Evaluation.of(parse("(1/2+1/3)*(2^10/4)"));
+        assertTrue(e.isExact());
+        assertEquals(Rational.of(640, 3), e.exactValue());
+        assertFalse(Evaluation.of(parse("1+2^(1/2)")).isExact());
+        assertNull(Evaluation.of(parse("1+2^(1/2)")).exactValue());
+    }
+
+    @Test
+    void hundredsOfDigits() {
+        final MathContext mc = new MathContext(500);
+        assertEquals(
+                BigDecimal.TWO.sqrt(mc).add(BigDecimal.valueOf(3).sqrt(mc), mc),
+                Evaluation.of(parse("2^(1/2)+3^(1/2)")).value(500).real());
+    }
+
+    @Test
+    void cubeRoot() {
+        final BigDecimal root = Evaluation.of(parse("2^(1/3)")).value(150).real();
+        assertEquals(0, BigDecimal.TWO.compareTo(root.pow(3).round(new MathContext(140))));
+    }
+
+    @Test
+    void bindings() {
+        final Evaluation exact = Evaluation.of(parse("x^2+y"), Map.of("x", parse("1/3"), "y", parse("2")));
+        assertEquals(Rational.of(19, 9), exact.exactValue());
+        final Evaluation approx = Evaluation.of(parse("x^2+y"), Map.of("x", parse("3^(1/4)"), "y", parse("-3^(1/2)")));
+        assertEquals(0, approx.value(20).real().signum());
+    }
+
+    @Test
+    void cancellation() {
+        // the first working precision only sees the leading 1 of the square root
+        assertEquals(
+                BigDecimal.TWO.sqrt(new MathContext(20)),
+                Evaluation.of(parse("(10^30+2^(1/2))-10^30")).value(20).real());
+    }
+
+    @Test
+    void refinement() {
+        final String expression = "5^(1/3)*(1+i)+7^(2/5)";
+        final Evaluation e = Evaluation.of(parse(expression));
+        final ComplexDecimal coarse = e.value(30);
+        final ComplexDecimal fine = e.value(300);
+        assertTrue(fine.hasSameValue(Evaluation.of(parse(expression)).value(300)));
+        assertTrue(coarse.hasSameValue(fine.round(new MathContext(30))));
+        assertTrue(coarse.hasSameValue(e.value(30)));
+    }
+
+    @Test
+    void complexRoots() {
+        // the principal fifth root of 1+i, raised back to the fifth power
+        final ComplexDecimal root = Evaluation.of(parse("(1+i)^(1/5)")).value(100);
+        final ComplexDecimal power = root.pow(BigInteger.valueOf(5), new MathContext(120));
+        assertTrue(power.round(new MathContext(95)).hasSameValue(new ComplexDecimal(BigDecimal.ONE, BigDecimal.ONE)));
+        // its argument is pi/20, so both parts are positive and the real one is the largest
+        assertTrue(root.imaginary().signum() > 0 && root.real().compareTo(root.imaginary()) > 0);
+        // huge radicands
+        assertEquals(
+                "1.000000000E+100i",
+                Evaluation.of(parse("(-10^200)^(1/2)")).value(10).toString());
+        assertEquals(
+                "7.071067812E+49+7.071067812E+49i",
+                Evaluation.of(parse("(-10^200)^(1/4)")).value(10).toString());
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> Evaluation.of(parse("x+1")));
+        assertThrows(IllegalArgumentException.class, () -> Evaluation.of(parse("2^(2^(1/2))")));
+        assertThrows(ArithmeticException.class, () -> Evaluation.of(parse("1/(2-2)")));
+        assertThrows(
+                IllegalArgumentException.class, () -> Evaluation.of(parse("1")).value(0));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.numbers.GaussianRational;
+import com.ledmington.sce.numbers.Powers;
+import com.ledmington.sce.numbers.Rational;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestGaussianRational {
+
+    private static Node parse(final String expression) {
+        return Parser.parse(Tokenizer.tokenizeCompact(expression));
+    }
+
+    private static GaussianRational g(final long re, final long im) {
+        return GaussianRational.of(Rational.of(re), Rational.of(im));
+    }
+
+    @Test
+    void arithmetic() {
+        final GaussianRational a = g(2, 3);
+        final GaussianRational b = g(1, -1);
+        assertEquals(g(3, 2), a.add(b));
+        assertEquals(g(1, 4), a.subtract(b));
+        assertEquals(g(5, 1), a.multiply(b));
+        assertEquals(GaussianRational.of(Rational.of(-1, 2), Rational.of(5, 2)), a.divide(b));
+        assertEquals(Rational.of(13), a.norm());
+        assertEquals(GaussianRational.ONE, a.multiply(a.reciprocal()));
+        assertThrows(ArithmeticException.class, GaussianRational.ZERO::reciprocal);
+    }
+
+    @Test
+    void powers() {
+        assertEquals(g(-4, 0), g(1, 1).pow(4));
+        assertEquals(GaussianRational.of(Rational.ZERO, Rational.of(-1, 2)), g(1, 1).pow(-2));
+        assertEquals(
+                g(0, -1), Powers.fold(GaussianRational.I, BigInteger.TEN.pow(30).add(BigInteger.valueOf(3)), 64));
+        assertNull(Powers.fold(g(1, 1), BigInteger.valueOf(1_000_000), 1L << 16));
+        assertEquals(g(1, 0), Powers.fold(g(3, 4), BigInteger.ZERO, 1));
+    }
+
+    private static Stream<Arguments> folding() {
+        return Stream.of(
+                Arguments.of("(1+i)*(1-i)", g(2, 0)),
+                Arguments.of("(2+3*i)/(1-i)", GaussianRational.of(Rational.of(-1, 2), Rational.of(5, 2))),
+                Arguments.of("(1+i)^4", g(-4, 0)),
+                Arguments.of("(1+i)^-2", GaussianRational.of(Rational.ZERO, Rational.of(-1, 2))),
+                Arguments.of("(1+i)+(2-3*i)", g(3, -2)),
+                Arguments.of("i*i*i", g(0, -1)),
+                Arguments.of("i/2+1/2", GaussianRational.of(Rational.of(1, 2), Rational.of(1, 2))),
+                Arguments.of("(3+4*i)*(3-4*i)/(5*i)", g(0, -5)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("folding")
+    void folding(final String expression, final GaussianRational expected) {
+        final Node result = Engine.normalize(parse(expression));
+        assertTrue(GaussianRational.isGaussian(result), result::toExpression);
+        assertEquals(expected, GaussianRational.of(result));
+    }
+
+    private static Stream<Arguments> written() {
+        return Stream.of(
+                Arguments.of("(2+3*i)/(1-i)", "-1/2+5/2*i"),
+                Arguments.of("(1+2*i)*(3-i)", "5+5*i"),
+                Arguments.of("(1-i)/2", "1/2+-1/2*i"),
+                Arguments.of("(1+i)^3", "-2+2*i"),
+                Arguments.of("(3+4*i)*(3-4*i)/(5*i)", "-5*i"),
+                Arguments.of("x*((2+3*i)/(1-i))", "(-1/2+5/2*i)*x"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("written")
+    void written(final String expression, final String expected) {
+        // the real part first, in brackets only as a factor
+        assertEquals(expected, Engine.normalize(parse(expression)).toExpression());
+    }
+
+    @Test
+    void canonicalFormsAreStable() {
+        for (final String expression : new String[] {"1+i", "2*i", "3+-2*i", "-1*i", "x*(3+i)", "3*i+x"}) {
+            final Node n = Engine.normalize(parse(expression));
+            assertEquals(n, Engine.simplify(n), expression);
+        }
+    }
+
+    @Test
+    void foldsAroundOtherTerms() {
+        assertEquals(Engine.normalize(parse("x*(3+i)")), Engine.normalize(parse("x*(1+i)*(2-i)")));
+        assertEquals(Engine.normalize(parse("3*i+x")), Engine.normalize(parse("i+x+2*i")));
+    }
+
+    @Test
+    void longProducts() {
+        // (1+i)^2 = 2i, so the product of 200 such factors is (2i)^100 = 2^100
+        final String expression = IntStream.range(0, 200).mapToObj(i -> "(1+i)").collect(Collectors.joining("*"));
+        assertEquals(
+                GaussianRational.of(Rational.of(BigInteger.TWO.pow(100))),
+                GaussianRational.of(Engine.normalize(parse(expression))));
+    }
+
+    @Test
+    void notGaussian() {
+        assertFalse(GaussianRational.isGaussian(parse("x+i")));
+        assertFalse(GaussianRational.isGaussian(parse("2^(1/2)*i")));
+        assertThrows(IllegalArgumentException.class, () -> GaussianRational.of(parse("x")));
+    }
+}
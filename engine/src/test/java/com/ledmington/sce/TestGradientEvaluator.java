@@ -0,0 +1,190 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static com.ledmington.sce.Fixtures.X;
+import static com.ledmington.sce.Fixtures.XY;
+import static com.ledmington.sce.Fixtures.Y;
+import static com.ledmington.sce.Fixtures.nestedProduct;
+import static com.ledmington.sce.Fixtures.nestedProductDerivative;
+import static com.ledmington.sce.Fixtures.parse;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.diff.Differentiator;
+import com.ledmington.sce.eval.CompiledExpression;
+import com.ledmington.sce.eval.GradientEvaluator;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+
+final class TestGradientEvaluator {
+
+    private static final double[] POINT = {X, Y};
+
+    private static Stream<String> expressions() {
+        return Stream.of(
+                "3",
+                "x",
+                "x+y+x",
+                "x^2*y-3/4",
+                "(x+1)/(y-2)",
+                "x^(1/2)*y^-3",
+                "(x*y+1)^70",
+                "x*x*x*y*y+x/y",
+                "((x+y)^3-x)/(x*y)^2");
+    }
+
+    @ParameterizedTest
+    @MethodSource("expressions")
+    void matchesSymbolicDerivatives(final String expression) {
+        final Node root = parse(expression);
+        final GradientEvaluator ge = GradientEvaluator.compile(root, XY);
+        final double[] gradient = new double[2];
+        final double value = ge.evaluate(POINT, gradient);
+
+        assertEquals(CompiledExpression.compile(root, XY).evaluate(POINT), value, 1e-9);
+        final List<Node> symbolic = new Differentiator().gradient(root, XY);
+        for (int j = 0; j < 2; j++) {
+            final double expected =
+                    CompiledExpression.compile(symbolic.get(j), XY).evaluate(POINT);
+            assertEquals(expected, gradient[j], Math.max(1.0, Math.abs(expected)) * 1e-9);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("com.ledmington.sce.Fixtures#numericExpressions")
+    void matchesFiniteDifferences(final String expression, final double expected) {
+        final Node root = parse(expression);
+        final CompiledExpression ce = CompiledExpression.compile(root, XY);
+        final double[] gradient = new double[2];
+        assertEquals(
+                expected,
+                GradientEvaluator.compile(root, XY).evaluate(POINT, gradient),
+                Math.max(1.0, Math.abs(expected)) * 1e-12);
+        final double h = 1e-6;
+        final double dx = (ce.evaluate(X + h, Y) - ce.evaluate(X - h, Y)) / (2 * h);
+        final double dy = (ce.evaluate(X, Y + h) - ce.evaluate(X, Y - h)) / (2 * h);
+        assertEquals(dx, gradient[0], Math.max(1.0, Math.abs(dx)) * 1e-6);
+        assertEquals(dy, gradient[1], Math.max(1.0, Math.abs(dy)) * 1e-6);
+    }
+
+    @Test
+    void variableExponents() {
+        // d/dx x^y = y*x^(y-1), d/dy x^y = x^y*ln(x)
+        assertArrayEquals(
+                new double[] {Y * Math.pow(X, Y - 1), Math.pow(X, Y) * Math.log(X)},
+                GradientEvaluator.compile(parse("x^y"), XY).gradient(POINT),
+                1e-12);
+    }
+
+    @Test
+    void constantExponentsAtZero() {
+        // ln(0) must not leak into the derivative when the exponent is constant
+        assertArrayEquals(
+                new double[] {0.0},
+                GradientEvaluator.compile(parse("x^(3/2)"), List.of("x")).gradient(0.0));
+    }
+
+    @Test
+    void selectedDirections() {
+        final GradientEvaluator ge =
+                GradientEvaluator.compile(parse("x^2*y+y^3*z"), List.of("x", "y", "z"), List.of("z", "x"));
+        assertEquals(List.of("z", "x"), ge.directions());
+        assertArrayEquals(new double[] {8.0, 4.0 * 2.0}, ge.gradient(2.0, 2.0, 5.0), 1e-12);
+    }
+
+    @Test
+    void wideGradients() {
+        final int n = 200;
+        final List<String> variables = new ArrayList<>();
+        final List<Node> terms = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            variables.add("x" + i);
+            terms.add(NodeFactory.multiply(
+                    NodeFactory.constant(i + 1),
+                    NodeFactory.variable("x" + i),
+                    NodeFactory.variable("x" + ((i + 1) % n))));
+        }
+        final double[] point = new double[n];
+        for (int i = 0; i < n; i++) {
+            point[i] = 1.0 + i * 0.01;
+        }
+        final double[] gradient =
+                GradientEvaluator.compile(NodeFactory.plus(terms), variables).gradient(point);
+        for (int i = 0; i < n; i++) {
+            // x(i) appears in the terms i and i-1
+            final int prev = (i + n - 1) % n;
+            assertEquals((i + 1) * point[(i + 1) % n] + (prev + 1) * point[prev], gradient[i], 1e-9);
+        }
+    }
+
+    @Test
+    void sharedSubexpressionsAreComputedOnce() {
+        final int levels = 60;
+        final GradientEvaluator ge = assertTimeoutPreemptively(
+                Duration.ofSeconds(5), () -> GradientEvaluator.compile(nestedProduct(levels), List.of("x")));
+        final double[] gradient = new double[1];
+        assertEquals(-0.5, ge.evaluate(new double[] {-0.5}, gradient));
+        assertEquals(nestedProductDerivative(levels), gradient[0], 1e-12);
+    }
+
+    @Test
+    void sharedSubexpressionsKeepTheirTangents() {
+        final Node f = nestedProduct(3);
+        final CompiledExpression ce = CompiledExpression.compile(f, List.of("x"));
+        final double h = 1e-6;
+        final double numeric = (ce.evaluate(0.3 + h) - ce.evaluate(0.3 - h)) / (2 * h);
+        final double[] gradient = new double[1];
+        assertEquals(
+                ce.evaluate(0.3),
+                GradientEvaluator.compile(f, List.of("x")).evaluate(new double[] {0.3}, gradient),
+                1e-12);
+        assertEquals(numeric, gradient[0], Math.abs(numeric) * 1e-6);
+    }
+
+    @Test
+    void largeIntegerExponents() {
+        // 1.0000000001^1000000000 = e^0.1, and its derivative is 1000000000 times the power before it
+        final double[] gradient = new double[1];
+        final double value = GradientEvaluator.compile(parse("x^1000000000"), List.of("x"))
+                .evaluate(new double[] {1.0000000001}, gradient);
+        assertEquals(1.105170927214347, value, 1e-15);
+        assertEquals(1e9 * value / 1.0000000001, gradient[0], 1e-6);
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> GradientEvaluator.compile(parse("x"), XY, List.of("z")));
+        assertThrows(
+                IllegalArgumentException.class, () -> GradientEvaluator.compile(parse("x"), XY, List.of("x", "x")));
+        final GradientEvaluator ge = GradientEvaluator.compile(parse("x+y"), XY);
+        assertThrows(IllegalArgumentException.class, () -> ge.gradient(1.0));
+        assertThrows(IllegalArgumentException.class, () -> ge.evaluate(POINT, new double[1]));
+    }
+}
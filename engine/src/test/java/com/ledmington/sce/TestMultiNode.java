@@ -0,0 +1,104 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.MultiNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.VariableNode;
+
+final class TestMultiNode {
+
+    private static Stream<MultiNode> multiNodes() {
+        final VariableNode x = new VariableNode("x");
+        final VariableNode y = new VariableNode("y");
+        final ConstantNode two = ConstantNode.of(2);
+        return Stream.of(
+                new PlusNode(x),
+                new PlusNode(x, y, x),
+                new PlusNode(two, x, two, y, two),
+                new MultiplyNode(x, x, x),
+                new MultiplyNode(y, two, x, y),
+                new PlusNode(y, x, x, two, y, x, y));
+    }
+
+    @ParameterizedTest
+    @MethodSource("multiNodes")
+    void distinctChildrenMatchExpandedChildren(final MultiNode mn) {
+        final List<Node> expanded = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; i < mn.getNumDistinctChildren(); i++) {
+            total += mn.getMultiplicity(i);
+            for (int j = 0; j < mn.getMultiplicity(i); j++) {
+                expanded.add(mn.getDistinctChild(i));
+            }
+        }
+        assertEquals(mn.getNumChildren(), total);
+
+        final List<Node> indexed = new ArrayList<>();
+        for (int i = 0; i < mn.getNumChildren(); i++) {
+            indexed.add(mn.getChild(i));
+        }
+        assertEquals(expanded, indexed);
+    }
+
+    @ParameterizedTest
+    @MethodSource("multiNodes")
+    void equalityIgnoresOrder(final MultiNode mn) {
+        final List<Node> reversed = new ArrayList<>();
+        for (int i = mn.getNumChildren() - 1; i >= 0; i--) {
+            reversed.add(mn.getChild(i));
+        }
+        final MultiNode other = mn instanceof PlusNode ? new PlusNode(reversed) : new MultiplyNode(reversed);
+        assertEquals(mn, other);
+        assertEquals(mn.hashCode(), other.hashCode());
+    }
+
+    @Test
+    void largeMultiplicities() {
+        final VariableNode x = new VariableNode("x");
+        final VariableNode y = new VariableNode("y");
+        final List<Node> nodes = new ArrayList<>(Collections.nCopies(1_000_000, x));
+        nodes.add(y);
+        final MultiplyNode mn = new MultiplyNode(nodes);
+        assertEquals(1_000_001, mn.getNumChildren());
+        assertEquals(2, mn.getNumDistinctChildren());
+        final int ix = mn.getDistinctChild(0).equals(x) ? 0 : 1;
+        assertEquals(1_000_000, mn.getMultiplicity(ix));
+        // children are grouped by distinct value, so the first and the last one differ
+        assertSame(mn.getDistinctChild(0), mn.getChild(0));
+        assertSame(mn.getDistinctChild(1), mn.getChild(1_000_000));
+        assertThrows(IndexOutOfBoundsException.class, () -> mn.getChild(1_000_001));
+        assertThrows(IndexOutOfBoundsException.class, () -> mn.getChild(-1));
+    }
+}
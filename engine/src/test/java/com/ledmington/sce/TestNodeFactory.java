@@ -0,0 +1,103 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.ledmington.sce.nodes.BracketNode;
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.nodes.VariableNode;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestNodeFactory {
+
+    @Test
+    void smallConstantsAreShared() {
+        assertSame(ConstantNode.of(1), ConstantNode.of(1));
+        assertSame(ConstantNode.of(-1), NodeFactory.constant(BigInteger.ONE.negate()));
+    }
+
+    @Test
+    void bigConstantsAreShared() {
+        final BigInteger big = BigInteger.TEN.pow(40);
+        assertSame(NodeFactory.constant(big), NodeFactory.constant(new BigInteger(big.toString())));
+    }
+
+    @Test
+    void equalSubtreesAreShared() {
+        final VariableNode x = NodeFactory.variable("x");
+        final PlusNode a = NodeFactory.plus(x, ConstantNode.of(1));
+        final PlusNode b = NodeFactory.plus(ConstantNode.of(1), NodeFactory.variable("x"));
+        assertSame(a, b);
+        assertEquals(new PlusNode(x, ConstantNode.of(1)), a);
+    }
+
+    @Test
+    void parserSharesRepeatedSubexpressions() {
+        final Node root = Parser.parse(Tokenizer.tokenize("(x+1)*(x+1)"));
+        final MultiplyNode mn = (MultiplyNode) root;
+        assertEquals(1, mn.getNumDistinctChildren());
+        assertSame(
+                NodeFactory.bracket(NodeFactory.plus(NodeFactory.variable("x"), ConstantNode.of(1))), mn.getChild(0));
+        assertSame(mn.getChild(0), mn.getChild(1));
+        assertSame(((BracketNode) mn.getChild(0)).inner(), ((BracketNode) mn.getChild(1)).inner());
+    }
+
+    @Test
+    void concurrentInterningReturnsOneInstance() throws InterruptedException, ExecutionException {
+        final int threads = 8;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<Node>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    final List<Node> nodes = new ArrayList<>();
+                    for (int i = 0; i < 2_000; i++) {
+                        nodes.add(NodeFactory.plus(NodeFactory.variable("c" + i), NodeFactory.constant(i)));
+                    }
+                    return nodes;
+                }));
+            }
+            final List<Node> first = results.get(0).get();
+            for (final Future<List<Node>> f : results) {
+                final List<Node> nodes = f.get();
+                for (int i = 0; i < nodes.size(); i++) {
+                    assertSame(first.get(i), nodes.get(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.nodes.MultiplyNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.nodes.PlusNode;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestNodeSize {
+
+    private static Stream<Arguments> sizes() {
+        return Stream.of(
+                Arguments.of("x", 1),
+                Arguments.of("12", 1),
+                Arguments.of("x+y", 3),
+                Arguments.of("x+x+x", 4),
+                Arguments.of("2*x*x", 4),
+                Arguments.of("x/y", 3),
+                Arguments.of("x^2", 3),
+                Arguments.of("(x+1)", 4),
+                Arguments.of("(x+1)*(x+1)", 9),
+                Arguments.of("x^(y/2)+1", 8));
+    }
+
+    @ParameterizedTest
+    @MethodSource("sizes")
+    void sizes(final String expression, final int expected) {
+        assertEquals(expected, Parser.parse(Tokenizer.tokenize(expression)).size());
+    }
+
+    @Test
+    void equationSize() {
+        assertEquals(
+                5,
+                NodeFactory.equation(NodeFactory.variable("x"), Parser.parse(Tokenizer.tokenize("y+1")))
+                        .size());
+    }
+
+    @Test
+    void largeMultiplicitiesSaturate() {
+        final Node big = NodeFactory.plus(Collections.nCopies(100_000, NodeFactory.variable("x")));
+        assertEquals(100_001, big.size());
+        final List<Node> nodes = new ArrayList<>(Collections.nCopies(100_000, NodeFactory.bracket(big)));
+        assertEquals(Integer.MAX_VALUE, new MultiplyNode(nodes).size());
+        assertEquals(Integer.MAX_VALUE, new PlusNode(nodes).size());
+    }
+
+    @Test
+    void sharedSubtreesSaturate() {
+        // each level doubles the size of the tree while adding a few distinct nodes
+        Node f = NodeFactory.variable("x");
+        int previous = f.size();
+        for (int k = 0; k < 64; k++) {
+            f = NodeFactory.power(NodeFactory.bracket(f), NodeFactory.bracket(f));
+            final int current = f.size();
+            assertEquals(previous >= Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * previous + 3, current);
+            previous = current;
+        }
+        assertEquals(Integer.MAX_VALUE, NodeFactory.fraction(f, f).size());
+    }
+}
@@ -18,12 +18,14 @@
 package com.ledmington.sce;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.stream.Stream;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import com.ledmington.sce.nodes.BracketNode;
 import com.ledmington.sce.nodes.ConstantNode;
@@ -55,7 +57,17 @@ final class TestParser {
                 Arguments.of("1-x", new PlusNode(one, new MultiplyNode(ConstantNode.of(-1), x))),
                 Arguments.of("1*x", new MultiplyNode(one, x)),
                 Arguments.of("1/x", new FractionNode(one, x)),
-                Arguments.of("1^x", new PowerNode(one, x)));
+                Arguments.of("1^x", new PowerNode(one, x)),
+                Arguments.of("1+2+x", new PlusNode(one, two, x)),
+                Arguments.of("1*2*x", new MultiplyNode(one, two, x)),
+                Arguments.of("1-2*x", new PlusNode(one, new MultiplyNode(ConstantNode.of(-1), two, x))),
+                Arguments.of("2*x^2", new MultiplyNode(two, new PowerNode(x, two))),
+                Arguments.of("x^2^x", new PowerNode(new PowerNode(x, two), x)),
+                Arguments.of("-x^2", new MultiplyNode(ConstantNode.of(-1), new PowerNode(x, two))),
+                Arguments.of("x^-1", new PowerNode(x, ConstantNode.of(-1))),
+                Arguments.of("1/2*x", new MultiplyNode(FractionNode.of(1, 2), x)),
+                Arguments.of("x*2/3", new FractionNode(new MultiplyNode(x, two), ConstantNode.of(3))),
+                Arguments.of("(1+x)*2", new MultiplyNode(new BracketNode(new PlusNode(one, x)), two)));
     }
 
     @ParameterizedTest
@@ -64,4 +76,17 @@ final class TestParser {
         final Node actual = Parser.parse(Tokenizer.tokenize(input));
         assertEquals(expected, actual, () -> String.format("Expected '%s' but was '%s'", expected, actual));
     }
+
+    @ParameterizedTest
+    @MethodSource("correctNodes")
+    void parsingCompact(final String input, final Node expected) {
+        final Node actual = Parser.parse(Tokenizer.tokenizeCompact(input));
+        assertEquals(expected, actual, () -> String.format("Expected '%s' but was '%s'", expected, actual));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "1+", "(1", "1)", "()", "(1)(2)", "*1", "1^"})
+    void invalid(final String input) {
+        assertThrows(Error.class, () -> Parser.parse(Tokenizer.tokenize(input)));
+    }
 }
@@ -0,0 +1,206 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.NodeFactory;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.poly.MultiplicationAlgorithm;
+import com.ledmington.sce.poly.Polynomial;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestPolynomial {
+
+    private static Node parse(final String expression) {
+        return Parser.parse(Tokenizer.tokenize(expression));
+    }
+
+    private static Stream<Arguments> expanding() {
+        return Stream.of(
+                Arguments.of("(x+1)^2", "1+2*x+x^2"),
+                Arguments.of("(x+1)^(2)", "1+2*x+x^2"),
+                Arguments.of("(x+1)*(x-1)", "-1+x^2"),
+                Arguments.of("(x+y)^3", "3*x^2*y+y^3+x^3+3*x*y^2"),
+                Arguments.of("(a+b)*(c+d)", "b*d+b*c+a*d+a*c"),
+                Arguments.of("x-x", "0"),
+                Arguments.of("(x+1)/2", "1/2+1/2*x"),
+                Arguments.of("2*x+3*x", "5*x"),
+                Arguments.of("(x^y+1)^2", "1+(x^y)^2+x^y*2"),
+                Arguments.of("(1/2+x)*(2/3)", "1/3+2/3*x"),
+                // the powers of the imaginary unit are folded after expanding
+                Arguments.of("(1+i)^2", "2*i"),
+                Arguments.of("(1+i)^4", "-4"),
+                Arguments.of("x*i*i+x", "0"),
+                // the operands of subtrees which are not polynomial are converted too
+                Arguments.of("1/(x-x)", "1/0"),
+                Arguments.of("x^(y+y)", "x^(2*y)"),
+                Arguments.of("(x+x)/(y*2)", "(2*x)/(2*y)"),
+                Arguments.of("1/(x+1)+1/(1+x)", "2*1/(1+x)"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("expanding")
+    void expanding(final String input, final String expected) {
+        assertEquals(expected, Engine.expand(parse(input)).toExpression());
+    }
+
+    private static Stream<Arguments> collecting() {
+        final Node x = NodeFactory.variable("x");
+        final Node y = NodeFactory.variable("y");
+        final Node xPlusOne = NodeFactory.bracket(NodeFactory.plus(x, ConstantNode.of(1)));
+        return Stream.of(
+                Arguments.of("2*x+3*x", NodeFactory.multiply(ConstantNode.of(5), x)),
+                Arguments.of("x*y+y*x", NodeFactory.multiply(ConstantNode.of(2), x, y)),
+                Arguments.of("x+y-x", y),
+                Arguments.of("(x+1)*y+y*(1+x)", NodeFactory.multiply(ConstantNode.of(2), xPlusOne, y)),
+                Arguments.of("(x+1)^2-(1+x)^2", ConstantNode.of(0)),
+                Arguments.of("(x+x)*y", NodeFactory.multiply(ConstantNode.of(2), x, y)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("collecting")
+    void collecting(final String input, final Node expected) {
+        assertEquals(expected, Engine.collect(parse(input)));
+    }
+
+    private static Stream<Arguments> tooLarge() {
+        return Stream.of(
+                Arguments.of("(x+1)^5000000", "(1+x)^5000000"),
+                Arguments.of("(x^100000)^100000", "(x^100000)^100000"),
+                Arguments.of("x^2147483647*x", "x^2147483647*x"),
+                Arguments.of("(2*x)^2000000000", "(2*x)^2000000000"),
+                Arguments.of(
+                        "(x+1)^3*(x+1)^5000000",
+                        "(1+x)^5000000+(1+x)^5000000*x^3+3*(1+x)^5000000*x^2+3*(1+x)^5000000*x"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("tooLarge")
+    void tooLargeStaysSymbolic(final String input, final String expected) {
+        final Node result = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Engine.expand(parse(input)));
+        assertEquals(expected, result.toExpression());
+    }
+
+    @Test
+    void thresholdIsConfigurable() {
+        final long old = EngineConstants.getMaxExpandedTerms();
+        try {
+            EngineConstants.setMaxExpandedTerms(4L);
+            assertEquals(4, Polynomial.expand(parse("(x+1)^3")).getNumTerms());
+            assertEquals(1, Polynomial.expand(parse("(x+1)^4")).getNumTerms());
+            assertEquals(1, Polynomial.expand(parse("(x+1)*(x+2)*(x+3)*(x+4)")).getNumTerms());
+            EngineConstants.setMaxExpandedTerms(5L);
+            assertEquals(5, Polynomial.expand(parse("(x+1)^4")).getNumTerms());
+        } finally {
+            EngineConstants.setMaxExpandedTerms(old);
+        }
+        assertThrows(IllegalArgumentException.class, () -> EngineConstants.setMaxExpandedTerms(0L));
+    }
+
+    @Test
+    void collectDoesNotDistribute() {
+        final Node root = parse("(x+1)*(x-1)");
+        assertEquals(1, Polynomial.collect(root).getNumTerms());
+        assertEquals(2, Polynomial.expand(root).getNumTerms());
+    }
+
+    @Test
+    void binomialCoefficients() {
+        final Polynomial p = Polynomial.expand(parse("(x+1)^20"));
+        assertEquals(21, p.getNumTerms());
+        assertEquals(20, p.degree());
+        assertEquals(
+                NodeFactory.multiply(
+                        NodeFactory.power(NodeFactory.variable("x"), ConstantNode.of(10)), ConstantNode.of(184_756)),
+                Engine.expand(parse("(x+1)^20-"
+                        + IntStream.rangeClosed(0, 20)
+                                .filter(k -> k != 10)
+                                .mapToObj(k -> binomial(20, k) + "*x^" + k)
+                                .collect(Collectors.joining("-")))));
+    }
+
+    private static long binomial(final int n, final int k) {
+        long r = 1L;
+        for (int i = 1; i <= k; i++) {
+            r = r * (n - k + i) / i;
+        }
+        return r;
+    }
+
+    @Test
+    void largeSums() {
+        final int n = 10_000;
+        final String expression =
+                IntStream.range(0, n).mapToObj(i -> "x*y*" + (i % 7)).collect(Collectors.joining("+"));
+        final long total = IntStream.range(0, n).mapToLong(i -> i % 7).sum();
+        assertEquals(
+                NodeFactory.multiply(NodeFactory.constant(total), NodeFactory.variable("x"), NodeFactory.variable("y")),
+                Engine.collect(Parser.parse(Tokenizer.tokenizeCompact(expression))));
+    }
+
+    private static Polynomial repeatedSchoolbook(final Polynomial p, final int exponent) {
+        Polynomial result = p;
+        for (int i = 1; i < exponent; i++) {
+            result = result.multiply(p, MultiplicationAlgorithm.SCHOOLBOOK);
+        }
+        return result;
+    }
+
+    @ParameterizedTest
+    @EnumSource(MultiplicationAlgorithm.class)
+    void multivariatePowers(final MultiplicationAlgorithm algorithm) {
+        final Polynomial p = Polynomial.expand(parse("x+y/2-3*z+1"));
+        assertEquals(repeatedSchoolbook(p, 9).toNode(), p.pow(9, algorithm).toNode());
+    }
+
+    @ParameterizedTest
+    @EnumSource(MultiplicationAlgorithm.class)
+    void denseProducts(final MultiplicationAlgorithm algorithm) {
+        final Polynomial p = Polynomial.expand(parse("x^3-2*x+7/5"));
+        final Polynomial a = repeatedSchoolbook(p, 30);
+        final Polynomial b = repeatedSchoolbook(p, 17).multiply(p.pow(0).add(p));
+        assertEquals(
+                a.multiply(b, MultiplicationAlgorithm.SCHOOLBOOK).toNode(),
+                a.multiply(b, algorithm).toNode());
+    }
+
+    @Test
+    void highPowers() {
+        final Polynomial p = Polynomial.expand(parse("(x+y+1)^50"));
+        // the number of monomials of degree at most 50 in two variables
+        assertEquals(51 * 52 / 2, p.getNumTerms());
+        assertEquals(50, p.degree());
+        assertEquals(repeatedSchoolbook(Polynomial.expand(parse("x+y+1")), 50).toNode(), p.toNode());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.ledmington.sce.nodes.ConstantNode;
+import com.ledmington.sce.nodes.FractionNode;
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.nodes.PowerNode;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestPowers {
+
+    private static Node parse(final String expression) {
+        return Parser.parse(Tokenizer.tokenize(expression));
+    }
+
+    private static Stream<Arguments> folding() {
+        return Stream.of(
+                Arguments.of("2^-2", FractionNode.of(1, 4)),
+                Arguments.of("(2/3)^-3", FractionNode.of(27, 8)),
+                Arguments.of("4^(1/2)", ConstantNode.of(2)),
+                Arguments.of("8^(2/3)", ConstantNode.of(4)),
+                Arguments.of("8^(-2/3)", FractionNode.of(1, 4)),
+                Arguments.of("(4/9)^(1/2)", FractionNode.of(2, 3)),
+                Arguments.of("(-8)^(1/3)", ConstantNode.of(-2)),
+                Arguments.of("(-1)^123456789123456789123", ConstantNode.of(-1)),
+                Arguments.of("1^123456789123456789123", ConstantNode.of(1)),
+                Arguments.of("0^123456789123456789123", ConstantNode.of(0)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("folding")
+    void folding(final String input, final Node expected) {
+        assertEquals(expected, Engine.normalize(parse(input)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "7^123456789",
+                "2^123456789123456789123",
+                // narrowing the exponent to an int would give 2^2
+                "2^4294967298",
+                "2^(1/2)",
+                "(-4)^(1/2)",
+                "0^-1",
+                "3^(1/99999)"
+            })
+    void staysSymbolic(final String input) {
+        final Node result = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Engine.normalize(parse(input)));
+        assertInstanceOf(PowerNode.class, result);
+    }
+
+    @Test
+    void thresholdIsConfigurable() {
+        final long old = EngineConstants.getMaxFoldedPowerBits();
+        try {
+            EngineConstants.setMaxFoldedPowerBits(8L);
+            assertInstanceOf(PowerNode.class, Engine.normalize(parse("3^10")));
+            EngineConstants.setMaxFoldedPowerBits(64L);
+            assertEquals(ConstantNode.of(59_049), Engine.normalize(parse("3^10")));
+        } finally {
+            EngineConstants.setMaxFoldedPowerBits(old);
+        }
+        assertThrows(IllegalArgumentException.class, () -> EngineConstants.setMaxFoldedPowerBits(-1L));
+    }
+
+    @Test
+    void residues() {
+        final BigInteger m = BigInteger.valueOf(1_000_000_007L);
+        assertEquals(
+                BigInteger.valueOf(7).modPow(BigInteger.valueOf(123_456_789), m),
+                Engine.residue(parse("7^123456789"), m));
+        assertEquals(
+                BigInteger.valueOf(7)
+                        .modPow(BigInteger.valueOf(123_456_789), m)
+                        .add(BigInteger.valueOf(4))
+                        .mod(m),
+                Engine.residue(parse("7^123456789+2*2"), m));
+        // 1/2 is the inverse of 2
+        assertEquals(BigInteger.ONE, Engine.residue(parse("2*(1/2)"), m));
+        assertThrows(IllegalArgumentException.class, () -> Engine.residue(parse("x^2"), m));
+    }
+
+    @Test
+    void approximations() {
+        final MathContext mc = new MathContext(30);
+        assertEquals(BigDecimal.TWO.sqrt(mc), Engine.approximate(parse("2^(1/2)"), mc));
+        assertEquals(new BigDecimal(BigInteger.TWO.pow(1000)).round(mc), Engine.approximate(parse("2^1000"), mc));
+        assertEquals(
+                new BigDecimal("0.25"),
+                Engine.approximate(parse("8^(-2/3)"), mc).stripTrailingZeros());
+        assertEquals(
+                new BigDecimal("-3"),
+                Engine.approximate(parse("(-27)^(1/3)"), mc).stripTrailingZeros());
+        assertEquals(
+                new BigDecimal("2.57248981e104333090"), Engine.approximate(parse("7^123456789"), new MathContext(9)));
+        assertThrows(ArithmeticException.class, () -> Engine.approximate(parse("(-4)^(1/2)"), mc));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.numbers.Rational;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestRational {
+
+    private static Stream<Arguments> normalization() {
+        return Stream.of(
+                Arguments.of(Rational.of(6, 8), "3/4"),
+                Arguments.of(Rational.of(-6, -8), "3/4"),
+                Arguments.of(Rational.of(6, -8), "-3/4"),
+                Arguments.of(Rational.of(0, -5), "0"),
+                Arguments.of(Rational.of(10, 5), "2"),
+                Arguments.of(Rational.of(Long.MIN_VALUE, 2), "-4611686018427387904"),
+                Arguments.of(Rational.of(Long.MIN_VALUE, 1), "-9223372036854775808"),
+                Arguments.of(Rational.of(1, Long.MIN_VALUE), "-1/9223372036854775808"),
+                Arguments.of(Rational.of(BigInteger.TEN.pow(30), BigInteger.TEN.pow(28)), "100"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("normalization")
+    void normalization(final Rational value, final String expected) {
+        assertEquals(expected, value.toString());
+    }
+
+    private static Stream<Arguments> arithmetic() {
+        final Rational big = Rational.of(Long.MAX_VALUE, 3);
+        return Stream.of(
+                Arguments.of(Rational.of(1, 2).add(Rational.of(1, 3)), "5/6"),
+                Arguments.of(Rational.of(5, 6).subtract(Rational.of(1, 3)), "1/2"),
+                Arguments.of(Rational.of(1, 6).add(Rational.of(1, 3)), "1/2"),
+                Arguments.of(Rational.of(2, 3).multiply(Rational.of(9, 4)), "3/2"),
+                Arguments.of(Rational.of(2, 3).divide(Rational.of(-4, 5)), "-5/6"),
+                Arguments.of(Rational.of(-3, 7).reciprocal(), "-7/3"),
+                Arguments.of(big.add(big), "18446744073709551614/3"),
+                Arguments.of(big.multiply(big), "85070591730234615847396907784232501249/9"),
+                Arguments.of(big.multiply(big).divide(big), big.toString()),
+                Arguments.of(Rational.of(Long.MAX_VALUE).add(Rational.ONE), "9223372036854775808"),
+                Arguments.of(
+                        Rational.of(Long.MAX_VALUE).add(Rational.ONE).subtract(Rational.ONE), "9223372036854775807"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("arithmetic")
+    void arithmetic(final Rational result, final String expected) {
+        assertEquals(expected, result.toString());
+        assertEquals(Rational.of(new BigInteger(expected.split("/")[0]), result.denominator()), result);
+    }
+
+    @Test
+    void comparison() {
+        assertEquals(-1, Integer.signum(Rational.of(1, 3).compareTo(Rational.of(1, 2))));
+        assertEquals(1, Integer.signum(Rational.of(-1, 3).compareTo(Rational.of(-1, 2))));
+        assertEquals(0, Rational.of(2, 4).compareTo(Rational.of(1, 2)));
+        assertEquals(
+                -1,
+                Integer.signum(Rational.of(Long.MAX_VALUE - 1, Long.MAX_VALUE).compareTo(Rational.ONE)));
+    }
+
+    @Test
+    void zeroDenominator() {
+        assertThrows(ArithmeticException.class, () -> Rational.of(1, 0));
+        assertThrows(ArithmeticException.class, () -> Rational.ZERO.reciprocal());
+    }
+
+    @Test
+    void harmonicSum() {
+        final int n = 1_000;
+        Rational expected = Rational.ZERO;
+        for (int k = 1; k <= n; k++) {
+            expected = expected.add(Rational.of(1, k));
+        }
+        final String expression =
+                IntStream.rangeClosed(1, n).mapToObj(k -> "1/" + k).collect(Collectors.joining("+"));
+        assertEquals(expected.toNode(), Engine.normalize(Parser.parse(Tokenizer.tokenizeCompact(expression))));
+    }
+}
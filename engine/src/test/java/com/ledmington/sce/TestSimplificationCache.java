@@ -0,0 +1,138 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.ledmington.sce.nodes.Node;
+import com.ledmington.sce.nodes.Parser;
+import com.ledmington.sce.tokens.Tokenizer;
+
+final class TestSimplificationCache {
+
+    private static Node parse(final String input) {
+        return Parser.parse(Tokenizer.tokenize(input));
+    }
+
+    @Test
+    void invalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SimplificationCache(0));
+    }
+
+    @Test
+    void secondNormalizationHitsTheCache() {
+        final SimplificationCache cache = new SimplificationCache(1_000);
+        final Node root = parse("(2/3)*(x+1+x)");
+        final Node expected = Engine.normalize(root);
+
+        assertEquals(expected, Engine.normalize(root, cache));
+        final long misses = cache.misses();
+        assertEquals(0L, cache.hits());
+
+        assertEquals(expected, Engine.normalize(root, cache));
+        assertEquals(1L, cache.hits());
+        assertEquals(misses, cache.misses());
+    }
+
+    @Test
+    void sharedSubtreesHitTheCache() {
+        final SimplificationCache cache = new SimplificationCache(1_000);
+        Engine.normalize(parse("(x+1+1)^2"), cache);
+        Engine.normalize(parse("3*(x+1+1)"), cache);
+        assertTrue(cache.hits() > 0L);
+    }
+
+    @Test
+    void evictsWhenFull() {
+        final SimplificationCache cache = new SimplificationCache(2);
+        Engine.normalize(parse("1+2+3*4+x*(5+y)"), cache);
+        assertEquals(2, cache.size());
+        assertTrue(cache.evictions() > 0L);
+    }
+
+    @Test
+    void sharedAcrossThreads() throws InterruptedException, ExecutionException {
+        final SimplificationCache cache = new SimplificationCache(100);
+        final List<Node> inputs = List.of("1+2", "x+x+3", "(1/2)*(3-4)^2", "2/3*4/5", "i^7", "x*3*x").stream()
+                .map(TestSimplificationCache::parse)
+                .toList();
+        final List<Node> expected = inputs.stream().map(Engine::normalize).toList();
+        try (ExecutorService pool = Executors.newFixedThreadPool(4)) {
+            final List<Future<Node>> results = inputs.stream()
+                    .map(s -> pool.submit(() -> Engine.normalize(s, cache)))
+                    .toList();
+            for (int i = 0; i < inputs.size(); i++) {
+                assertEquals(expected.get(i), results.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void settingsInvalidateTheCache() {
+        final SimplificationCache cache = new SimplificationCache(100);
+        final Node root = parse("2^100+x");
+        final long bits = EngineConstants.getMaxFoldedPowerBits();
+        try {
+            final Node folded = Engine.normalize(root, cache);
+            EngineConstants.setMaxFoldedPowerBits(10L);
+            final Node symbolic = Engine.normalize(root, cache);
+            assertNotEquals(folded, symbolic);
+            assertEquals(Engine.normalize(root), symbolic);
+        } finally {
+            EngineConstants.setMaxFoldedPowerBits(bits);
+        }
+    }
+
+    @Test
+    void dropsNormalFormsComputedBeforeASettingsChange() {
+        final SimplificationCache cache = new SimplificationCache(100);
+        final Node root = parse("2^100+x");
+        final long bits = EngineConstants.getMaxFoldedPowerBits();
+        try {
+            // the settings change in the middle of the normalization, after the first rewrite
+            Engine.normalize(root, cache, (before, after) -> EngineConstants.setMaxFoldedPowerBits(10L));
+            assertEquals(0, cache.size());
+        } finally {
+            EngineConstants.setMaxFoldedPowerBits(bits);
+        }
+    }
+
+    @Test
+    void imaginaryUnitInvalidatesTheCache() {
+        final SimplificationCache cache = new SimplificationCache(100);
+        final Node root = parse("j*j");
+        try {
+            assertEquals(parse("j^2"), Engine.normalize(root, cache));
+            EngineConstants.setImaginaryUnit("j");
+            assertEquals(parse("-1"), Engine.normalize(root, cache));
+        } finally {
+            EngineConstants.setImaginaryUnit("i");
+        }
+    }
+}
@@ -18,19 +18,29 @@
 package com.ledmington.sce;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import com.ledmington.sce.tokens.IntegerLiteral;
 import com.ledmington.sce.tokens.Name;
 import com.ledmington.sce.tokens.Symbols;
 import com.ledmington.sce.tokens.Token;
+import com.ledmington.sce.tokens.TokenStream;
 import com.ledmington.sce.tokens.Tokenizer;
 
 final class TestTokenizer {
@@ -64,4 +74,33 @@ final class TestTokenizer {
                 actual,
                 () -> String.format("Expected '%s' but was '%s'", Arrays.toString(expected), Arrays.toString(actual)));
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1", "x_1+23*(y-4)/z^5", "123456789012345678901234567890*abc", "((1))"})
+    void compactMatchesObjects(final String input) {
+        final TokenStream compact = Tokenizer.tokenizeCompact(input);
+        assertArrayEquals(Tokenizer.tokenize(input), compact.toArray());
+        int offset = 0;
+        for (int i = 0; i < compact.size(); i++) {
+            assertEquals(offset, compact.start(i));
+            offset = compact.end(i);
+        }
+        assertEquals(input.length(), offset);
+    }
+
+    @Test
+    void concurrentTokenization() throws InterruptedException, ExecutionException {
+        final List<String> inputs = IntStream.range(0, 200)
+                .mapToObj(i -> "x" + i + "+" + "9".repeat(i % 40 + 1) + "*(y-" + i + ")")
+                .toList();
+        try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+            final List<Future<Token[]>> results = inputs.stream()
+                    .map(s -> pool.submit(() -> Tokenizer.tokenize(s)))
+                    .toList();
+            for (int i = 0; i < inputs.size(); i++) {
+                assertArrayEquals(
+                        Tokenizer.tokenize(inputs.get(i)), results.get(i).get());
+            }
+        }
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * sce - Symbolic Calculus Engine
+ * Copyright (C) 2024-2024 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.sce.eval;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link BatchKernel} running the lane-wise operations on the Vector API. The remaining operations, and the tails
+ * shorter than a vector, use the scalar loops.
+ */
+final class VectorBatchKernel extends BatchKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    VectorBatchKernel() {}
+
+    @Override
+    String name() {
+        return "vector";
+    }
+
+    @Override
+    void add(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        final int bound = SPECIES.loopBound(n);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, xo + i)
+                    .add(DoubleVector.fromArray(SPECIES, y, yo + i))
+                    .intoArray(dst, i);
+        }
+        for (int i = bound; i < n; i++) {
+            dst[i] = x[xo + i] + y[yo + i];
+        }
+    }
+
+    @Override
+    void multiply(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        final int bound = SPECIES.loopBound(n);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, xo + i)
+                    .mul(DoubleVector.fromArray(SPECIES, y, yo + i))
+                    .intoArray(dst, i);
+        }
+        for (int i = bound; i < n; i++) {
+            dst[i] = x[xo + i] * y[yo + i];
+        }
+    }
+
+    @Override
+    void divide(final double[] x, final int xo, final double[] y, final int yo, final double[] dst, final int n) {
+        final int bound = SPECIES.loopBound(n);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, xo + i)
+                    .div(DoubleVector.fromArray(SPECIES, y, yo + i))
+                    .intoArray(dst, i);
+        }
+        for (int i = bound; i < n; i++) {
+            dst[i] = x[xo + i] / y[yo + i];
+        }
+    }
+}